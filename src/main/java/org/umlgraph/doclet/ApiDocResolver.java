@@ -0,0 +1,153 @@
+/*
+ * Create a graphviz graph based on the classes in the specified java
+ * source files.
+ *
+ * (C) Copyright 2002-2010 Diomidis Spinellis
+ *
+ * Permission to use, copy, and distribute this software and its
+ * documentation for any purpose and without fee is hereby granted,
+ * provided that the above copyright notice appear in all copies and that
+ * both that copyright notice and this permission notice appear in
+ * supporting documentation.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND WITHOUT ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF
+ * MERCHANTIBILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ *
+ */
+
+package org.umlgraph.doclet;
+
+import static org.umlgraph.doclet.StringUtil.splitPackageClass;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the javadoc URL of the classes outside the ones documented,
+ * from the package lists of the -link and -linkoffline options and the
+ * patterns of the -apiDocMap option.
+ * <p>
+ * The entries are kept in the order the options were specified, and the
+ * first entry matching a class gives its root URL.
+ * A package list entry matches exactly the classes of its package, so
+ * these entries are found by looking up the package of the class,
+ * instead of trying the pattern of every package of the list in turn.
+ * The -apiDocMap patterns are matched as regular expressions.
+ * The resolver is immutable; the URL of each class is cached, and
+ * computed once per run.
+ *
+ * @version $Revision$
+ * @author <a href="http://www.spinellis.gr">Diomidis Spinellis</a>
+ */
+class ApiDocResolver {
+    /** The resolver with no entries, which links every class to the default root */
+    static final ApiDocResolver EMPTY = new ApiDocResolver();
+    /** The cached URL of the classes that are not linked */
+    private static final String UNLINKED = "\0";
+
+    /** The root URLs, by entry */
+    private final List<String> roots;
+    /** The index of the first package list entry of each package */
+    private final Map<String, Integer> packages;
+    /** The indexes of the regular expression entries, and the expressions */
+    private final List<Integer> patternIndexes;
+    private final List<Pattern> patterns;
+    private final String defaultRoot;
+    private final ConcurrentHashMap<String, String> urls = new ConcurrentHashMap<String, String>();
+
+    private ApiDocResolver() {
+	roots = Collections.emptyList();
+	packages = Collections.emptyMap();
+	patternIndexes = Collections.emptyList();
+	patterns = Collections.emptyList();
+	defaultRoot = Options.DEFAULT_EXTERNAL_APIDOC;
+    }
+
+    private ApiDocResolver(ApiDocResolver base, List<String> packageNames, Pattern pattern, String root) {
+	roots = new ArrayList<String>(base.roots);
+	packages = new HashMap<String, Integer>(base.packages);
+	patternIndexes = new ArrayList<Integer>(base.patternIndexes);
+	patterns = new ArrayList<Pattern>(base.patterns);
+	defaultRoot = null;
+	roots.add(root);
+	int index = roots.size() - 1;
+	if (pattern != null) {
+	    patternIndexes.add(index);
+	    patterns.add(pattern);
+	} else {
+	    for (String name : packageNames)
+		if (!packages.containsKey(name))
+		    packages.put(name, index);
+	}
+    }
+
+    /**
+     * Return a resolver with the entries of this one, followed by the
+     * packages of a package list, documented at the specified root
+     */
+    public ApiDocResolver withPackages(List<String> packageNames, String root) {
+	return new ApiDocResolver(this, packageNames, null, root);
+    }
+
+    /**
+     * Return a resolver with the entries of this one, followed by the
+     * classes matching the specified pattern, documented at the specified root
+     */
+    public ApiDocResolver withPattern(Pattern pattern, String root) {
+	return new ApiDocResolver(this, null, pattern, root);
+    }
+
+    /**
+     * Return the root URL of the documentation of the specified class,
+     * or null if it is not documented
+     */
+    public String getRoot(String className) {
+	if (defaultRoot != null)
+	    return defaultRoot;
+	int first = roots.size();
+	int dot = className.lastIndexOf('.');
+	if (dot >= 0) {
+	    Integer index = packages.get(className.substring(0, dot));
+	    if (index != null)
+		first = index;
+	}
+	for (int i = 0; i < patterns.size() && patternIndexes.get(i) < first; i++)
+	    if (patterns.get(i).matcher(className).matches()) {
+		first = patternIndexes.get(i);
+		break;
+	    }
+	return first < roots.size() ? roots.get(first) : null;
+    }
+
+    /**
+     * Return the URL of the documentation of the specified class, or
+     * null if it is not documented
+     */
+    public String getUrl(String className) {
+	String url = urls.get(className);
+	if (url == null) {
+	    url = buildUrl(className);
+	    urls.put(className, url == null ? UNLINKED : url);
+	}
+	return url == UNLINKED ? null : url;
+    }
+
+    private String buildUrl(String className) {
+	String docRoot = getRoot(className);
+	if (docRoot == null)
+	    return null;
+	int split = splitPackageClass(className);
+	StringBuilder buf = new StringBuilder(docRoot.length() + className.length() + 10).append(docRoot);
+	if (split > 0) // Avoid -1, and the extra slash then.
+	    buf.append(className.substring(0, split).replace('.', '/')).append('/');
+	return buf.append(className, Math.min(split + 1, className.length()), className.length()) //
+		.append(".html").toString();
+    }
+}
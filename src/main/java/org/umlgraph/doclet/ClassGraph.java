@@ -22,27 +22,21 @@ package org.umlgraph.doclet;
 import static org.umlgraph.doclet.StringUtil.buildRelativePathFromClassNames;
 import static org.umlgraph.doclet.StringUtil.escape;
 import static org.umlgraph.doclet.StringUtil.fmt;
-import static org.umlgraph.doclet.StringUtil.guilWrap;
 import static org.umlgraph.doclet.StringUtil.guillemize;
-import static org.umlgraph.doclet.StringUtil.htmlNewline;
 import static org.umlgraph.doclet.StringUtil.removeTemplate;
 import static org.umlgraph.doclet.StringUtil.splitPackageClass;
 import static org.umlgraph.doclet.StringUtil.tokenize;
 
-import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Map;
+import java.io.StringWriter;
 import java.util.Set;
+import java.util.TreeSet;
 
 import com.sun.javadoc.ClassDoc;
 import com.sun.javadoc.ConstructorDoc;
@@ -56,20 +50,16 @@ import com.sun.javadoc.ProgramElementDoc;
 import com.sun.javadoc.RootDoc;
 import com.sun.javadoc.Tag;
 import com.sun.javadoc.Type;
-import com.sun.javadoc.TypeVariable;
-import com.sun.javadoc.WildcardType;
 
 /**
  * Class graph generation engine
  * @depend - - - StringUtil
  * @depend - - - Options
- * @composed - - * ClassInfo
- * @has - - - OptionProvider
  *
  * @version $Revision$
  * @author <a href="http://www.spinellis.gr">Diomidis Spinellis</a>
  */
-class ClassGraph {
+class ClassGraph extends RelationGraph {
     enum Align {
 	LEFT, CENTER, RIGHT;
 
@@ -80,43 +70,33 @@ class ClassGraph {
 	}
     };
 
-    protected Map<String, ClassInfo> classnames = new HashMap<String, ClassInfo>();
-    protected Set<String> rootClasses;
-	protected Map<String, ClassDoc> rootClassdocs = new HashMap<String, ClassDoc>();
-    protected OptionProvider optionProvider;
     protected PrintWriter w;
-    protected ClassDoc collectionClassDoc;
-    protected ClassDoc mapClassDoc;
     protected String linePostfix;
     protected String linePrefix;
+    // one level of indentation, by which linePrefix grows inside a subgraph
+    protected String indentStep;
     
     // used only when generating context class diagrams in UMLDoc, to generate the proper
     // relative links to other classes in the image map
     protected final String contextPackageName;
+    // the global options of the graph, which the node and edge defaults follow
+    private final Options globalOptions;
+    // the roots of the javadoc links to the classes
+    private final String apiDocRoot;
+    private final ApiDocResolver apiDocMap;
       
     /**
      * Create a new ClassGraph.  <p>The packages passed as an
      * argument are the ones specified on the command line.</p>
      * <p>Local URLs will be generated for these packages.</p>
-     * @param root The root of docs as provided by the javadoc API
+     * @param model The model of the classes of the javadoc run
      * @param optionProvider The main option provider
      * @param contextDoc The current context for generating relative links, may be a ClassDoc 
      * 	or a PackageDoc (used by UMLDoc)
      */
-    public ClassGraph(RootDoc root, OptionProvider optionProvider, Doc contextDoc) {
-	this.optionProvider = optionProvider;
-	this.collectionClassDoc = root.classNamed("java.util.Collection");
-	this.mapClassDoc = root.classNamed("java.util.Map");
-	
-	// to gather the packages containing specified classes, loop thru them and gather
-	// package definitions. User root.specifiedPackages is not safe, since the user
-	// may specify just a list of classes (human users usually don't, but automated tools do)
-	rootClasses = new HashSet<String>();
-	for (ClassDoc classDoc : root.classes()) {
-	    rootClasses.add(classDoc.qualifiedName());
-	    rootClassdocs.put(classDoc.qualifiedName(), classDoc);
-	}
-	
+    public ClassGraph(GraphModel model, OptionProvider optionProvider, Doc contextDoc) {
+	super(model, optionProvider);
+
 	// determine the context path, relative to the root
 	if (contextDoc instanceof ClassDoc)
 	    contextPackageName = ((ClassDoc) contextDoc).containingPackage().name();
@@ -125,9 +105,11 @@ class ClassGraph {
 	else
 	    contextPackageName = null; // Not available
 	
-	Options opt = optionProvider.getGlobalOptions();
-	linePrefix = opt.compact ? "" : "\t";
+	Options opt = globalOptions = optionProvider.getGlobalOptions();
+	linePrefix = indentStep = opt.compact ? "" : "\t";
 	linePostfix = opt.compact ? "" : "\n";
+	apiDocRoot = opt.apiDocRoot;
+	apiDocMap = opt.apiDocMap;
     }
 
     
@@ -174,47 +156,49 @@ class ClassGraph {
      * Print the visibility adornment of element e prefixed by
      * any stereotypes
      */
-    private String visibility(Options opt, ProgramElementDoc e) {
-	return opt.showVisibility ? Visibility.get(e).symbol : " ";
+    private void visibility(Options opt, ProgramElementDoc e) {
+	w.print(opt.showVisibility ? Visibility.get(e).symbol : " ");
     }
 
     /** Print the method parameter p */
-    private String parameter(Options opt, Parameter p[]) {
-	StringBuilder par = new StringBuilder(1000);
+    private void parameter(Options opt, Parameter p[]) {
 	for (int i = 0; i < p.length; i++) {
-	    par.append(p[i].name() + typeAnnotation(opt, p[i].type()));
+	    w.print(p[i].name());
+	    typeAnnotation(opt, p[i].type());
 	    if (i + 1 < p.length)
-		par.append(", ");
+		w.print(", ");
 	}
-	return par.toString();
     }
 
     /** Print a a basic type t */
-    private String type(Options opt, Type t, boolean generics) {
-	return ((generics ? opt.showQualifiedGenerics : opt.showQualified) ? //
-		t.qualifiedTypeName() : t.typeName()) //
-		+ (opt.hideGenerics ? "" : typeParameters(opt, t.asParameterizedType()));
+    private void type(Options opt, Type t, boolean generics) {
+	w.print((generics ? opt.showQualifiedGenerics : opt.showQualified) ? //
+		t.qualifiedTypeName() : t.typeName());
+	if (!opt.hideGenerics)
+	    typeParameters(opt, t.asParameterizedType());
     }
 
     /** Print the parameters of the parameterized type t */
-    private String typeParameters(Options opt, ParameterizedType t) {
+    private void typeParameters(Options opt, ParameterizedType t) {
 	if (t == null)
-	    return "";
-	StringBuffer tp = new StringBuffer(1000).append("&lt;");
+	    return;
+	w.print("&lt;");
 	Type args[] = t.typeArguments();
 	for (int i = 0; i < args.length; i++) {
-	    tp.append(type(opt, args[i], true));
+	    type(opt, args[i], true);
 	    if (i != args.length - 1)
-		tp.append(", ");
+		w.print(", ");
 	}
-	return tp.append("&gt;").toString();
+	w.print("&gt;");
     }
 
     /** Annotate an field/argument with its type t */
-    private String typeAnnotation(Options opt, Type t) {
+    private void typeAnnotation(Options opt, Type t) {
 	if (t.typeName().equals("void"))
-	    return "";
-	return " : " + type(opt, t, false) + t.dimension();
+	    return;
+	w.print(" : ");
+	type(opt, t, false);
+	w.print(t.dimension());
     }
 
     /** Print the class's attributes fd */
@@ -223,10 +207,12 @@ class ClassGraph {
 	    if (hidden(f))
 		continue;
 	    stereotype(opt, f, Align.LEFT);
-	    String att = visibility(opt, f) + f.name();
+	    tableLineStart(Align.LEFT);
+	    visibility(opt, f);
+	    w.print(f.name());
 	    if (opt.showType)
-		att += typeAnnotation(opt, f.type());
-	    tableLine(Align.LEFT, att);
+		typeAnnotation(opt, f.type());
+	    tableLineEnd();
 	    tagvalue(opt, f);
 	}
     }
@@ -244,9 +230,16 @@ class ClassGraph {
 	    if (hidden(cd))
 		continue;
 	    stereotype(opt, cd, Align.LEFT);
-	    String cs = visibility(opt, cd) + cd.name() //
-		    + (opt.showType ? "(" + parameter(opt, cd.parameters()) + ")" : "()");
-	    tableLine(Align.LEFT, cs);
+	    tableLineStart(Align.LEFT);
+	    visibility(opt, cd);
+	    w.print(cd.name());
+	    if (opt.showType) {
+		w.print('(');
+		parameter(opt, cd.parameters());
+		w.print(')');
+	    } else
+		w.print("()");
+	    tableLineEnd();
 	    tagvalue(opt, cd);
 	    printed = true;
 	}
@@ -263,10 +256,20 @@ class ClassGraph {
 	    if (md.name().equals("<clinit>") && md.isStatic() && md.isPackagePrivate())
 		continue;
 	    stereotype(opt, md, Align.LEFT);
-	    String op = visibility(opt, md) + md.name() + //
-		    (opt.showType ? "(" + parameter(opt, md.parameters()) + ")" + typeAnnotation(opt, md.returnType())
-			    : "()");
-	    tableLine(Align.LEFT, (md.isAbstract() ? Font.ABSTRACT : Font.NORMAL).wrap(opt, op));
+	    Font font = md.isAbstract() ? Font.ABSTRACT : Font.NORMAL;
+	    tableLineStart(Align.LEFT);
+	    font.start(opt, w);
+	    visibility(opt, md);
+	    w.print(md.name());
+	    if (opt.showType) {
+		w.print('(');
+		parameter(opt, md.parameters());
+		w.print(')');
+		typeAnnotation(opt, md.returnType());
+	    } else
+		w.print("()");
+	    font.end(opt, w);
+	    tableLineEnd();
 	    printed = true;
 
 	    tagvalue(opt, md);
@@ -276,13 +279,21 @@ class ClassGraph {
 
     /** Print the common class node's properties */
     private void nodeProperties(Options opt) {
-	Options def = opt.getGlobalOptions();
-	if (opt.nodeFontName != def.nodeFontName)
-	    w.print(",fontname=\"" + opt.nodeFontName + "\"");
-	if (opt.nodeFontColor != def.nodeFontColor)
-	    w.print(",fontcolor=\"" + opt.nodeFontColor + "\"");
-	if (opt.nodeFontSize != def.nodeFontSize)
-	    w.print(",fontsize=" + fmt(opt.nodeFontSize));
+	Options def = globalOptions;
+	if (!opt.nodeFontName.equals(def.nodeFontName)) {
+	    w.print(",fontname=\"");
+	    w.print(opt.nodeFontName);
+	    w.print('"');
+	}
+	if (!opt.nodeFontColor.equals(def.nodeFontColor)) {
+	    w.print(",fontcolor=\"");
+	    w.print(opt.nodeFontColor);
+	    w.print('"');
+	}
+	if (opt.nodeFontSize != def.nodeFontSize) {
+	    w.print(",fontsize=");
+	    w.print(fmt(opt.nodeFontSize));
+	}
 	w.print(opt.shape.style);
 	w.println("];");
     }
@@ -305,7 +316,15 @@ class ClassGraph {
 		System.err.println("@tagvalue expects two fields: " + tag.text());
 		continue;
 	    }
-	    tableLine(Align.RIGHT, Font.TAG.wrap(opt, "{" + t[0] + " = " + t[1] + "}"));
+	    tableLineStart(Align.RIGHT);
+	    Font.TAG.start(opt, w);
+	    w.print('{');
+	    w.print(t[0]);
+	    w.print(" = ");
+	    w.print(t[1]);
+	    w.print('}');
+	    Font.TAG.end(opt, w);
+	    tableLineEnd();
 	}
     }
 
@@ -320,43 +339,17 @@ class ClassGraph {
 		System.err.println("@stereotype expects one field: " + tag.text());
 		continue;
 	    }
-	    tableLine(align, guilWrap(opt, t[0]));
+	    guilLine(opt, align, t[0]);
 	}
     }
 
-    /** Return true if c has a @hidden tag associated with it */
-    private boolean hidden(ProgramElementDoc c) {
-	if (c.tags("hidden").length > 0 || c.tags("view").length > 0)
-	    return true;
-	Options opt = optionProvider.getOptionsFor(c instanceof ClassDoc ? (ClassDoc) c : c.containingClass());
-	return opt.matchesHideExpression(c.toString()) //
-		|| (opt.hidePrivateInner && c instanceof ClassDoc  && c.isPrivate() && ((ClassDoc) c).containingClass() != null);
-    }
-
-    protected ClassInfo getClassInfo(ClassDoc cd, boolean create) {
-	return getClassInfo(cd, cd.toString(), create);
-    }
-
-    protected ClassInfo getClassInfo(String className, boolean create) {
-	return getClassInfo(null, className, create);
-    }
-
-    protected ClassInfo getClassInfo(ClassDoc cd, String className, boolean create) {
-	className = removeTemplate(className);
-	ClassInfo ci = classnames.get(className);
-	if (ci == null && create) {
-	    boolean hidden = cd != null ? hidden(cd) : optionProvider.getOptionsFor(className).matchesHideExpression(className);
-	    ci = new ClassInfo(hidden);
-	    classnames.put(className, ci);
-	}
-	return ci;
-    }
-
-    /** Return true if the class name is associated to an hidden class or matches a hide expression */
-    private boolean hidden(String className) {
-	className = removeTemplate(className);
-	ClassInfo ci = classnames.get(className);
-	return ci != null ? ci.hidden : optionProvider.getOptionsFor(className).matchesHideExpression(className);
+    /** Print a table line with the text wrapped in guillemots */
+    private void guilLine(Options opt, Align align, String text) {
+	tableLineStart(align);
+	w.print(opt.guilOpen);
+	w.print(text);
+	w.print(opt.guilClose);
+	tableLineEnd();
     }
 
     /**
@@ -367,246 +360,313 @@ class ClassGraph {
      * relative links in diagrams for UMLDoc
      */
     public String printClass(ClassDoc c, boolean rootClass) {
-	ClassInfo ci = getClassInfo(c, true);
-	if(ci.nodePrinted || ci.hidden)
-	    return ci.name;
+	int id = classId(c, true);
+	String alias = ClassRegistry.alias(id);
+	if(registry.isPrinted(id) || registry.isHidden(id))
+	    return alias;
 	Options opt = optionProvider.getOptionsFor(c);
 	if (c.isEnum() && !opt.showEnumerations)
-	    return ci.name;
+	    return alias;
 	String className = c.toString();
 	// Associate classname's alias
-	w.println(linePrefix + "// " + className);
+	comment(className);
 	// Create label
-	w.print(linePrefix + ci.name + " [label=");
-
-	boolean showMembers =
-		(opt.showAttributes && c.fields().length > 0) ||
-		(c.isEnum() && opt.showEnumConstants && c.enumConstants().length > 0) ||
-		(opt.showOperations && c.methods().length > 0) ||
-		(opt.showConstructors && c.constructors().length > 0);
+	w.print(linePrefix);
+	w.print(alias);
+	w.print(" [label=");
 
 	final String url = classToUrl(c, rootClass);
 	externalTableStart(opt, c.qualifiedName(), url);
 
 	firstInnerTableStart(opt);
 	if (c.isInterface())
-	    tableLine(Align.CENTER, guilWrap(opt, "interface"));
+	    guilLine(opt, Align.CENTER, "interface");
 	if (c.isEnum())
-	    tableLine(Align.CENTER, guilWrap(opt, "enumeration"));
+	    guilLine(opt, Align.CENTER, "enumeration");
 	stereotype(opt, c, Align.CENTER);
 	Font font = c.isAbstract() && !c.isInterface() ? Font.CLASS_ABSTRACT : Font.CLASS;
 	String qualifiedName = qualifiedName(opt, className);
 	int idx = splitPackageClass(qualifiedName);
 	if (opt.showComment)
-	    tableLine(Align.LEFT, Font.CLASS.wrap(opt, htmlNewline(escape(c.commentText()))));
+	    tableLine(Align.LEFT, Font.CLASS, opt, c.commentText(), true);
 	else if (opt.postfixPackage && idx > 0 && idx < (qualifiedName.length() - 1)) {
 	    String packageName = qualifiedName.substring(0, idx);
 	    String cn = qualifiedName.substring(idx + 1);
-	    tableLine(Align.CENTER, font.wrap(opt, escape(cn)));
-	    tableLine(Align.CENTER, Font.PACKAGE.wrap(opt, packageName));
+	    tableLine(Align.CENTER, font, opt, cn, false);
+	    tableLine(Align.CENTER, Font.PACKAGE, opt, packageName, false);
 	} else {
-	    tableLine(Align.CENTER, font.wrap(opt, escape(qualifiedName)));
+	    tableLine(Align.CENTER, font, opt, qualifiedName, false);
 	}
 	tagvalue(opt, c);
 	firstInnerTableEnd(opt);
 
-	/*
-	 * Warning: The boolean expressions guarding innerTableStart()
-	 * in this block, should match those in the code block above
-	 * marked: "Calculate the number of innerTable rows we will emmit"
-	 */
-	if (showMembers) {
-	    if (opt.showAttributes) {
-		innerTableStart();
-		FieldDoc[] fields = c.fields();
-		// if there are no fields, print an empty line to generate proper HTML
-		if (fields.length == 0)
-		    tableLine(Align.LEFT, "");
-		else
-		    attributes(opt, c.fields());
-		innerTableEnd();
-	    } else if(!c.isEnum() && (opt.showConstructors || opt.showOperations)) {
-		// show an emtpy box if we don't show attributes but
-		// we show operations
-		innerTableStart();
-		tableLine(Align.LEFT, "");
-		innerTableEnd();
-	    }
-	    if (c.isEnum() && opt.showEnumConstants) {
-		innerTableStart();
-		FieldDoc[] ecs = c.enumConstants();
-		// if there are no constants, print an empty line to generate proper HTML
-		if (ecs.length == 0) {
-		    tableLine(Align.LEFT, "");
-		} else {
-		    for (FieldDoc fd : c.enumConstants()) {
-			tableLine(Align.LEFT, fd.name());
-		    }
-		}
-		innerTableEnd();
-	    }
-	    if (!c.isEnum() && (opt.showConstructors || opt.showOperations)) {
-		innerTableStart();
-		boolean printedLines = false;
-		if (opt.showConstructors)
-		    printedLines |= operations(opt, c.constructors());
-		if (opt.showOperations)
-		    printedLines |= operations(opt, c.methods());
-
-		if (!printedLines)
-		    // if there are no operations nor constructors,
-		    // print an empty line to generate proper HTML
-		    tableLine(Align.LEFT, "");
-
-		innerTableEnd();
-	    }
-	}
+	members(opt, c);
 	externalTableEnd();
-	if (url != null)
-	    w.print(", URL=\"" + url + "\"");
+	if (url != null) {
+	    w.print(", URL=\"");
+	    w.print(url);
+	    w.print('"');
+	}
 	nodeProperties(opt);
 
 	// If needed, add a note for this node
 	int ni = 0;
 	for (Tag t : c.tags("note")) {
-	    String noteName = "n" + ni + "c" + ci.name;
-	    w.print(linePrefix + "// Note annotation\n");
-	    w.print(linePrefix + noteName + " [label=");
-	    externalTableStart(UmlGraph.getCommentOptions(), c.qualifiedName(), url);
+	    w.print(linePrefix);
+	    w.print("// Note annotation\n");
+	    w.print(linePrefix);
+	    noteName(ni, alias);
+	    w.print(" [label=");
+	    externalTableStart(model.commentOptions, c.qualifiedName(), url);
 	    innerTableStart();
-	    tableLine(Align.LEFT, Font.CLASS.wrap(UmlGraph.getCommentOptions(), htmlNewline(escape(t.text()))));
+	    tableLine(Align.LEFT, Font.CLASS, model.commentOptions, t.text(), true);
 	    innerTableEnd();
 	    externalTableEnd();
-	    nodeProperties(UmlGraph.getCommentOptions());
-	    ClassInfo ci1 = getClassInfo(c, true);
-	    w.print(linePrefix + noteName + " -> " + ci1.name + "[arrowhead=none];\n");
+	    nodeProperties(model.commentOptions);
+	    w.print(linePrefix);
+	    noteName(ni, alias);
+	    w.print(" -> ");
+	    w.print(alias);
+	    w.print("[arrowhead=none];\n");
 	    ni++;
 	}
-	ci.nodePrinted = true;
-	return ci.name;
+	registry.setPrinted(id);
+	return alias;
     }
 
     /**
-     * Print all relations for a given's class's tag
-     * @param tagname the tag containing the given relation
-     * @param from the source class
-     * @param edgetype the dot edge specification
+     * Print the attribute, enumeration constant and operation compartments
+     * of a class. The compartments depend only on the class and the options
+     * that format them, so they are formatted once per run, and reused by
+     * every diagram that shows the class with the same formatting.
      */
-    private void allRelation(Options opt, RelationType rt, ClassDoc from) {
-	String tagname = rt.lower;
-	for (Tag tag : from.tags(tagname)) {
-	    String t[] = tokenize(tag.text());    // l-src label l-dst target
-	    t = t.length == 1 ? new String[] { "-", "-", "-", t[0] } : t; // Shorthand
-	    if (t.length != 4) {
-		System.err.println("Error in " + from + "\n" + tagname + " expects four fields (l-src label l-dst target): " + tag.text());
-		return;
+    private void members(Options opt, ClassDoc c) {
+	MemberFormat format = new MemberFormat(c, opt, linePrefix.isEmpty());
+	String rows = model.memberRows.get(format);
+	if (rows == null) {
+	    PrintWriter out = w;
+	    StringWriter buf = new StringWriter();
+	    w = new PrintWriter(buf);
+	    try {
+		printMembers(opt, c);
+	    } finally {
+		w.flush();
+		w = out;
 	    }
-	    ClassDoc to = from.findClass(t[3]);
-	    if (to != null) {
-		if(hidden(to))
-		    continue;
-		relation(opt, rt, from, to, t[0], t[1], t[2]);
+	    rows = buf.toString();
+	    model.memberRows.putIfAbsent(format, rows);
+	}
+	w.print(rows);
+    }
+
+    /** Print the member compartments of a class */
+    private void printMembers(Options opt, ClassDoc c) {
+	boolean showMembers =
+		(opt.showAttributes && c.fields().length > 0) ||
+		(c.isEnum() && opt.showEnumConstants && c.enumConstants().length > 0) ||
+		(opt.showOperations && c.methods().length > 0) ||
+		(opt.showConstructors && c.constructors().length > 0);
+	if (!showMembers)
+	    return;
+
+	/*
+	 * Warning: The boolean expressions guarding innerTableStart()
+	 * in this block, should match those in the code block above
+	 * marked: "Calculate the number of innerTable rows we will emmit"
+	 */
+	if (opt.showAttributes) {
+	    innerTableStart();
+	    FieldDoc[] fields = c.fields();
+	    // if there are no fields, print an empty line to generate proper HTML
+	    if (fields.length == 0)
+		tableLine(Align.LEFT, "");
+	    else
+		attributes(opt, fields);
+	    innerTableEnd();
+	} else if(!c.isEnum() && (opt.showConstructors || opt.showOperations)) {
+	    // show an emtpy box if we don't show attributes but
+	    // we show operations
+	    innerTableStart();
+	    tableLine(Align.LEFT, "");
+	    innerTableEnd();
+	}
+	if (c.isEnum() && opt.showEnumConstants) {
+	    innerTableStart();
+	    FieldDoc[] ecs = c.enumConstants();
+	    // if there are no constants, print an empty line to generate proper HTML
+	    if (ecs.length == 0) {
+		tableLine(Align.LEFT, "");
 	    } else {
-		if(hidden(t[3]))
-		    continue;
-		relation(opt, rt, from, from.toString(), to, t[3], t[0], t[1], t[2]);
+		for (FieldDoc fd : ecs) {
+		    tableLine(Align.LEFT, fd.name());
+		}
 	    }
+	    innerTableEnd();
+	}
+	if (!c.isEnum() && (opt.showConstructors || opt.showOperations)) {
+	    innerTableStart();
+	    boolean printedLines = false;
+	    if (opt.showConstructors)
+		printedLines |= operations(opt, c.constructors());
+	    if (opt.showOperations)
+		printedLines |= operations(opt, c.methods());
+
+	    if (!printedLines)
+		// if there are no operations nor constructors,
+		// print an empty line to generate proper HTML
+		tableLine(Align.LEFT, "");
+
+	    innerTableEnd();
 	}
     }
 
     /**
-     * Print the specified relation
+     * The class and the options that determine the member compartments
+     * of its node, including the member hide patterns
+     */
+    static class MemberFormat {
+	private final ClassDoc cd;
+	private final int flags;
+	private final PatternSet hidePatterns;
+	private final String guilOpen, guilClose;
+	private final String tagFontName;
+	private final double tagFontSize;
+
+	MemberFormat(ClassDoc cd, Options opt, boolean compact) {
+	    this.cd = cd;
+	    boolean[] bits = { compact, opt.showAttributes, opt.showEnumConstants,
+		    opt.showOperations, opt.showConstructors, opt.showVisibility, opt.showType,
+		    opt.showQualified, opt.showQualifiedGenerics, opt.hideGenerics,
+		    opt.nodeFontAbstractItalic, opt.strictMatching };
+	    int f = 0;
+	    for (int i = 0; i < bits.length; i++)
+		if (bits[i])
+		    f |= 1 << i;
+	    this.flags = f;
+	    // the pattern sets are shared by the options derived from the same ones
+	    this.hidePatterns = opt.hidePatterns;
+	    this.guilOpen = opt.guilOpen;
+	    this.guilClose = opt.guilClose;
+	    this.tagFontName = opt.nodeFontTagName;
+	    this.tagFontSize = opt.nodeFontTagSize;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+	    if (!(o instanceof MemberFormat))
+		return false;
+	    MemberFormat m = (MemberFormat) o;
+	    return cd == m.cd && flags == m.flags && hidePatterns == m.hidePatterns
+		    && guilOpen.equals(m.guilOpen) && guilClose.equals(m.guilClose)
+		    && (tagFontName == null ? m.tagFontName == null : tagFontName.equals(m.tagFontName))
+		    && tagFontSize == m.tagFontSize;
+	}
+
+	@Override
+	public int hashCode() {
+	    return (cd.hashCode() * 31 + flags) * 31 + System.identityHashCode(hidePatterns);
+	}
+    }
+
+    /** Print the name of the specified note of a class */
+    private void noteName(int note, String alias) {
+	w.print('n');
+	w.print(note);
+	w.print('c');
+	w.print(alias);
+    }
+
+    /** Print a comment line associating a name with the element that follows */
+    protected void comment(String name) {
+	w.print(linePrefix);
+	w.print("// ");
+	w.println(name);
+    }
+
+    /**
+     * Print the specified relation, and add it to the graph
      * @param from the source class (may be null)
      * @param fromName the source class's name
      * @param to the destination class (may be null)
      * @param toName the destination class's name
      */
-    private void relation(Options opt, RelationType rt, ClassDoc from, String fromName, 
+    @Override
+    protected void relation(Options opt, RelationType rt, ClassDoc from, String fromName, 
 	    ClassDoc to, String toName, String tailLabel, String label, String headLabel) {
-	tailLabel = (tailLabel != null && !tailLabel.isEmpty()) ? ",taillabel=\"" + tailLabel + "\"" : "";
-	label = (label != null && !label.isEmpty()) ? ",label=\"" + guillemize(opt, label) + "\"" : "";
-	headLabel = (headLabel != null && !headLabel.isEmpty()) ? ",headlabel=\"" + headLabel + "\"" : "";
-	boolean unLabeled = tailLabel.isEmpty() && label.isEmpty() && headLabel.isEmpty();
+	boolean unLabeled = isEmpty(tailLabel) && isEmpty(label) && isEmpty(headLabel);
 
-	ClassInfo ci1 = getClassInfo(from, fromName, true), ci2 = getClassInfo(to, toName, true);
-	String n1 = ci1.name, n2 = ci2.name;
+	int id1 = classId(from, fromName, true), id2 = classId(to, toName, true);
+	String n1 = ClassRegistry.alias(id1), n2 = ClassRegistry.alias(id2);
 	// For ranking we need to output extends/implements backwards.
 	if (rt.backorder) { // Swap:
-	    n1 = ci2.name;
-	    n2 = ci1.name;
+	    n1 = ClassRegistry.alias(id2);
+	    n2 = ClassRegistry.alias(id1);
 	    String tmp = tailLabel;
 	    tailLabel = headLabel;
 	    headLabel = tmp;
 	}
-	Options def = opt.getGlobalOptions();
+	Options def = globalOptions;
 	// print relation
-	w.println(linePrefix + "// " + fromName + " " + rt.lower + " " + toName);
-	w.println(linePrefix + n1 + " -> " + n2 + " [" + rt.style +
-		(opt.edgeColor != def.edgeColor ? ",color=\"" + opt.edgeColor + "\"" : "") +
-		(unLabeled ? "" :
-		    (opt.edgeFontName != def.edgeFontName ? ",fontname=\"" + opt.edgeFontName + "\"" : "") +
-		    (opt.edgeFontColor != def.edgeFontColor ? ",fontcolor=\"" + opt.edgeFontColor + "\"" : "") +
-		    (opt.edgeFontSize != def.edgeFontSize ? ",fontsize=" + fmt(opt.edgeFontSize) : "")) +
-		tailLabel + label + headLabel +
-		"];");
+	w.print(linePrefix);
+	w.print("// ");
+	w.print(fromName);
+	w.print(' ');
+	w.print(rt.lower);
+	w.print(' ');
+	w.println(toName);
+	w.print(linePrefix);
+	w.print(n1);
+	w.print(" -> ");
+	w.print(n2);
+	w.print(" [");
+	w.print(rt.style);
+	if (!opt.edgeColor.equals(def.edgeColor))
+	    attribute("color", opt.edgeColor);
+	if (!unLabeled) {
+	    if (!opt.edgeFontName.equals(def.edgeFontName))
+		attribute("fontname", opt.edgeFontName);
+	    if (!opt.edgeFontColor.equals(def.edgeFontColor))
+		attribute("fontcolor", opt.edgeFontColor);
+	    if (opt.edgeFontSize != def.edgeFontSize) {
+		w.print(",fontsize=");
+		w.print(fmt(opt.edgeFontSize));
+	    }
+	}
+	if (!isEmpty(tailLabel))
+	    attribute("taillabel", tailLabel);
+	if (!isEmpty(label)) {
+	    w.print(",label=\"");
+	    guillemize(w, opt, label);
+	    w.print('"');
+	}
+	if (!isEmpty(headLabel))
+	    attribute("headlabel", headLabel);
+	w.println("];");
 	
 	// update relation info
-	RelationDirection d = RelationDirection.BOTH;
-	if(rt == RelationType.NAVASSOC || rt == RelationType.DEPEND)
-	    d = RelationDirection.OUT;
-	ci1.addRelation(toName, rt, d);
-	ci2.addRelation(fromName, rt, d.inverse());
+	addRelation(rt, id1, id2);
     }
 
-    /**
-     * Print the specified relation
-     * @param from the source class
-     * @param to the destination class
-     */
-    private void relation(Options opt, RelationType rt, ClassDoc from,
-	    ClassDoc to, String tailLabel, String label, String headLabel) {
-	relation(opt, rt, from, from.toString(), to, to.toString(), tailLabel, label, headLabel);
+    private static boolean isEmpty(String s) {
+	return s == null || s.isEmpty();
     }
 
-
-    /** Print a class's relations */
-    public void printRelations(ClassDoc c) {
-	Options opt = optionProvider.getOptionsFor(c);
-	if (hidden(c) || c.name().equals("")) // avoid phantom classes, they may pop up when the source uses annotations
-	    return;
-	// Print generalization (through the Java superclass)
-	Type s = c.superclassType();
-	ClassDoc sc = s != null && !s.qualifiedTypeName().equals(Object.class.getName()) ? s.asClassDoc() : null;
-	if (sc != null && !c.isEnum() && !hidden(sc))
-	    relation(opt, RelationType.EXTENDS, c, sc, null, null, null);
-	// Print generalizations (through @extends tags)
-	for (Tag tag : c.tags("extends"))
-	    if (!hidden(tag.text()))
-		relation(opt, RelationType.EXTENDS, c, c.findClass(tag.text()), null, null, null);
-	// Print realizations (Java interfaces)
-	for (Type iface : c.interfaceTypes()) {
-	    ClassDoc ic = iface.asClassDoc();
-	    if (!hidden(ic))
-		relation(opt, RelationType.IMPLEMENTS, c, ic, null, null, null);
-	}
-	// Print other associations
-	allRelation(opt, RelationType.COMPOSED, c);
-	allRelation(opt, RelationType.NAVCOMPOSED, c);
-	allRelation(opt, RelationType.HAS, c);
-	allRelation(opt, RelationType.NAVHAS, c);
-	allRelation(opt, RelationType.ASSOC, c);
-	allRelation(opt, RelationType.NAVASSOC, c);
-	allRelation(opt, RelationType.DEPEND, c);
+    /** Print a quoted dot attribute */
+    private void attribute(String name, String value) {
+	w.print(',');
+	w.print(name);
+	w.print("=\"");
+	w.print(value);
+	w.print('"');
     }
 
     /** Print classes that were parts of relationships, but not parsed by javadoc */
     public void printExtraClasses(RootDoc root) {
-	Set<String> names = new HashSet<String>(classnames.keySet()); 
-	for(String className: names) {
-	    ClassInfo info = getClassInfo(className, true);
-	    if (info.nodePrinted)
+	for (int id = 0, n = registry.size(); id < n; id++) {
+	    if (registry.isPrinted(id))
 		continue;
-	    ClassDoc c = root.classNamed(className);
+	    String className = registry.name(id);
+	    ClassDoc c = model.classNamed(className);
 	    if(c != null) {
 		printClass(c, false);
 		continue;
@@ -615,8 +675,10 @@ class ClassGraph {
 	    Options opt = optionProvider.getOptionsFor(className);
 	    if(opt.matchesHideExpression(className))
 		continue;
-	    w.println(linePrefix + "// " + className);
-	    w.print(linePrefix  + info.name + "[label=");
+	    comment(className);
+	    w.print(linePrefix);
+	    w.print(ClassRegistry.alias(id));
+	    w.print("[label=");
 	    externalTableStart(opt, className, classToUrl(className));
 	    innerTableStart();
 	    String qualifiedName = qualifiedName(opt, className);
@@ -625,199 +687,22 @@ class ClassGraph {
 	    if(opt.postfixPackage && idx > 0 && idx < (qualifiedName.length() - 1)) {
 		String packageName = qualifiedName.substring(0, idx);
 		String cn = qualifiedName.substring(idx + 1);
-		tableLine(Align.CENTER, Font.CLASS.wrap(opt, escape(cn)));
-		tableLine(Align.CENTER, Font.PACKAGE.wrap(opt, packageName));
+		tableLine(Align.CENTER, Font.CLASS, opt, cn, false);
+		tableLine(Align.CENTER, Font.PACKAGE, opt, packageName, false);
 	    } else {
-		tableLine(Align.CENTER, Font.CLASS.wrap(opt, escape(qualifiedName)));
+		tableLine(Align.CENTER, Font.CLASS, opt, qualifiedName, false);
 	    }
 	    innerTableEnd();
 	    externalTableEnd();
-	    if (className == null || className.length() == 0)
-		w.print(",URL=\"" + classToUrl(className) + "\"");
-	    nodeProperties(opt);
-	}
-    }
-    
-    /**
-     * Prints associations recovered from the fields of a class. An association is inferred only
-     * if another relation between the two classes is not already in the graph.
-     * @param classes
-     */  
-    public void printInferredRelations(ClassDoc c) {
-	// check if the source is excluded from inference
-	if (hidden(c))
-	    return;
-
-	Options opt = optionProvider.getOptionsFor(c);
-
-	for (FieldDoc field : c.fields(false)) {
-	    if(hidden(field))
-		continue;
-	    // skip statics
-	    if(field.isStatic())
-		continue;
-	    // skip primitives
-	    FieldRelationInfo fri = getFieldRelationInfo(field);
-	    if (fri == null)
-		continue;
-	    // check if the destination is excluded from inference
-	    if (hidden(fri.cd))
-		continue;
-
-	    // if source and dest are not already linked, add a dependency
-	    RelationPattern rp = getClassInfo(c, true).getRelation(fri.cd.toString());
-	    if (rp == null) {
-		String destAdornment = fri.multiple ? "*" : "";
-		relation(opt, opt.inferRelationshipType, c, fri.cd, "", "", destAdornment);
-            }
-	}
-    }
-
-    /** Returns an array representing the imported classes of c.
-     * Disables the deprecation warning, which is output, because the
-     * imported classed are an implementation detail.
-     */
-    @SuppressWarnings( "deprecation" )
-    ClassDoc[] importedClasses(ClassDoc c) {
-        return c.importedClasses();
-    }
-
-    /**
-     * Prints dependencies recovered from the methods of a class. A
-     * dependency is inferred only if another relation between the two
-     * classes is not already in the graph.
-     * @param classes
-     */  
-    public void printInferredDependencies(ClassDoc c) {
-	if (hidden(c))
-	    return;
-
-	Options opt = optionProvider.getOptionsFor(c);
-	Set<Type> types = new HashSet<Type>();
-	// harvest method return and parameter types
-	for (MethodDoc method : filterByVisibility(c.methods(false), opt.inferDependencyVisibility)) {
-	    types.add(method.returnType());
-	    for (Parameter parameter : method.parameters()) {
-		types.add(parameter.type());
-	    }
-	}
-	// and the field types
-	if (!opt.inferRelationships) {
-	    for (FieldDoc field : filterByVisibility(c.fields(false), opt.inferDependencyVisibility)) {
-		types.add(field.type());
-	    }
-	}
-	// see if there are some type parameters
-	if (c.asParameterizedType() != null) {
-	    ParameterizedType pt = c.asParameterizedType();
-	    types.addAll(Arrays.asList(pt.typeArguments()));
-	}
-	// see if type parameters extend something
-	for(TypeVariable tv: c.typeParameters()) {
-	    if(tv.bounds().length > 0 )
-		types.addAll(Arrays.asList(tv.bounds()));
-	}
-
-	// and finally check for explicitly imported classes (this
-	// assumes there are no unused imports...)
-	if (opt.useImports)
-	    types.addAll(Arrays.asList(importedClasses(c)));
-
-	// compute dependencies
-	for (Type type : types) {
-	    // skip primitives and type variables, as well as dependencies
-	    // on the source class
-	    if (type.isPrimitive() || type instanceof WildcardType || type instanceof TypeVariable
-		    || c.toString().equals(type.asClassDoc().toString()))
-		continue;
-
-	    // check if the destination is excluded from inference
-	    ClassDoc fc = type.asClassDoc();
-	    if (hidden(fc))
-		continue;
-	    
-	    // check if source and destination are in the same package and if we are allowed
-	    // to infer dependencies between classes in the same package
-	    if(!opt.inferDepInPackage && c.containingPackage().equals(fc.containingPackage()))
-		continue;
-
-	    // if source and dest are not already linked, add a dependency
-	    RelationPattern rp = getClassInfo(c, true).getRelation(fc.toString());
-	    if (rp == null || rp.matchesOne(new RelationPattern(RelationDirection.OUT))) {
-		relation(opt, RelationType.DEPEND, c, fc, "", "", "");
+	    if (className == null || className.length() == 0) {
+		w.print(",URL=\"");
+		w.print(classToUrl(className));
+		w.print('"');
 	    }
-	    
-	}
-    }
-    
-    /**
-     * Returns all program element docs that have a visibility greater or
-     * equal than the specified level
-     */
-    private <T extends ProgramElementDoc> List<T> filterByVisibility(T[] docs, Visibility visibility) {
-	if (visibility == Visibility.PRIVATE)
-	    return Arrays.asList(docs);
-
-	List<T> filtered = new ArrayList<T>();
-	for (T doc : docs) {
-	    if (Visibility.get(doc).compareTo(visibility) > 0)
-		filtered.add(doc);
-	}
-	return filtered;
-    }
-
-
-
-    private FieldRelationInfo getFieldRelationInfo(FieldDoc field) {
-	Type type = field.type();
-	if(type.isPrimitive() || type instanceof WildcardType || type instanceof TypeVariable)
-	    return null;
-	
-	if (type.dimension().endsWith("[]")) {
-	    return new FieldRelationInfo(type.asClassDoc(), true);
-	}
-	
-	Options opt = optionProvider.getOptionsFor(type.asClassDoc());
-	if (opt.matchesCollPackageExpression(type.qualifiedTypeName())) {
-	    Type[] argTypes = getInterfaceTypeArguments(collectionClassDoc, type);
-	    if (argTypes != null && argTypes.length == 1 && !argTypes[0].isPrimitive())
-		return new FieldRelationInfo(argTypes[0].asClassDoc(), true);
-
-	    argTypes = getInterfaceTypeArguments(mapClassDoc, type);
-	    if (argTypes != null && argTypes.length == 2 && !argTypes[1].isPrimitive())
-		return new FieldRelationInfo(argTypes[1].asClassDoc(), true);
+	    nodeProperties(opt);
 	}
-
-	return new FieldRelationInfo(type.asClassDoc(), false);
     }
     
-    private Type[] getInterfaceTypeArguments(ClassDoc iface, Type t) {
-	if (t instanceof ParameterizedType) {
-	    ParameterizedType pt = (ParameterizedType) t;
-	    if (iface != null && iface.equals(t.asClassDoc())) {
-		return pt.typeArguments();
-	    } else {
-		for (Type pti : pt.interfaceTypes()) {
-		    Type[] result = getInterfaceTypeArguments(iface, pti);
-		    if (result != null)
-			return result;
-		}
-		if (pt.superclassType() != null)
-		    return getInterfaceTypeArguments(iface, pt.superclassType());
-	    }
-	} else if (t instanceof ClassDoc) {
-	    ClassDoc cd = (ClassDoc) t;
-	    for (Type pti : cd.interfaceTypes()) {
-		Type[] result = getInterfaceTypeArguments(iface, pti);
-		if (result != null)
-		    return result;
-	    }
-	    if (cd.superclassType() != null)
-		return getInterfaceTypeArguments(iface, cd.superclassType());
-	}
-	return null;
-    }
-
     /** Convert the class name into a corresponding URL */
     public String classToUrl(ClassDoc cd, boolean rootClass) {
 	// building relative path for context and package diagrams
@@ -828,33 +713,35 @@ class ClassGraph {
 
     /** Convert the class name into a corresponding URL */
     public String classToUrl(String className) {
-	ClassDoc classDoc = rootClassdocs.get(className);
+	ClassDoc classDoc = model.rootClassdocs.get(className);
 	if (classDoc != null) {
-	    String docRoot = optionProvider.getGlobalOptions().apiDocRoot;
+	    String docRoot = apiDocRoot;
 	    if (docRoot == null)
 		return null;
 	    return new StringBuilder(docRoot.length() + className.length() + 10).append(docRoot) //
 		    .append(classDoc.containingPackage().name().replace('.', '/')) //
 		    .append('/').append(classDoc.name()).append(".html").toString();
 	}
-	String docRoot = optionProvider.getGlobalOptions().getApiDocRoot(className);
-	    if (docRoot == null)
-		return null;
-	int split = splitPackageClass(className);
-	StringBuilder buf = new StringBuilder(docRoot.length() + className.length() + 10).append(docRoot);
-	if (split > 0) // Avoid -1, and the extra slash then.
-	    buf.append(className.substring(0, split).replace('.', '/')).append('/');
-	return buf.append(className, Math.min(split + 1, className.length()), className.length()) //
-		.append(".html").toString();
+	return apiDocMap.getUrl(className);
     }
 
     /** Dot prologue 
      * @throws IOException */
     public void prologue() throws IOException {
+	prologue(null);
+    }
+
+    /**
+     * Dot prologue, writing the graph to the specified stream
+     * @param out the stream, or null for the output file of the options
+     */
+    public void prologue(OutputStream out) throws IOException {
 	Options opt = optionProvider.getGlobalOptions();
 	OutputStream os;
 
-	if (opt.outputFileName.equals("-"))
+	if (out != null)
+	    os = out;
+	else if (opt.outputFileName.equals("-"))
 	    os = System.out;
 	else {
 	    // prepare output file. Use the output file name as a full path unless the output
@@ -868,7 +755,8 @@ class ClassGraph {
 	}
 
 	// print prologue
-	w = new PrintWriter(new OutputStreamWriter(new BufferedOutputStream(os), opt.outputEncoding));
+	// buffer the characters, as the encoder copies every string it is given
+	w = new PrintWriter(new BufferedWriter(new OutputStreamWriter(os, opt.outputEncoding)));
 	w.println(
 	    "#!/usr/local/bin/dot\n" +
 	    "#\n" +
@@ -897,6 +785,15 @@ class ClassGraph {
 	    w.println(linePrefix + "bgcolor=\"" + opt.bgColor + "\";\n");
     }
 
+    /** Return the names of the classes that are not hidden in the graph */
+    public Set<String> shownClasses() {
+	Set<String> names = new TreeSet<String>();
+	for (int id = 0; id < registry.size(); id++)
+	    if (!registry.isHidden(id))
+		names.add(registry.name(id));
+	return names;
+    }
+
     /** Dot epilogue */
     public void epilogue() {
 	w.println("}\n");
@@ -904,58 +801,102 @@ class ClassGraph {
 	w.close();
     }
     
-    private void externalTableStart(Options opt, String name, String url) {
-	String bgcolor = opt.nodeFillColor == null ? "" : (" bgcolor=\"" + opt.nodeFillColor + "\"");
-	String href = url == null ? "" : (" href=\"" + url + "\" target=\"_parent\"");
-	w.print("<<table title=\"" + name + "\" border=\"0\" cellborder=\"" + 
-	    opt.shape.cellBorder() + "\" cellspacing=\"0\" " +
-	    "cellpadding=\"2\"" + bgcolor + href + ">" + linePostfix);
+    protected void externalTableStart(Options opt, String name, String url) {
+	w.print("<<table title=\"");
+	w.print(name);
+	w.print("\" border=\"0\" cellborder=\"");
+	w.print(opt.shape.cellBorder());
+	w.print("\" cellspacing=\"0\" cellpadding=\"2\"");
+	if (opt.nodeFillColor != null) {
+	    w.print(" bgcolor=\"");
+	    w.print(opt.nodeFillColor);
+	    w.print('"');
+	}
+	if (url != null) {
+	    w.print(" href=\"");
+	    w.print(url);
+	    w.print("\" target=\"_parent\"");
+	}
+	w.print('>');
+	w.print(linePostfix);
     }
     
-    private void externalTableEnd() {
-	w.print(linePrefix + linePrefix + "</table>>");
+    protected void externalTableEnd() {
+	indent();
+	w.print("</table>>");
     }
     
-    private void innerTableStart() {
-	w.print(linePrefix + linePrefix + "<tr><td><table border=\"0\" cellspacing=\"0\" "
-		+ "cellpadding=\"1\">" + linePostfix);
+    protected void innerTableStart() {
+	indent();
+	w.print("<tr><td><table border=\"0\" cellspacing=\"0\" cellpadding=\"1\">");
+	w.print(linePostfix);
     }
     
     /**
      * Start the first inner table of a class.
      */
     private void firstInnerTableStart(Options opt) {
-	w.print(linePrefix + linePrefix + "<tr>" + opt.shape.extraColumn() +
-		"<td><table border=\"0\" cellspacing=\"0\" " +
-		"cellpadding=\"1\">" + linePostfix);
+	indent();
+	w.print("<tr>");
+	w.print(opt.shape.extraColumn());
+	w.print("<td><table border=\"0\" cellspacing=\"0\" cellpadding=\"1\">");
+	w.print(linePostfix);
     }
     
-    private void innerTableEnd() {
-	w.print(linePrefix + linePrefix + "</table></td></tr>" + linePostfix);
+    protected void innerTableEnd() {
+	indent();
+	w.print("</table></td></tr>");
+	w.print(linePostfix);
     }
 
     /**
      * End the first inner table of a class.
      */
     private void firstInnerTableEnd(Options opt) {
-	w.print(linePrefix + linePrefix + "</table></td>" +
-	    opt.shape.extraColumn() + "</tr>" + linePostfix);
+	indent();
+	w.print("</table></td>");
+	w.print(opt.shape.extraColumn());
+	w.print("</tr>");
+	w.print(linePostfix);
     }
 
     private void tableLine(Align align, String text) {
-	w.print(linePrefix + linePrefix //
-		+ "<tr><td align=\"" + align.lower + "\" balign=\"" + align.lower + "\"> " //
-		+ text // MAY contain markup!
-		+ " </td></tr>" + linePostfix);
+	tableLineStart(align);
+	w.print(text); // MAY contain markup!
+	tableLineEnd();
     }
 
-    private static class FieldRelationInfo {
-	ClassDoc cd;
-	boolean multiple;
+    /**
+     * Print a table line with the specified text, escaped and wrapped in
+     * the specified font
+     * @param htmlNewlines if true, newlines are printed as HTML line breaks
+     */
+    protected void tableLine(Align align, Font font, Options opt, String text, boolean htmlNewlines) {
+	tableLineStart(align);
+	if (!text.isEmpty())
+	    font.start(opt, w);
+	escape(w, text, htmlNewlines);
+	if (!text.isEmpty())
+	    font.end(opt, w);
+	tableLineEnd();
+    }
 
-	public FieldRelationInfo(ClassDoc cd, boolean multiple) {
-	    this.cd = cd;
-	    this.multiple = multiple;
-	}
+    private void tableLineStart(Align align) {
+	indent();
+	w.print("<tr><td align=\"");
+	w.print(align.lower);
+	w.print("\" balign=\"");
+	w.print(align.lower);
+	w.print("\"> ");
+    }
+
+    private void tableLineEnd() {
+	w.print(" </td></tr>");
+	w.print(linePostfix);
+    }
+
+    private void indent() {
+	w.print(linePrefix);
+	w.print(indentStep);
     }
 }
@@ -0,0 +1,173 @@
+/*
+ * Create a graphviz graph based on the classes in the specified java
+ * source files.
+ *
+ * (C) Copyright 2002-2010 Diomidis Spinellis
+ *
+ * Permission to use, copy, and distribute this software and its
+ * documentation for any purpose and without fee is hereby granted,
+ * provided that the above copyright notice appear in all copies and that
+ * both that copyright notice and this permission notice appear in
+ * supporting documentation.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND WITHOUT ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF
+ * MERCHANTIBILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ *
+ */
+
+package org.umlgraph.doclet;
+
+import static org.umlgraph.doclet.StringUtil.removeTemplate;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The classes of a graph and the relations among them.
+ * Every class is registered once, under its name without template
+ * arguments, and gets a dense integer id, which also gives its
+ * dot-compatible alias.
+ * The relations are kept in a single open addressing table of primitive
+ * arrays, keyed by the ids of the two classes.
+ * For each relation type the table holds the relation's direction in two
+ * bits, IN and OUT, so that adding a direction is a bitwise or.
+ *
+ * @version $Revision$
+ * @author <a href="http://www.spinellis.gr">Diomidis Spinellis</a>
+ */
+class ClassRegistry {
+    /** Class ids, by name, and by the names with template arguments seen */
+    private final Map<String, Integer> ids = new HashMap<String, Integer>();
+    /** Class names, by id */
+    private final List<String> names = new ArrayList<String>();
+    private final BitSet hidden = new BitSet();
+    private final BitSet printed = new BitSet();
+
+    /** Relation table keys: the ids of the two classes, 0 for empty slots */
+    private long[] keys = new long[64];
+    /** The directions of each relation type, two bits per type */
+    private int[] patterns = new int[64];
+    private int relations;
+
+    /** Return the id of the specified class, or -1 if it is not registered */
+    public int find(String className) {
+	Integer id = ids.get(className);
+	if (id == null) {
+	    String name = removeTemplate(className);
+	    if (name == className)
+		return -1;
+	    id = ids.get(name);
+	    if (id == null)
+		return -1;
+	    // remember the name as written, to avoid removing the template again
+	    ids.put(className, id);
+	}
+	return id;
+    }
+
+    /** Register a class that is not yet registered and return its id */
+    public int add(String className, boolean hide) {
+	int id = names.size();
+	String name = removeTemplate(className);
+	names.add(name);
+	ids.put(name, id);
+	if (hide)
+	    hidden.set(id);
+	return id;
+    }
+
+    /** Return the number of registered classes */
+    public int size() {
+	return names.size();
+    }
+
+    /** Return the name of a class, without template arguments */
+    public String name(int id) {
+	return names.get(id);
+    }
+
+    /** Return the dot-compatible alias of a class */
+    public static String alias(int id) {
+	return "c" + id;
+    }
+
+    /** Return true if the class node is hidden */
+    public boolean isHidden(int id) {
+	return hidden.get(id);
+    }
+
+    /** Return true if the class node has been printed */
+    public boolean isPrinted(int id) {
+	return printed.get(id);
+    }
+
+    public void setPrinted(int id) {
+	printed.set(id);
+    }
+
+    /** Add a relation of the specified type and direction from one class to another */
+    public void addRelation(int from, int to, RelationType rt, RelationDirection d) {
+	int slot = slot(from, to);
+	if (keys[slot] == 0) {
+	    keys[slot] = key(from, to);
+	    if (++relations * 2 > keys.length)
+		rehash();
+	    slot = slot(from, to);
+	}
+	patterns[slot] |= d.ordinal() << (2 * rt.ordinal());
+    }
+
+    /**
+     * Return the relations from one class to another, or null if the
+     * classes are not related
+     */
+    public RelationPattern getRelation(int from, int to) {
+	if (from < 0 || to < 0)
+	    return null;
+	int slot = slot(from, to);
+	if (keys[slot] == 0)
+	    return null;
+	RelationPattern rp = new RelationPattern(RelationDirection.NONE);
+	RelationDirection[] directions = RelationDirection.values();
+	for (int i = 0; i < rp.directions.length; i++)
+	    rp.directions[i] = directions[(patterns[slot] >>> (2 * i)) & 3];
+	return rp;
+    }
+
+    /** Return the non-zero key of the relation between two classes */
+    private static long key(int from, int to) {
+	return ((long) (from + 1) << 32) | (to + 1);
+    }
+
+    /** Return the slot holding, or that would hold, the specified relation */
+    private int slot(int from, int to) {
+	long key = key(from, to);
+	int mask = keys.length - 1;
+	long h = key * 0x9E3779B97F4A7C15L;
+	int slot = (int) (h >>> 32) & mask;
+	while (keys[slot] != 0 && keys[slot] != key)
+	    slot = (slot + 1) & mask;
+	return slot;
+    }
+
+    private void rehash() {
+	long[] oldKeys = keys;
+	int[] oldPatterns = patterns;
+	keys = new long[oldKeys.length * 2];
+	patterns = new int[oldKeys.length * 2];
+	for (int i = 0; i < oldKeys.length; i++) {
+	    if (oldKeys[i] == 0)
+		continue;
+	    int from = (int) (oldKeys[i] >>> 32) - 1;
+	    int to = (int) oldKeys[i] - 1;
+	    int slot = slot(from, to);
+	    keys[slot] = oldKeys[i];
+	    patterns[slot] = oldPatterns[i];
+	}
+    }
+}
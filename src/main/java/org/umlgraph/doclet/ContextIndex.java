@@ -0,0 +1,193 @@
+/*
+ * Create a graphviz graph based on the classes in the specified java
+ * source files.
+ *
+ * (C) Copyright 2002-2010 Diomidis Spinellis
+ *
+ * Permission to use, copy, and distribute this software and its
+ * documentation for any purpose and without fee is hereby granted,
+ * provided that the above copyright notice appear in all copies and that
+ * both that copyright notice and this permission notice appear in
+ * supporting documentation.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND WITHOUT ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF
+ * MERCHANTIBILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ *
+ */
+
+package org.umlgraph.doclet;
+
+import static org.umlgraph.doclet.StringUtil.removeTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.sun.javadoc.ClassDoc;
+
+/**
+ * Index of the relations each class has to its neighbours, used to decide
+ * whether a class is in the context of another.
+ * <p>
+ * For every class the index keeps, by neighbour, the relations the class
+ * itself specifies, and the candidates for inferred relations and
+ * dependencies. The relation types and directions are packed in an int,
+ * two bits (IN and OUT) per type, as in the ClassRegistry.
+ * The relations between a context center and a class are then found
+ * from the entries of the two classes alone, applying the rules that
+ * prevent inferring a relation between classes that are already related.
+ * The index depends only on the model and the options, and is shared by
+ * all the context matchers with the same options.
+ * @depend - - - GraphModel
+ *
+ * @version $Revision$
+ * @author <a href="http://www.spinellis.gr">Diomidis Spinellis</a>
+ */
+class ContextIndex {
+    private static final int EXPLICIT = 0, INFERRED = 1, DEPENDENCY = 2;
+    /** The OUT bit of every relation type */
+    private static final int OUT_BITS = 0xAAAAAAAA;
+    private final GraphModel model;
+    private final Options opt;
+    private final ConcurrentHashMap<ClassDoc, Map<String, int[]>> neighbours
+	= new ConcurrentHashMap<ClassDoc, Map<String, int[]>>();
+    /** The documented classes that refer to each class, built on demand */
+    private Map<String, List<ClassDoc>> referrers;
+
+    ContextIndex(GraphModel model, Options opt) {
+	this.model = model;
+	this.opt = opt;
+    }
+
+    /**
+     * Return the relations between a context center and the specified
+     * class, as seen from the center, or null if they are not related
+     * @param center the context center
+     * @param name the name of the class
+     * @param cd the class, or null if its own relations are not known
+     */
+    public RelationPattern getRelation(ClassDoc center, String name, ClassDoc cd) {
+	int[] out = neighbours(center).get(removeTemplate(name));
+	int centerRelations = out == null ? 0 : relations(out, 0);
+	int relations = centerRelations;
+	if (cd != null && !cd.equals(center)) {
+	    int[] in = neighbours(cd).get(removeTemplate(center.toString()));
+	    if (in != null)
+		relations |= inverse(relations(in, inverse(centerRelations)));
+	}
+	if (relations == 0)
+	    return null;
+	RelationPattern rp = new RelationPattern(RelationDirection.NONE);
+	RelationDirection[] directions = RelationDirection.values();
+	for (int i = 0; i < rp.directions.length; i++)
+	    rp.directions[i] = directions[(relations >>> (2 * i)) & 3];
+	return rp;
+    }
+
+    /**
+     * Return the names of the classes the specified class may be related
+     * to: those it refers to, and the documented classes that refer to it
+     */
+    public Set<String> neighbourNames(ClassDoc cd) {
+	Set<String> names = new TreeSet<String>(neighbours(cd).keySet());
+	List<ClassDoc> refs = referrers().get(removeTemplate(cd.toString()));
+	if (refs != null)
+	    for (ClassDoc ref : refs)
+		names.add(removeTemplate(ref.toString()));
+	names.remove(removeTemplate(cd.toString()));
+	return names;
+    }
+
+    /** Return the documented classes that refer to each class, by name */
+    private synchronized Map<String, List<ClassDoc>> referrers() {
+	if (referrers == null) {
+	    referrers = new HashMap<String, List<ClassDoc>>();
+	    for (ClassDoc cd : model.classes)
+		for (String name : neighbours(cd).keySet()) {
+		    List<ClassDoc> refs = referrers.get(name);
+		    if (refs == null)
+			referrers.put(name, refs = new ArrayList<ClassDoc>());
+		    refs.add(cd);
+		}
+	}
+	return referrers;
+    }
+
+    /**
+     * Return the relations a class adds to a neighbour, given the
+     * relations already recorded between the two
+     */
+    private static int relations(int[] entry, int existing) {
+	int related = existing | entry[EXPLICIT];
+	// associations are only inferred between unrelated classes
+	int inferred = related == 0 ? entry[INFERRED] : 0;
+	related |= inferred;
+	// dependencies are only inferred if nothing else goes out of the class
+	int dependency = related == 0 || (related & OUT_BITS) != 0 ? entry[DEPENDENCY] : 0;
+	return entry[EXPLICIT] | inferred | dependency;
+    }
+
+    /** Turn IN directions into OUT and vice-versa */
+    private static int inverse(int relations) {
+	return ((relations & 0x55555555) << 1) | ((relations & OUT_BITS) >>> 1);
+    }
+
+    /** Return the relations of the specified class, by neighbour */
+    private Map<String, int[]> neighbours(ClassDoc cd) {
+	Map<String, int[]> n = neighbours.get(cd);
+	if (n == null) {
+	    Collector collector = new Collector();
+	    collector.kind = EXPLICIT;
+	    collector.addRelations(cd);
+	    if (opt.inferRelationships) {
+		collector.kind = INFERRED;
+		collector.addInferredRelations(cd);
+	    }
+	    if (opt.inferDependencies) {
+		collector.kind = DEPENDENCY;
+		collector.addInferredDependencies(cd);
+	    }
+	    n = collector.found;
+	    neighbours.putIfAbsent(cd, n);
+	}
+	return n;
+    }
+
+    /**
+     * Collects the relations a class specifies, and all the candidates
+     * for inferred relations and dependencies, by neighbour
+     */
+    private class Collector extends RelationGraph {
+	int kind;
+	final Map<String, int[]> found = new HashMap<String, int[]>();
+
+	Collector() {
+	    super(ContextIndex.this.model, ContextIndex.this.opt);
+	}
+
+	@Override
+	protected void relation(Options opt, RelationType rt, ClassDoc from, String fromName,
+		ClassDoc to, String toName, String tailLabel, String label, String headLabel) {
+	    String name = removeTemplate(toName);
+	    int[] entry = found.get(name);
+	    if (entry == null)
+		found.put(name, entry = new int[3]);
+	    RelationDirection d = RelationDirection.BOTH;
+	    if(rt == RelationType.NAVASSOC || rt == RelationType.DEPEND)
+		d = RelationDirection.OUT;
+	    entry[kind] |= d.ordinal() << (2 * rt.ordinal());
+	}
+
+	/** Report no existing relations, to collect every inference candidate */
+	@Override
+	public RelationPattern getRelation(ClassDoc from, String toName) {
+	    return null;
+	}
+    }
+}
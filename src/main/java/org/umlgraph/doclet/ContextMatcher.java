@@ -17,9 +17,9 @@
 
 package org.umlgraph.doclet;
 
+import static org.umlgraph.doclet.StringUtil.removeTemplate;
+
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.io.Writer;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
@@ -35,18 +35,24 @@ import com.sun.javadoc.RootDoc;
  * lookup. Depending on the specified Options, inferred relations and
  * dependencies will be used as well.
  * <p>
- * This class needs to perform quite a bit of computations in order to gather
- * the network of class releationships, so you are allowed to reuse it should
- * you
+ * The relations among the classes are looked up in a ContextIndex, which
+ * is shared by all the context matchers with the same options.
+ * The context is computed once, by a breadth-first search from the
+ * center classes that follows the relations up to the -contextdepth hop,
+ * and stops adding classes once -contextmaxnodes classes have been found.
+ * Only classes documented by javadoc are expanded; other classes are
+ * leaves of the context.
  * @author wolf
  * 
- * @depend - - - DevNullWriter
+ * @depend - - - ContextIndex
  */
 public class ContextMatcher implements ClassMatcher {
-    ClassGraphHack cg;
+    ContextIndex index;
+    GraphModel model;
     Pattern pattern;
     List<ClassDoc> matched;
-    Set<String> visited = new HashSet<String>();
+    /** The names of the classes in the context */
+    Set<String> context;
     /** The options will be used to decide on inference */
     Options opt;
     RootDoc root;
@@ -70,7 +76,8 @@ public class ContextMatcher implements ClassMatcher {
 	opt.setOption(new String[] { "!hide" });
 	opt.setOption(new String[] { "!attributes" });
 	opt.setOption(new String[] { "!operations" });
-	this.cg = new ClassGraphHack(root, opt);
+	this.model = GraphModel.of(root);
+	this.index = model.contextIndex(opt);
 
 	setContextCenter(pattern);
     }
@@ -83,37 +90,47 @@ public class ContextMatcher implements ClassMatcher {
      * @param pattern
      */
     public void setContextCenter(Pattern pattern) {
-	// build up the classgraph printing the relations for all of the
-	// classes that make up the "center" of this context
 	this.pattern = pattern;
 	matched = new ArrayList<ClassDoc>();
-	for (ClassDoc cd : root.classes()) {
-	    if (pattern.matcher(cd.toString()).matches()) {
+	for (ClassDoc cd : root.classes())
+	    if (pattern.matcher(cd.toString()).matches())
 		matched.add(cd);
-		addToGraph(cd);
-	    }
-	}
+	context = findContext();
     }
 
     /**
-     * Adds the specified class to the internal class graph along with its
-     * relations and dependencies, eventually inferring them, according to the
-     * Options specified for this matcher
-     * @param cd
+     * Return the names of the classes within the context depth of the
+     * matched classes, following at each hop the relations specified by
+     * the -contexthoppattern or the -contextPattern options
      */
-    private void addToGraph(ClassDoc cd) {
-	// avoid adding twice the same class, but don't rely on cg.getClassInfo
-	// since there are other ways to add a classInfor than printing the class
-	if (visited.contains(cd.toString()))
-	    return;
-
-	visited.add(cd.toString());
-	cg.printClass(cd, false);
-	cg.printRelations(cd);
-	if (opt.inferRelationships)
-	    cg.printInferredRelations(cd);
-	if (opt.inferDependencies)
-	    cg.printInferredDependencies(cd);
+    private Set<String> findContext() {
+	Set<String> found = new HashSet<String>();
+	List<ClassDoc> frontier = new ArrayList<ClassDoc>();
+	for (ClassDoc cd : matched)
+	    if (found.add(removeTemplate(cd.toString())))
+		frontier.add(cd);
+	for (int hop = 1; hop <= opt.contextDepth && !frontier.isEmpty(); hop++) {
+	    RelationPattern hopPattern = opt.contextHopPatterns.get(hop);
+	    List<ClassDoc> next = new ArrayList<ClassDoc>();
+	    for (ClassDoc from : frontier) {
+		for (String name : index.neighbourNames(from)) {
+		    if (found.contains(name))
+			continue;
+		    ClassDoc cd = model.rootClassdocs.get(name);
+		    RelationPattern rp = index.getRelation(from, name, cd);
+		    if (rp == null || !(hopPattern == null ? opt.contextRelationPattern.matchesOne(rp)
+			    : hopPattern.containsOne(rp)))
+			continue;
+		    if (opt.contextMaxNodes > 0 && found.size() >= opt.contextMaxNodes)
+			return found;
+		    found.add(name);
+		    if (cd != null)
+			next.add(cd);
+		}
+	    }
+	    frontier = next;
+	}
+	return found;
     }
 
     /**
@@ -127,9 +144,6 @@ public class ContextMatcher implements ClassMatcher {
 	if (matched.contains(cd))
 	    return true;
 
-	// otherwise, add the class to the graph and see if it's associated
-	// with any of the matched classes using the classgraph hack
-	addToGraph(cd);
 	return matches(cd.toString());
     }
 
@@ -137,60 +151,7 @@ public class ContextMatcher implements ClassMatcher {
      * @see org.umlgraph.doclet.ClassMatcher#matches(java.lang.String)
      */
     public boolean matches(String name) {
-	if (pattern.matcher(name).matches())
-	    return true;
-
-	for (ClassDoc mcd : matched) {
-	    RelationPattern rp = cg.getClassInfo(mcd, true).getRelation(name);
-	    if (rp != null && opt.contextRelationPattern.matchesOne(rp))
-		return true;
-	}
-	return false;
-    }
-
-    /**
-     * A quick hack to compute class dependencies reusing ClassGraph but
-     * without generating output. Will be removed once the ClassGraph class
-     * will be split into two classes for graph computation and output
-     * generation.
-     * @author wolf
-     * 
-     */
-    private static class ClassGraphHack extends ClassGraph {
-
-	public ClassGraphHack(RootDoc root, OptionProvider optionProvider) throws IOException {
-	    super(root, optionProvider, null);
-	    prologue();
-	}
-
-	@Override
-	public void prologue() throws IOException {
-	    w = new PrintWriter(new DevNullWriter());
-	}
-
-    }
-
-    /**
-     * Simple dev/null imitation
-     * @author wolf
-     */
-    private static class DevNullWriter extends Writer {
-
-	@Override
-	public void write(char[] cbuf, int off, int len) throws IOException {
-	    // nothing to do
-	}
-
-	@Override
-	public void flush() throws IOException {
-	    // nothing to do
-	}
-
-	@Override
-	public void close() throws IOException {
-	    // nothing to do
-	}
-
+	return pattern.matcher(name).matches() || context.contains(removeTemplate(name));
     }
 
 }
@@ -14,18 +14,23 @@ import com.sun.javadoc.RootDoc;
  * single {@linkplain ContextMatcher}, but provides some extra configuration
  * such as context highlighting and output path configuration (and it is
  * specified in code rather than in javadoc comments).
+ * <p>
+ * A context view is built for a single center class and is not modified
+ * afterwards, so that the context diagrams of different classes can be
+ * generated in parallel.
  * @author wolf
  * 
  */
 public class ContextView implements OptionProvider {
 
-    private ClassDoc cd;
-    private ContextMatcher matcher;
-    private Options globalOptions;
-    private Options myGlobalOptions;
-    private Options hideOptions;
-    private Options centerOptions;
-    private Options packageOptions;
+    private final ClassDoc cd;
+    private final ContextMatcher matcher;
+    private final Options globalOptions;
+    private final Options myGlobalOptions;
+    private final Options hideOptions;
+    private final Options centerOptions;
+    private final Options packageOptions;
+    private final OptionCache optionCache = new OptionCache();
     private static final String[] HIDE_OPTIONS = new String[] { "hide" };
 
     public ContextView(String outputFolder, ClassDoc cd, RootDoc root, Options parent)
@@ -55,14 +60,12 @@ public class ContextView implements OptionProvider {
 	this.matcher = new ContextMatcher(root, Pattern.compile(Pattern.quote(cd.toString())),
 		myGlobalOptions, true);
 
-    }
+	// the prepared options are shared by the classes that use them
+	globalOptions.freeze();
+	packageOptions.freeze();
+	hideOptions.freeze();
+	centerOptions.freeze();
 
-    public void setContextCenter(ClassDoc contextCenter) {
-	this.cd = contextCenter;
-	String outputPath = cd.containingPackage().name().replace('.', '/') + "/" + cd.name()
-		+ ".dot";
-	this.myGlobalOptions.setOption(new String[] { "output", outputPath });
-	matcher.setContextCenter(Pattern.compile(Pattern.quote(cd.toString())));
     }
 
     public String getDisplayName() {
@@ -70,10 +73,21 @@ public class ContextView implements OptionProvider {
     }
 
     public Options getGlobalOptions() {
-	return myGlobalOptions;
+	return (Options) myGlobalOptions.clone();
     }
 
     public Options getOptionsFor(ClassDoc cd) {
+	Options opt = optionCache.get(cd);
+	if (opt == null)
+	    opt = optionCache.put(cd, resolveOptionsFor(cd));
+	return opt;
+    }
+
+    /**
+     * Return the options of the specified class. Only classes with option
+     * tags get options of their own; the others share the prepared ones.
+     */
+    private Options resolveOptionsFor(ClassDoc cd) {
 	Options opt;
 	if (globalOptions.matchesHideExpression(cd.qualifiedName())
 		|| !(matcher.matches(cd) || globalOptions.matchesIncludeExpression(cd.qualifiedName()))) {
@@ -85,22 +99,24 @@ public class ContextView implements OptionProvider {
 	} else {
 		opt = globalOptions;
 	}
+	if (cd.tags("opt").length == 0)
+	    return opt;
 	Options optionClone = (Options) opt.clone();
 	overrideForClass(optionClone, cd);
 	return optionClone;
     }
 
+    /**
+     * Return the options of the named class. These are always the
+     * prepared ones, to which the class overrides add nothing.
+     */
     public Options getOptionsFor(String name) {
-	Options opt;
 	if (!matcher.matches(name))
-		opt = hideOptions;
+		return hideOptions;
 	else if (name.equals(cd.name()))
-		opt = centerOptions;
+		return centerOptions;
 	else
-		opt = globalOptions;
-	Options optionClone = (Options) opt.clone();
-	overrideForClass(optionClone, name);
-	return optionClone;
+		return globalOptions;
     }
 
     public void overrideForClass(Options opt, ClassDoc cd) {
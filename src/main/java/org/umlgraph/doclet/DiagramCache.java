@@ -0,0 +1,279 @@
+/*
+ * Create a graphviz graph based on the classes in the specified java
+ * source files.
+ *
+ * (C) Copyright 2002-2010 Diomidis Spinellis
+ *
+ * Permission to use, copy, and distribute this software and its
+ * documentation for any purpose and without fee is hereby granted,
+ * provided that the above copyright notice appear in all copies and that
+ * both that copyright notice and this permission notice appear in
+ * supporting documentation.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND WITHOUT ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF
+ * MERCHANTIBILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ *
+ */
+
+package org.umlgraph.doclet;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Persistent cache of rendered SVG diagrams, shared among javadoc runs.
+ * Entries are keyed by a hash of the dot text, the dot executable and
+ * its version, or the version of the in-process layout, so that an
+ * unchanged diagram need not be rendered again.
+ * New entries are written to a temporary file and renamed into place,
+ * which makes the cache safe for concurrent writers.
+ * When it grows past its size limit, the least recently used entries
+ * are evicted.
+ *
+ * @version $Revision$
+ * @author <a href="http://www.spinellis.gr">Diomidis Spinellis</a>
+ */
+class DiagramCache {
+    private static final String SUFFIX = ".svg";
+    private final File directory;
+    private final long maxSize;
+    /** Identifies the renderer and its version in the keys */
+    private final String renderer;
+
+    private DiagramCache(File directory, long maxSize, String renderer) {
+	this.directory = directory;
+	this.maxSize = maxSize;
+	this.renderer = renderer;
+    }
+
+    /**
+     * Open the cache in the specified directory.
+     * @param directory the cache directory, created if needed
+     * @param maxSize the maximum size of the cache in bytes
+     * @param dotExecutable the dot executable rendering the diagrams
+     * @return the cache, or null if it can not be used
+     */
+    public static DiagramCache open(File directory, long maxSize, String dotExecutable) {
+	if (!usable(directory))
+	    return null;
+	String version = dotVersion(dotExecutable);
+	if (version == null) {
+	    System.err.println("Unable to determine the dot version, not using the diagram cache");
+	    return null;
+	}
+	return new DiagramCache(directory, maxSize, dotExecutable + "\n" + version + "\n");
+    }
+
+    /**
+     * Open the cache in the specified directory, for the diagrams laid out
+     * in-process by LayoutRenderer.
+     * @param directory the cache directory, created if needed
+     * @param maxSize the maximum size of the cache in bytes
+     * @return the cache, or null if it can not be used
+     */
+    public static DiagramCache openForLayout(File directory, long maxSize) {
+	if (!usable(directory))
+	    return null;
+	return new DiagramCache(directory, maxSize, "UMLGraph layout\n" + Version.VERSION + "\n");
+    }
+
+    /** Return true if the cache directory exists, or could be created */
+    private static boolean usable(File directory) {
+	if (!directory.isDirectory() && !directory.mkdirs()) {
+	    System.err.println("Skipping invalid dotcache " + directory);
+	    return false;
+	}
+	return true;
+    }
+
+    /** Return the version line dot -V reports, or null if dot could not be run */
+    private static String dotVersion(String dotExecutable) {
+	try {
+	    Process p = Runtime.getRuntime().exec(new String[] { dotExecutable, "-V" });
+	    p.getOutputStream().close();
+	    p.getInputStream().close();
+	    BufferedReader reader = new BufferedReader(new InputStreamReader(p.getErrorStream()));
+	    StringBuilder version = new StringBuilder();
+	    String line;
+	    while ((line = reader.readLine()) != null)
+		version.append(line).append('\n');
+	    reader.close();
+	    return p.waitFor() == 0 ? version.toString() : null;
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    return null;
+	} catch (IOException e) {
+	    return null;
+	}
+    }
+
+    /**
+     * Copy the cached diagram of the specified dot file to svgFile.
+     * @return true on a cache hit
+     */
+    public boolean fetch(File dotFile, File svgFile) {
+	try {
+	    return fetchEntry(entry(dotFile), svgFile);
+	} catch (IOException e) {
+	    return false;
+	}
+    }
+
+    /**
+     * Copy the cached diagram of the specified dot text to svgFile.
+     * @return true on a cache hit
+     */
+    public boolean fetch(byte[] dot, File svgFile) {
+	try {
+	    return fetchEntry(entry(dot), svgFile);
+	} catch (IOException e) {
+	    return false;
+	}
+    }
+
+    private boolean fetchEntry(File entry, File svgFile) {
+	try {
+	    if (!entry.isFile())
+		return false;
+	    copy(entry, svgFile);
+	    // record the use for the LRU eviction
+	    entry.setLastModified(System.currentTimeMillis());
+	    return true;
+	} catch (IOException e) {
+	    // the entry may have been evicted by a concurrent run
+	    return false;
+	}
+    }
+
+    /** Add the diagram rendered from the specified dot file to the cache */
+    public void store(File dotFile, File svgFile) {
+	try {
+	    storeEntry(entry(dotFile), svgFile);
+	} catch (IOException e) {
+	    System.err.println("Unable to cache " + svgFile + ": " + e);
+	}
+    }
+
+    /** Add the diagram rendered from the specified dot text to the cache */
+    public void store(byte[] dot, File svgFile) {
+	try {
+	    storeEntry(entry(dot), svgFile);
+	} catch (IOException e) {
+	    System.err.println("Unable to cache " + svgFile + ": " + e);
+	}
+    }
+
+    private void storeEntry(File entry, File svgFile) {
+	File temp = null;
+	try {
+	    temp = File.createTempFile("svg", ".tmp", directory);
+	    copy(svgFile, temp);
+	    if (!temp.renameTo(entry)) {
+		// another writer may have stored the same diagram
+		temp.delete();
+	    }
+	} catch (IOException e) {
+	    System.err.println("Unable to cache " + svgFile + ": " + e);
+	    if (temp != null)
+		temp.delete();
+	}
+    }
+
+    /** Remove the least recently used entries that exceed the size limit */
+    public void evict() {
+	File[] entries = directory.listFiles(new FilenameFilter() {
+	    public boolean accept(File dir, String name) {
+		return name.endsWith(SUFFIX);
+	    }
+	});
+	if (entries == null)
+	    return;
+	long size = 0;
+	for (File entry : entries)
+	    size += entry.length();
+	if (size <= maxSize)
+	    return;
+	Arrays.sort(entries, new Comparator<File>() {
+	    public int compare(File f1, File f2) {
+		long m1 = f1.lastModified(), m2 = f2.lastModified();
+		return m1 < m2 ? -1 : m1 > m2 ? 1 : 0;
+	    }
+	});
+	for (int i = 0; i < entries.length && size > maxSize; i++) {
+	    long length = entries[i].length();
+	    if (entries[i].delete())
+		size -= length;
+	}
+    }
+
+    /** Return the cache entry of the specified dot file */
+    private File entry(File dotFile) throws IOException {
+	MessageDigest digest = digest();
+	InputStream in = new FileInputStream(dotFile);
+	try {
+	    byte[] buffer = new byte[8192];
+	    int n;
+	    while ((n = in.read(buffer)) > 0)
+		digest.update(buffer, 0, n);
+	} finally {
+	    in.close();
+	}
+	return entry(digest);
+    }
+
+    /** Return the cache entry of the specified dot text */
+    private File entry(byte[] dot) throws IOException {
+	MessageDigest digest = digest();
+	digest.update(dot);
+	return entry(digest);
+    }
+
+    /** Return a digest of the renderer, to be completed with the dot text */
+    private MessageDigest digest() throws IOException {
+	MessageDigest digest;
+	try {
+	    digest = MessageDigest.getInstance("SHA-1");
+	} catch (NoSuchAlgorithmException e) {
+	    throw new IOException(e.toString());
+	}
+	digest.update(renderer.getBytes("UTF-8"));
+	return digest;
+    }
+
+    /** Return the cache entry named after the specified completed digest */
+    private File entry(MessageDigest digest) {
+	StringBuilder name = new StringBuilder();
+	for (byte b : digest.digest())
+	    name.append(String.format("%02x", b & 0xff));
+	return new File(directory, name.append(SUFFIX).toString());
+    }
+
+    private static void copy(File from, File to) throws IOException {
+	FileChannel in = new FileInputStream(from).getChannel();
+	try {
+	    FileChannel out = new FileOutputStream(to).getChannel();
+	    try {
+		long size = in.size();
+		for (long position = 0; position < size; )
+		    position += in.transferTo(position, size - position, out);
+	    } finally {
+		out.close();
+	    }
+	} finally {
+	    in.close();
+	}
+    }
+}
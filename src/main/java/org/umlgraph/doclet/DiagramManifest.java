@@ -0,0 +1,305 @@
+/*
+ * Create a graphviz graph based on the classes in the specified java
+ * source files.
+ *
+ * (C) Copyright 2002-2010 Diomidis Spinellis
+ *
+ * Permission to use, copy, and distribute this software and its
+ * documentation for any purpose and without fee is hereby granted,
+ * provided that the above copyright notice appear in all copies and that
+ * both that copyright notice and this permission notice appear in
+ * supporting documentation.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND WITHOUT ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF
+ * MERCHANTIBILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ *
+ */
+
+package org.umlgraph.doclet;
+
+import static org.umlgraph.doclet.StringUtil.removeTemplate;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import com.sun.javadoc.AnnotationDesc;
+import com.sun.javadoc.ClassDoc;
+import com.sun.javadoc.ConstructorDoc;
+import com.sun.javadoc.Doc;
+import com.sun.javadoc.FieldDoc;
+import com.sun.javadoc.MethodDoc;
+import com.sun.javadoc.PackageDoc;
+import com.sun.javadoc.ProgramElementDoc;
+
+/**
+ * Records the inputs of the diagrams of a UMLGraphDoc run, so that the
+ * next run can regenerate only the diagrams whose inputs changed.
+ * <p>
+ * The manifest holds a fingerprint of the options, a fingerprint of the
+ * declaration and comments of every class, and the classes shown in each
+ * diagram. A diagram is out of date when the options changed, when one of
+ * its classes changed, or when a changed class refers to one of its
+ * classes, or is referred by one, and may therefore join the diagram.
+ * A package diagram is also out of date when a class of its package
+ * changed.
+ * @depend - - - GraphModel
+ *
+ * @version $Revision$
+ * @author <a href="http://www.spinellis.gr">Diomidis Spinellis</a>
+ */
+class DiagramManifest {
+    private static final String HEADER = "# UMLGraph diagram manifest";
+    private final File file;
+    private final String settings;
+    /** True if the diagrams of the previous run must have kept their dot files */
+    private final boolean dotFiles;
+    /** Fingerprints of the classes of this run */
+    private final Map<String, String> fingerprints = new TreeMap<String, String>();
+    /** Packages of the classes of this run */
+    private final Map<String, String> packages = new HashMap<String, String>();
+    /** Classes each class of this run refers to */
+    private final Map<String, Set<String>> references = new HashMap<String, Set<String>>();
+    /** True if the settings differ from those of the previous run */
+    private boolean settingsChanged = true;
+    /** Fingerprints of the classes of the previous run */
+    private final Map<String, String> previousFingerprints = new HashMap<String, String>();
+    /** Packages of the classes of the previous run */
+    private final Map<String, String> previousPackages = new HashMap<String, String>();
+    /** Classes added, removed or changed since the previous run */
+    private final Set<String> changed = new HashSet<String>();
+    /** Packages of the changed classes */
+    private final Set<String> changedPackages = new HashSet<String>();
+    /** Classes that refer to, or are referred by, changed classes */
+    private final Set<String> affected = new HashSet<String>();
+    /** Classes shown in the diagrams of the previous run */
+    private final Map<String, Set<String>> previous = new HashMap<String, Set<String>>();
+    /** Classes shown in the diagrams of this run */
+    private final Map<String, Set<String>> current = new TreeMap<String, Set<String>>();
+
+    /**
+     * Create the manifest of the current run, and compare it against the
+     * one stored in the specified file by the previous run, if any.
+     * @param dotFiles true if the diagrams are rendered from dot files,
+     * which must then exist for a diagram to be up to date
+     */
+    public DiagramManifest(File file, GraphModel model, String[][] options, boolean dotFiles) {
+	this.file = file;
+	this.dotFiles = dotFiles;
+	for (ClassDoc cd : model.classes) {
+	    String name = cd.qualifiedName();
+	    fingerprints.put(name, fingerprint(model, cd));
+	    packages.put(name, cd.containingPackage().name());
+	    references.put(name, references(model.getFacts(cd)));
+	}
+	this.settings = settings(model, options);
+	try {
+	    read();
+	} catch (IOException e) {
+	    System.err.println("Unable to read " + file + ": " + e);
+	    settingsChanged = true;
+	}
+	for (String name : fingerprints.keySet())
+	    if (!previousFingerprints.containsKey(name))
+		changed.add(name);
+	for (String name : changed) {
+	    String pkg = packages.containsKey(name) ? packages.get(name) : previousPackages.get(name);
+	    if (pkg != null)
+		changedPackages.add(pkg);
+	    if (references.containsKey(name))
+		affected.addAll(references.get(name));
+	}
+	for (Map.Entry<String, Set<String>> e : references.entrySet())
+	    for (String ref : e.getValue())
+		if (changed.contains(ref))
+		    affected.add(e.getKey());
+	/*
+	 * A class outside the documented ones, such as java.lang.String,
+	 * can not bring a changed class into a diagram that shows it.
+	 */
+	affected.retainAll(fingerprints.keySet());
+    }
+
+    /** Read the manifest of the previous run */
+    private void read() throws IOException {
+	if (!file.exists())
+	    return;
+	BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+	try {
+	    String line = reader.readLine();
+	    if (!HEADER.equals(line))
+		return;
+	    while ((line = reader.readLine()) != null) {
+		String[] fields = line.split(" ");
+		if (fields[0].equals("settings") && fields.length == 2) {
+		    settingsChanged = !fields[1].equals(settings);
+		} else if (fields[0].equals("class") && fields.length == 4) {
+		    previousPackages.put(fields[1], fields[2]);
+		    previousFingerprints.put(fields[1], fields[3]);
+		    if (!fields[3].equals(fingerprints.get(fields[1])))
+			changed.add(fields[1]);
+		} else if (fields[0].equals("diagram") && fields.length >= 2) {
+		    previous.put(fields[1], new TreeSet<String>(Arrays.asList(fields).subList(2, fields.length)));
+		}
+	    }
+	} finally {
+	    reader.close();
+	}
+    }
+
+    /**
+     * Return true if the specified diagram of the previous run can be
+     * kept as is. In that case the diagram is also recorded in the
+     * manifest of this run.
+     * @param diagram the name of the diagram's dot file, relative to the output folder
+     * @param dotFile the diagram's dot file
+     * @param doc the class or package the diagram was generated for
+     */
+    public boolean upToDate(String diagram, File dotFile, Doc doc) {
+	Set<String> shown = previous.get(diagram);
+	if (settingsChanged || shown == null || (dotFiles && !dotFile.exists())
+		|| !new File(dotFile.getPath().replaceFirst("\\.dot$", ".svg")).exists())
+	    return false;
+	if (doc instanceof PackageDoc && changedPackages.contains(((PackageDoc) doc).name()))
+	    return false;
+	if (doc instanceof ClassDoc && changed.contains(((ClassDoc) doc).qualifiedName()))
+	    return false;
+	for (String name : shown)
+	    if (changed.contains(name) || affected.contains(name))
+		return false;
+	record(diagram, shown);
+	return true;
+    }
+
+    /** Record the classes shown in the specified diagram of this run */
+    public synchronized void record(String diagram, Set<String> shown) {
+	current.put(diagram, shown);
+    }
+
+    /**
+     * Forget the specified diagram of this run, such as one that could not
+     * be rendered, so that the next run generates it again
+     */
+    public synchronized void forget(String diagram) {
+	current.remove(diagram);
+    }
+
+    /** Store the manifest of this run */
+    public synchronized void write() throws IOException {
+	PrintWriter w = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+	try {
+	    w.println(HEADER);
+	    w.println("settings " + settings);
+	    for (Map.Entry<String, String> e : fingerprints.entrySet())
+		w.println("class " + e.getKey() + " " + packages.get(e.getKey()) + " " + e.getValue());
+	    for (Map.Entry<String, Set<String>> e : current.entrySet()) {
+		w.print("diagram " + e.getKey());
+		for (String name : e.getValue())
+		    w.print(" " + name);
+		w.println();
+	    }
+	} finally {
+	    w.close();
+	}
+    }
+
+    /** Return the names of the classes the specified class refers to */
+    private static Set<String> references(GraphModel.ClassFacts facts) {
+	Set<String> names = new HashSet<String>();
+	for (ClassDoc cd : facts.referencedClasses())
+	    names.add(cd.qualifiedName());
+	for (ClassDoc cd : facts.imports())
+	    names.add(cd.qualifiedName());
+	for (GraphModel.Relation r : facts.relations)
+	    names.add(removeTemplate(r.toName));
+	return names;
+    }
+
+    /**
+     * Return the fingerprint of the settings that affect every diagram:
+     * the command line options, the UMLGraph version, the classes holding
+     * global options, and the package comments.
+     */
+    private static String settings(GraphModel model, String[][] options) {
+	StringBuilder sb = new StringBuilder(Version.VERSION).append('\n');
+	for (String[] option : options)
+	    sb.append(Arrays.asList(option)).append('\n');
+	Set<PackageDoc> packages = new HashSet<PackageDoc>();
+	for (ClassDoc cd : model.classes) {
+	    if (cd.name().equals("UMLOptions") || cd.name().equals("UMLNoteOptions"))
+		sb.append(fingerprint(model, cd)).append('\n');
+	    packages.add(cd.containingPackage());
+	}
+	Set<String> comments = new TreeSet<String>();
+	for (PackageDoc pd : packages)
+	    comments.add(pd.name() + '\n' + pd.getRawCommentText());
+	for (String comment : comments)
+	    sb.append(comment).append('\n');
+	return digest(sb.toString());
+    }
+
+    /** Return the fingerprint of the declaration and comments of a class */
+    private static String fingerprint(GraphModel model, ClassDoc cd) {
+	StringBuilder sb = new StringBuilder();
+	append(sb, cd);
+	sb.append(cd.superclassType()).append('\n');
+	sb.append(Arrays.asList(cd.interfaceTypes())).append('\n');
+	sb.append(Arrays.asList(cd.typeParameters())).append('\n');
+	for (ClassDoc imported : model.getFacts(cd).imports())
+	    sb.append(imported).append('\n');
+	for (FieldDoc f : cd.fields(false)) {
+	    append(sb, f);
+	    sb.append(f.type()).append(' ').append(f.constantValueExpression()).append('\n');
+	}
+	for (FieldDoc f : cd.enumConstants())
+	    append(sb, f);
+	for (ConstructorDoc c : cd.constructors(false)) {
+	    append(sb, c);
+	    sb.append(c.signature()).append('\n');
+	}
+	for (MethodDoc m : cd.methods(false)) {
+	    append(sb, m);
+	    sb.append(m.returnType()).append(' ').append(m.signature()).append('\n');
+	}
+	for (ClassDoc inner : cd.innerClasses(false))
+	    sb.append(inner.qualifiedName()).append('\n');
+	return digest(sb.toString());
+    }
+
+    private static void append(StringBuilder sb, ProgramElementDoc doc) {
+	sb.append(doc.modifiers()).append(' ').append(doc.name()).append('\n');
+	for (AnnotationDesc a : doc.annotations())
+	    sb.append(a).append('\n');
+	sb.append(doc.getRawCommentText()).append('\n');
+    }
+
+    private static String digest(String s) {
+	try {
+	    StringBuilder hex = new StringBuilder();
+	    for (byte b : MessageDigest.getInstance("SHA-1").digest(s.getBytes("UTF-8")))
+		hex.append(String.format("%02x", b & 0xff));
+	    return hex.toString();
+	} catch (NoSuchAlgorithmException e) {
+	    throw new RuntimeException(e);
+	} catch (UnsupportedEncodingException e) {
+	    throw new RuntimeException(e);
+	}
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Create a graphviz graph based on the classes in the specified java
+ * source files.
+ *
+ * (C) Copyright 2002-2010 Diomidis Spinellis
+ *
+ * Permission to use, copy, and distribute this software and its
+ * documentation for any purpose and without fee is hereby granted,
+ * provided that the above copyright notice appear in all copies and that
+ * both that copyright notice and this permission notice appear in
+ * supporting documentation.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND WITHOUT ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF
+ * MERCHANTIBILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ *
+ */
+
+package org.umlgraph.doclet;
+
+import java.io.File;
+import java.util.Set;
+
+/**
+ * Renders the dot diagrams of UMLGraphDoc into SVG files, next to the
+ * dot files they are named after.
+ * Diagrams are queued for rendering, and may be rendered concurrently
+ * with their generation.
+ *
+ * @version $Revision$
+ * @author <a href="http://www.spinellis.gr">Diomidis Spinellis</a>
+ */
+interface DiagramRenderer {
+    /**
+     * Queue the specified dot file for rendering into an SVG file next to
+     * it, waiting while the rendering queue is full
+     */
+    public void render(File dotFile) throws InterruptedException;
+
+    /**
+     * Queue the specified dot text for rendering into the SVG file next to
+     * the specified dot file, waiting while the rendering queue is full.
+     * The dot file need not exist.
+     */
+    public void render(File dotFile, byte[] dot) throws InterruptedException;
+
+    /**
+     * Render all the queued diagrams and wait for the rendering to complete.
+     * @return false if any diagram could not be rendered
+     */
+    public boolean finish();
+
+    /**
+     * Return the dot files whose diagrams could not be rendered. The set
+     * is complete once finish() returns.
+     */
+    public Set<File> failures();
+
+    /** Return the throughput and queue statistics of the rendering */
+    public String statistics();
+}
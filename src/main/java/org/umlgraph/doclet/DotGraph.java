@@ -0,0 +1,329 @@
+/*
+ * Create a graphviz graph based on the classes in the specified java
+ * source files.
+ *
+ * (C) Copyright 2002-2010 Diomidis Spinellis
+ *
+ * Permission to use, copy, and distribute this software and its
+ * documentation for any purpose and without fee is hereby granted,
+ * provided that the above copyright notice appear in all copies and that
+ * both that copyright notice and this permission notice appear in
+ * supporting documentation.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND WITHOUT ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF
+ * MERCHANTIBILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ *
+ */
+
+package org.umlgraph.doclet;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A graph read from the dot language subset ClassGraph writes: graph,
+ * node and edge attributes, nodes, and edges between nodes.
+ * Subgraphs are read, but their nodes and edges are simply added to the
+ * graph, and their own attributes, such as the labels of clusters, are
+ * ignored.
+ * Quoted attribute values are stored without their quotes, while
+ * HTML-like values keep their enclosing angle brackets.
+ *
+ * @version $Revision$
+ * @author <a href="http://www.spinellis.gr">Diomidis Spinellis</a>
+ */
+class DotGraph {
+    /** The graph attributes */
+    final Map<String, String> attributes = new HashMap<String, String>();
+    /** The nodes, in the order they were first mentioned */
+    final Map<String, Node> nodes = new LinkedHashMap<String, Node>();
+    final List<Edge> edges = new ArrayList<Edge>();
+    private final Map<String, String> nodeDefaults = new HashMap<String, String>();
+    private final Map<String, String> edgeDefaults = new HashMap<String, String>();
+
+    /** A graph node */
+    static class Node {
+	final String id;
+	final Map<String, String> attributes;
+
+	Node(String id, Map<String, String> defaults) {
+	    this.id = id;
+	    this.attributes = new HashMap<String, String>(defaults);
+	}
+    }
+
+    /** A graph edge, from its tail to its head */
+    static class Edge {
+	final Node tail;
+	final Node head;
+	final Map<String, String> attributes;
+
+	Edge(Node tail, Node head, Map<String, String> defaults) {
+	    this.tail = tail;
+	    this.head = head;
+	    this.attributes = new HashMap<String, String>(defaults);
+	}
+    }
+
+    /** Return the value of the specified attribute, or the default value */
+    static String attribute(Map<String, String> attributes, String name, String def) {
+	String value = attributes.get(name);
+	return value == null || value.isEmpty() ? def : value;
+    }
+
+    /** Return the value of the specified numeric attribute, or the default value */
+    static double attribute(Map<String, String> attributes, String name, double def) {
+	String value = attributes.get(name);
+	if (value == null)
+	    return def;
+	try {
+	    return Double.parseDouble(value.trim());
+	} catch (NumberFormatException e) {
+	    return def;
+	}
+    }
+
+    /**
+     * Parse the specified dot text
+     * @throws IllegalArgumentException if the text is not a graph of the
+     * supported dot subset
+     */
+    static DotGraph parse(String text) {
+	DotGraph graph = new DotGraph();
+	new Parser(text, graph).graph();
+	return graph;
+    }
+
+    /** Return the node with the specified name, creating it if needed */
+    private Node node(String id) {
+	Node node = nodes.get(id);
+	if (node == null) {
+	    node = new Node(id, nodeDefaults);
+	    nodes.put(id, node);
+	}
+	return node;
+    }
+
+    /** A recursive descent parser of the dot text */
+    private static class Parser {
+	private final String text;
+	private final DotGraph graph;
+	private int pos;
+	/** The nesting depth of the subgraph being read */
+	private int depth;
+
+	Parser(String text, DotGraph graph) {
+	    this.text = text;
+	    this.graph = graph;
+	}
+
+	void graph() {
+	    String keyword = token();
+	    if ("strict".equals(keyword))
+		keyword = token();
+	    if (!"digraph".equals(keyword) && !"graph".equals(keyword))
+		throw error("graph expected");
+	    if (!peek('{'))
+		token();
+	    expect('{');
+	    statements();
+	    expect('}');
+	}
+
+	/** Parse the statements up to the closing brace */
+	private void statements() {
+	    while (!peek('}')) {
+		if (atEnd())
+		    throw error("} expected");
+		statement();
+		if (peek(';'))
+		    pos++;
+	    }
+	}
+
+	private void statement() {
+	    if (peek('{')) {
+		subgraph();
+		return;
+	    }
+	    String id = token();
+	    if ("subgraph".equals(id)) {
+		if (!peek('{'))
+		    token();
+		subgraph();
+	    } else if (("graph".equals(id) || "node".equals(id) || "edge".equals(id)) && peek('[')) {
+		Map<String, String> target = "graph".equals(id) ? graphAttributes()
+			: "node".equals(id) ? graph.nodeDefaults : graph.edgeDefaults;
+		attributes(target);
+	    } else if (peek('=')) {
+		pos++;
+		graphAttributes().put(id, token());
+	    } else {
+		Node node = graph.node(id);
+		List<Edge> chain = new ArrayList<Edge>();
+		while (peekArrow()) {
+		    pos += 2;
+		    Node head = graph.node(token());
+		    chain.add(new Edge(node, head, graph.edgeDefaults));
+		    node = head;
+		}
+		if (chain.isEmpty()) {
+		    if (peek('['))
+			attributes(node.attributes);
+		} else {
+		    Map<String, String> attributes = new HashMap<String, String>();
+		    if (peek('['))
+			attributes(attributes);
+		    for (Edge edge : chain) {
+			edge.attributes.putAll(attributes);
+			graph.edges.add(edge);
+		    }
+		}
+	    }
+	}
+
+	private void subgraph() {
+	    expect('{');
+	    depth++;
+	    statements();
+	    depth--;
+	    expect('}');
+	}
+
+	/** Return the map of the graph attributes being set, discarded within subgraphs */
+	private Map<String, String> graphAttributes() {
+	    return depth == 0 ? graph.attributes : new HashMap<String, String>();
+	}
+
+	/** Parse one or more bracketed attribute lists into the specified map */
+	private void attributes(Map<String, String> target) {
+	    while (peek('[')) {
+		pos++;
+		while (!peek(']')) {
+		    if (atEnd())
+			throw error("] expected");
+		    String name = token();
+		    expect('=');
+		    target.put(name, token());
+		    if (peek(',') || peek(';'))
+			pos++;
+		}
+		pos++;
+	    }
+	}
+
+	/** Return the next identifier, number, quoted string, or HTML string */
+	private String token() {
+	    skipSpace();
+	    if (atEnd())
+		throw error("unexpected end of graph");
+	    char c = text.charAt(pos);
+	    if (c == '"')
+		return quoted();
+	    if (c == '<')
+		return html();
+	    int start = pos;
+	    // negative numbers
+	    if (c == '-' && pos + 1 < text.length() && !peekArrow())
+		pos++;
+	    while (pos < text.length() && isIdentifierPart(text.charAt(pos)))
+		pos++;
+	    if (start == pos)
+		throw error("unexpected " + c);
+	    return text.substring(start, pos);
+	}
+
+	private String quoted() {
+	    StringBuilder value = new StringBuilder();
+	    for (pos++; pos < text.length(); pos++) {
+		char c = text.charAt(pos);
+		if (c == '"') {
+		    pos++;
+		    return value.toString();
+		}
+		if (c == '\\' && pos + 1 < text.length()) {
+		    char next = text.charAt(pos + 1);
+		    if (next == '"') {
+			value.append('"');
+			pos++;
+			continue;
+		    }
+		    if (next == '\n') {
+			pos++;
+			continue;
+		    }
+		}
+		value.append(c);
+	    }
+	    throw error("unterminated string");
+	}
+
+	private String html() {
+	    int start = pos;
+	    int depth = 0;
+	    for (; pos < text.length(); pos++) {
+		char c = text.charAt(pos);
+		if (c == '<')
+		    depth++;
+		else if (c == '>' && --depth == 0)
+		    return text.substring(start, ++pos);
+	    }
+	    throw error("unterminated HTML string");
+	}
+
+	private static boolean isIdentifierPart(char c) {
+	    return Character.isLetterOrDigit(c) || c == '_' || c == '.' || c > 127;
+	}
+
+	/** Skip white space and comments */
+	private void skipSpace() {
+	    while (pos < text.length()) {
+		char c = text.charAt(pos);
+		if (Character.isWhitespace(c))
+		    pos++;
+		else if (c == '#' || text.startsWith("//", pos)) {
+		    int end = text.indexOf('\n', pos);
+		    pos = end < 0 ? text.length() : end + 1;
+		} else if (text.startsWith("/*", pos)) {
+		    int end = text.indexOf("*/", pos + 2);
+		    pos = end < 0 ? text.length() : end + 2;
+		} else
+		    return;
+	    }
+	}
+
+	private boolean atEnd() {
+	    skipSpace();
+	    return pos >= text.length();
+	}
+
+	private boolean peek(char c) {
+	    skipSpace();
+	    return pos < text.length() && text.charAt(pos) == c;
+	}
+
+	private boolean peekArrow() {
+	    skipSpace();
+	    return text.startsWith("->", pos) || text.startsWith("--", pos);
+	}
+
+	private void expect(char c) {
+	    if (!peek(c))
+		throw error(c + " expected");
+	    pos++;
+	}
+
+	private IllegalArgumentException error(String message) {
+	    int line = 1;
+	    for (int i = 0; i < Math.min(pos, text.length()); i++)
+		if (text.charAt(i) == '\n')
+		    line++;
+	    return new IllegalArgumentException(message + " at line " + line);
+	}
+    }
+}
@@ -1,5 +1,7 @@
 package org.umlgraph.doclet;
 
+import java.io.PrintWriter;
+
 /**
  * Class to represent a font for graphviz.
  * <p>
@@ -42,60 +44,79 @@ public enum Font {
     }
 
     /**
-     * Wraps the text with the appropriate font according to the specified font type
+     * Prints the markup that starts the text of this font type, if any.
+     * The text printed next should not be empty.
      *
-     * @param opt  Options
-     * @param text Text to wrap
-     * @return Wrapped text
+     * @param opt Options
+     * @param w   Writer to print to
      */
-    public String wrap(Options opt, String text) {
-	if (text.isEmpty() || this == NORMAL)
-	    return text;
-	String face = null;
-	double size = -1;
-	boolean italic = false;
+    public void start(Options opt, PrintWriter w) {
+	String face = face(opt);
+	double size = size(opt);
+	if (face != null || size > 0) {
+	    w.print("<font");
+	    if (face != null) {
+		w.print(" face=\"");
+		w.print(face);
+		w.print('"');
+	    }
+	    if (size > 0) {
+		w.print(" point-size=\"");
+		w.print(size);
+		w.print('"');
+	    }
+	    w.print('>');
+	}
+	if (italic(opt))
+	    w.print("<i>");
+    }
+
+    /**
+     * Prints the markup that ends the text of this font type, if any.
+     *
+     * @param opt Options
+     * @param w   Writer to print to
+     */
+    public void end(Options opt, PrintWriter w) {
+	if (italic(opt))
+	    w.print("</i>");
+	if (face(opt) != null || size(opt) > 0)
+	    w.print("</font>");
+    }
+
+    private String face(Options opt) {
 	switch (this) {
 	case EDGE:
 	case NODE:
-	    // Not used with the wrap function.
+	    // Set on the nodes and edges themselves.
 	    throw new UnsupportedOperationException();
-	case ABSTRACT:
-	    italic = opt.nodeFontAbstractItalic;
-	case NORMAL:
-	    break;
-	case CLASS_ABSTRACT:
-	    italic = opt.nodeFontAbstractItalic;
 	case CLASS:
-	    face = opt.nodeFontClassName;
-	    size = opt.nodeFontClassSize;
-	    break;
+	case CLASS_ABSTRACT:
+	    return opt.nodeFontClassName;
 	case PACKAGE:
-	    face = opt.nodeFontPackageName;
-	    size = opt.nodeFontPackageSize;
-	    break;
+	    return opt.nodeFontPackageName;
 	case TAG:
-	    face = opt.nodeFontTagName;
-	    size = opt.nodeFontTagSize;
-	    break;
+	    return opt.nodeFontTagName;
+	default:
+	    return null;
 	}
-	if (face == null && size < 0 && !italic)
-	    return text;
-	StringBuilder buf = new StringBuilder(text.length() + 100);
-	if (face != null || size > 0) {
-	    buf.append("<font");
-	    if (face != null)
-		buf.append(" face=\"").append(face).append('"');
-	    if (size > 0)
-		buf.append(" point-size=\"").append(size).append('"');
-	    buf.append('>');
+    }
+
+    private double size(Options opt) {
+	switch (this) {
+	case CLASS:
+	case CLASS_ABSTRACT:
+	    return opt.nodeFontClassSize;
+	case PACKAGE:
+	    return opt.nodeFontPackageSize;
+	case TAG:
+	    return opt.nodeFontTagSize;
+	default:
+	    return -1;
 	}
-	if (italic)
-	    buf.append("<i>");
-	buf.append(text);
-	if (italic)
-	    buf.append("</i>");
-	if (face != null || size > 0)
-	    buf.append("</font>");
-	return buf.toString();
+    }
+
+    private boolean italic(Options opt) {
+	return (this == ABSTRACT || this == CLASS_ABSTRACT) && opt.nodeFontAbstractItalic;
     }
 }
@@ -0,0 +1,555 @@
+/*
+ * Create a graphviz graph based on the classes in the specified java
+ * source files.
+ *
+ * (C) Copyright 2002-2010 Diomidis Spinellis
+ *
+ * Permission to use, copy, and distribute this software and its
+ * documentation for any purpose and without fee is hereby granted,
+ * provided that the above copyright notice appear in all copies and that
+ * both that copyright notice and this permission notice appear in
+ * supporting documentation.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND WITHOUT ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF
+ * MERCHANTIBILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ *
+ */
+
+package org.umlgraph.doclet;
+
+import static org.umlgraph.doclet.StringUtil.tokenize;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.sun.javadoc.ClassDoc;
+import com.sun.javadoc.ConstructorDoc;
+import com.sun.javadoc.FieldDoc;
+import com.sun.javadoc.MethodDoc;
+import com.sun.javadoc.Parameter;
+import com.sun.javadoc.ParameterizedType;
+import com.sun.javadoc.RootDoc;
+import com.sun.javadoc.Tag;
+import com.sun.javadoc.Type;
+import com.sun.javadoc.TypeVariable;
+import com.sun.javadoc.WildcardType;
+
+/**
+ * The class and relation model of a RootDoc. It is built once per javadoc
+ * run and shared by every diagram: explicit relations are parsed from the
+ * tags, and the candidates for inferred relations and dependencies are
+ * harvested from fields and methods. Diagrams then only filter the model
+ * according to their own options.
+ * <p>
+ * Apart from the lazy analysis of classes outside the RootDoc, the model
+ * never changes after it has been built.
+ * @composed - - * ClassFacts
+ * @composed - - * ContextIndex
+ * @depend - - - Relation
+ *
+ * @version $Revision$
+ * @author <a href="http://www.spinellis.gr">Diomidis Spinellis</a>
+ */
+class GraphModel {
+    /** The model of the last RootDoc seen */
+    private static GraphModel lastModel;
+
+    final RootDoc root;
+    /** The classes returned by RootDoc.classes(), in javadoc order */
+    final ClassDoc[] classes;
+    /** The classes returned by RootDoc.classes(), by qualified name */
+    final Map<String, ClassDoc> rootClassdocs;
+    final ClassDoc collectionClassDoc;
+    final ClassDoc mapClassDoc;
+    /** Options used for commenting nodes */
+    final Options commentOptions;
+    private final ConcurrentHashMap<ClassDoc, ClassFacts> facts = new ConcurrentHashMap<ClassDoc, ClassFacts>();
+    private final Map<String, ClassDoc> namedClasses = new HashMap<String, ClassDoc>();
+    /** The member compartments of the class nodes, by class and formatting options */
+    final ConcurrentHashMap<ClassGraph.MemberFormat, String> memberRows
+	= new ConcurrentHashMap<ClassGraph.MemberFormat, String>();
+    /** The classes and interfaces each class extends, including itself */
+    private final ConcurrentHashMap<ClassDoc, Set<ClassDoc>> supertypes
+	= new ConcurrentHashMap<ClassDoc, Set<ClassDoc>>();
+    /** Memoized results of getInterfaceTypeArguments */
+    private final ConcurrentHashMap<List<Object>, Type[]> interfaceTypeArguments
+	= new ConcurrentHashMap<List<Object>, Type[]>();
+    private static final ClassDoc[] NO_CLASSES = new ClassDoc[0];
+    /** The memoized result of a type that does not implement the interface */
+    private static final Type[] NOT_IMPLEMENTED = new Type[0];
+    /** Context indexes, by the key of the options they were built with */
+    private final Map<String, ContextIndex> contextIndexes = new HashMap<String, ContextIndex>();
+
+    private GraphModel(RootDoc root) {
+	this.root = root;
+	this.classes = root.classes();
+	this.collectionClassDoc = root.classNamed("java.util.Collection");
+	this.mapClassDoc = root.classNamed("java.util.Map");
+	this.commentOptions = UmlGraph.buildCommentOptions(root);
+	Map<String, ClassDoc> docs = new HashMap<String, ClassDoc>();
+	for (ClassDoc cd : classes)
+	    docs.put(cd.qualifiedName(), cd);
+	this.rootClassdocs = Collections.unmodifiableMap(docs);
+	for (ClassDoc cd : classes)
+	    facts.put(cd, new ClassFacts(cd));
+	/*
+	 * The javadoc API is not thread safe: it completes symbols and
+	 * creates its Doc objects lazily. Analyze also the classes that the
+	 * root classes refer to, so that the diagrams, which may be built in
+	 * parallel, find everything already completed.
+	 */
+	for (ClassDoc cd : classes)
+	    for (ClassDoc ref : facts.get(cd).referencedClasses())
+		getFacts(ref);
+    }
+
+    /**
+     * Return the model of the specified RootDoc, building it on the first
+     * request. Only the model of the most recent RootDoc is kept, until
+     * it is released.
+     */
+    public static synchronized GraphModel of(RootDoc root) {
+	if (lastModel == null || lastModel.root != root)
+	    lastModel = new GraphModel(root);
+	return lastModel;
+    }
+
+    /**
+     * Drop the model of the specified RootDoc, if it is the one kept, so
+     * that the javadoc model and the analysis of its classes do not
+     * outlive the run of the doclet.
+     */
+    public static synchronized void release(RootDoc root) {
+	if (lastModel != null && lastModel.root == root)
+	    lastModel = null;
+    }
+
+    /**
+     * Compute the types every class of the RootDoc may depend on according
+     * to the specified options, spreading the classes over the specified
+     * number of threads. The diagrams whose classes share these options
+     * then find the types already computed.
+     */
+    public void inferDependencies(final Options opt, int threads) {
+	if (threads <= 1 || classes.length < 2) {
+	    for (ClassDoc cd : classes)
+		facts.get(cd).dependencyTypes(opt);
+	    return;
+	}
+	ExecutorService executor = Executors.newFixedThreadPool(threads);
+	List<Future<?>> results = new ArrayList<Future<?>>();
+	int chunk = (classes.length + threads - 1) / threads;
+	for (int i = 0; i < classes.length; i += chunk) {
+	    final int from = i, to = Math.min(classes.length, i + chunk);
+	    results.add(executor.submit(new Runnable() {
+		public void run() {
+		    for (int j = from; j < to; j++)
+			facts.get(classes[j]).dependencyTypes(opt);
+		}
+	    }));
+	}
+	executor.shutdown();
+	for (Future<?> result : results) {
+	    try {
+		result.get();
+	    } catch (InterruptedException e) {
+		Thread.currentThread().interrupt();
+		return;
+	    } catch (ExecutionException e) {
+		throw new RuntimeException(e.getCause());
+	    }
+	}
+    }
+
+    /**
+     * Return the facts about the specified class. Classes that are not
+     * part of the RootDoc are analyzed on their first request.
+     */
+    public ClassFacts getFacts(ClassDoc cd) {
+	ClassFacts f = facts.get(cd);
+	if (f == null) {
+	    ClassFacts prev = facts.putIfAbsent(cd, f = new ClassFacts(cd));
+	    if (prev != null)
+		f = prev;
+	}
+	return f;
+    }
+
+    /**
+     * Return the ClassDoc of the specified class, or null if javadoc does not
+     * know about it. Unlike RootDoc.classNamed, this may be called by
+     * parallel diagram builders.
+     */
+    public ClassDoc classNamed(String className) {
+	synchronized (namedClasses) {
+	    if (namedClasses.containsKey(className))
+		return namedClasses.get(className);
+	    ClassDoc cd = root.classNamed(className);
+	    namedClasses.put(className, cd);
+	    return cd;
+	}
+    }
+
+    /**
+     * Return the context index for the specified options. Context
+     * matchers whose options infer the same relations share an index.
+     */
+    public ContextIndex contextIndex(Options opt) {
+	String key = opt.relationsKey();
+	synchronized (contextIndexes) {
+	    ContextIndex index = contextIndexes.get(key);
+	    if (index == null)
+		contextIndexes.put(key, index = new ContextIndex(this, (Options) opt.clone()));
+	    return index;
+	}
+    }
+
+    /**
+     * A relation between two classes, as specified through the Java
+     * language or the UMLGraph tags.
+     */
+    static class Relation {
+	final RelationType type;
+	/** The destination class; null if javadoc cannot resolve it */
+	final ClassDoc to;
+	final String toName;
+	/** If not null, the name that decides if the destination is hidden */
+	final String hideName;
+	final String tailLabel;
+	final String label;
+	final String headLabel;
+
+	Relation(RelationType type, ClassDoc to, String toName, String hideName,
+		String tailLabel, String label, String headLabel) {
+	    this.type = type;
+	    this.to = to;
+	    this.toName = toName;
+	    this.hideName = hideName;
+	    this.tailLabel = tailLabel;
+	    this.label = label;
+	    this.headLabel = headLabel;
+	}
+    }
+
+    /**
+     * A field from which an association can be inferred
+     */
+    static class FieldFacts {
+	final FieldDoc field;
+	/** The class of the field's type */
+	final ClassDoc typeClass;
+	/** The field's qualified type name, matched against -collpackages */
+	final String typeName;
+	/** True for arrays */
+	final boolean array;
+	/** The element class if the type is a Collection or a Map */
+	final ClassDoc elementClass;
+
+	FieldFacts(FieldDoc field, ClassDoc typeClass, String typeName, boolean array,
+		ClassDoc elementClass) {
+	    this.field = field;
+	    this.typeClass = typeClass;
+	    this.typeName = typeName;
+	    this.array = array;
+	    this.elementClass = elementClass;
+	}
+    }
+
+    /**
+     * A method or field, along with the types it may make its class
+     * depend on
+     */
+    static class MemberTypes {
+	final Visibility visibility;
+	final Type[] types;
+
+	MemberTypes(Visibility visibility, Type[] types) {
+	    this.visibility = visibility;
+	    this.types = types;
+	}
+    }
+
+    /**
+     * Everything the diagrams need to know about the relations of a class
+     */
+    class ClassFacts {
+	final ClassDoc cd;
+	final List<Relation> relations = new ArrayList<Relation>();
+	final List<FieldFacts> fields = new ArrayList<FieldFacts>();
+	final List<MemberTypes> methodTypes = new ArrayList<MemberTypes>();
+	final List<MemberTypes> fieldTypes = new ArrayList<MemberTypes>();
+	/** Type arguments and type parameter bounds */
+	final List<Type> typeParameterTypes = new ArrayList<Type>();
+	/** The imported classes, read on first use */
+	private ClassDoc[] imports;
+	/** The types this class may depend on, by the options selecting them */
+	private final ConcurrentHashMap<Integer, Set<Type>> dependencyTypes
+	    = new ConcurrentHashMap<Integer, Set<Type>>();
+
+	ClassFacts(ClassDoc c) {
+	    this.cd = c;
+	    c.tags();
+	    harvestRelations(c);
+	    harvestFields(c);
+	    for (MethodDoc method : c.methods(false)) {
+		method.tags();
+		Parameter[] params = method.parameters();
+		Type[] types = new Type[params.length + 1];
+		types[0] = method.returnType();
+		for (int i = 0; i < params.length; i++)
+		    types[i + 1] = params[i].type();
+		methodTypes.add(new MemberTypes(Visibility.get(method), types));
+	    }
+	    for (ConstructorDoc constructor : c.constructors(false))
+		constructor.tags();
+	    if (c.asParameterizedType() != null)
+		typeParameterTypes.addAll(Arrays.asList(c.asParameterizedType().typeArguments()));
+	    for (TypeVariable tv : c.typeParameters())
+		typeParameterTypes.addAll(Arrays.asList(tv.bounds()));
+	}
+
+	/**
+	 * Return the classes this class imports. They are read only when
+	 * needed, under the lock of the RootDoc, as the diagrams may then be
+	 * built in parallel.
+	 */
+	ClassDoc[] imports() {
+	    synchronized (root) {
+		if (imports == null)
+		    imports = importedClasses(cd);
+		return imports;
+	    }
+	}
+
+	/** Return the classes this class may be related to */
+	Set<ClassDoc> referencedClasses() {
+	    Set<ClassDoc> refs = new HashSet<ClassDoc>();
+	    for (Relation r : relations)
+		refs.add(r.to);
+	    for (FieldFacts f : fields) {
+		refs.add(f.typeClass);
+		refs.add(f.elementClass);
+	    }
+	    for (MemberTypes m : methodTypes)
+		for (Type t : m.types)
+		    refs.add(t.asClassDoc());
+	    for (MemberTypes m : fieldTypes)
+		refs.add(m.types[0].asClassDoc());
+	    for (Type t : typeParameterTypes)
+		refs.add(t.asClassDoc());
+	    refs.remove(null);
+	    return refs;
+	}
+
+	/** Collect the generalizations, realizations and tagged relations */
+	private void harvestRelations(ClassDoc c) {
+	    // Generalization (through the Java superclass)
+	    Type s = c.superclassType();
+	    ClassDoc sc = s != null && !s.qualifiedTypeName().equals(Object.class.getName()) ? s.asClassDoc() : null;
+	    if (sc != null && !c.isEnum())
+		relations.add(new Relation(RelationType.EXTENDS, sc, sc.toString(), null, null, null, null));
+	    // Generalizations (through @extends tags)
+	    for (Tag tag : c.tags("extends")) {
+		ClassDoc to = c.findClass(tag.text());
+		relations.add(new Relation(RelationType.EXTENDS, to, to != null ? to.toString() : tag.text(),
+			tag.text(), null, null, null));
+	    }
+	    // Realizations (Java interfaces)
+	    for (Type iface : c.interfaceTypes()) {
+		ClassDoc ic = iface.asClassDoc();
+		relations.add(new Relation(RelationType.IMPLEMENTS, ic, ic.toString(), null, null, null, null));
+	    }
+	    // Other associations
+	    taggedRelations(RelationType.COMPOSED, c);
+	    taggedRelations(RelationType.NAVCOMPOSED, c);
+	    taggedRelations(RelationType.HAS, c);
+	    taggedRelations(RelationType.NAVHAS, c);
+	    taggedRelations(RelationType.ASSOC, c);
+	    taggedRelations(RelationType.NAVASSOC, c);
+	    taggedRelations(RelationType.DEPEND, c);
+	}
+
+	/** Collect all relations for a given class's tag */
+	private void taggedRelations(RelationType rt, ClassDoc from) {
+	    String tagname = rt.lower;
+	    for (Tag tag : from.tags(tagname)) {
+		String t[] = tokenize(tag.text());    // l-src label l-dst target
+		t = t.length == 1 ? new String[] { "-", "-", "-", t[0] } : t; // Shorthand
+		if (t.length != 4) {
+		    System.err.println("Error in " + from + "\n" + tagname + " expects four fields (l-src label l-dst target): " + tag.text());
+		    return;
+		}
+		ClassDoc to = from.findClass(t[3]);
+		relations.add(new Relation(rt, to, to != null ? to.toString() : t[3], null, t[0], t[1], t[2]));
+	    }
+	}
+
+	/** Collect the fields that may lead to an inferred association */
+	private void harvestFields(ClassDoc c) {
+	    for (FieldDoc field : c.fields(false)) {
+		field.tags();
+		fieldTypes.add(new MemberTypes(Visibility.get(field), new Type[] { field.type() }));
+		// skip statics and primitives
+		Type type = field.type();
+		if (field.isStatic() || type.isPrimitive() || type instanceof WildcardType
+			|| type instanceof TypeVariable)
+		    continue;
+		boolean array = type.dimension().endsWith("[]");
+		ClassDoc element = null;
+		if (!array) {
+		    Type[] argTypes = getInterfaceTypeArguments(collectionClassDoc, type, c);
+		    if (argTypes != null && argTypes.length == 1 && !argTypes[0].isPrimitive()) {
+			element = argTypes[0].asClassDoc();
+		    } else {
+			argTypes = getInterfaceTypeArguments(mapClassDoc, type, c);
+			if (argTypes != null && argTypes.length == 2 && !argTypes[1].isPrimitive())
+			    element = argTypes[1].asClassDoc();
+		    }
+		}
+		fields.add(new FieldFacts(field, type.asClassDoc(), type.qualifiedTypeName(), array, element));
+	    }
+	}
+
+	/**
+	 * Return the types this class may depend on, according to the
+	 * specified options. The set is computed once for the options that
+	 * select its types and shared; it must not be modified.
+	 */
+	public Set<Type> dependencyTypes(Options opt) {
+	    int key = opt.inferDependencyVisibility.ordinal() << 2
+		| (opt.inferRelationships ? 2 : 0) | (opt.useImports ? 1 : 0);
+	    Set<Type> types = dependencyTypes.get(key);
+	    if (types == null) {
+		types = Collections.unmodifiableSet(harvestDependencyTypes(opt));
+		Set<Type> prev = dependencyTypes.putIfAbsent(key, types);
+		if (prev != null)
+		    types = prev;
+	    }
+	    return types;
+	}
+
+	private Set<Type> harvestDependencyTypes(Options opt) {
+	    Set<Type> types = new HashSet<Type>();
+	    // harvest method return and parameter types
+	    for (MemberTypes m : methodTypes)
+		if (visible(m, opt.inferDependencyVisibility))
+		    types.addAll(Arrays.asList(m.types));
+	    // and the field types
+	    if (!opt.inferRelationships)
+		for (MemberTypes f : fieldTypes)
+		    if (visible(f, opt.inferDependencyVisibility))
+			types.addAll(Arrays.asList(f.types));
+	    // see if there are some type parameters, or if they extend something
+	    types.addAll(typeParameterTypes);
+	    // and finally check for explicitly imported classes (this
+	    // assumes there are no unused imports...)
+	    if (opt.useImports)
+		types.addAll(Arrays.asList(imports()));
+	    return types;
+	}
+    }
+
+    /**
+     * Returns true if the member has a visibility greater than the specified level,
+     * or if all members are to be considered.
+     */
+    private static boolean visible(MemberTypes m, Visibility visibility) {
+	return visibility == Visibility.PRIVATE || m.visibility.compareTo(visibility) > 0;
+    }
+
+    /** Returns an array representing the imported classes of c.
+     * Disables the deprecation warning, which is output, because the
+     * imported classed are an implementation detail.
+     * Only classes read from source have imports. Javadoc also fails on
+     * the static imports of members; a class having them is taken to
+     * import nothing.
+     */
+    @SuppressWarnings( "deprecation" )
+    private static ClassDoc[] importedClasses(ClassDoc c) {
+	if (c.position() == null)
+	    return NO_CLASSES;
+	try {
+	    return c.importedClasses();
+	} catch (NullPointerException e) {
+	    return NO_CLASSES;
+	}
+    }
+
+    /**
+     * Return the type arguments with which the specified type implements
+     * an interface, or null if the type does not implement it.
+     * The results of walking the supertypes are memoized: those of a
+     * class, by interface and class, and those of a parameterized type,
+     * whose arguments may be type variables, by interface, scope and type.
+     * @param iface the interface
+     * @param t the type
+     * @param scope the class whose type variables the type may refer to
+     */
+    private Type[] getInterfaceTypeArguments(ClassDoc iface, Type t, ClassDoc scope) {
+	ClassDoc cd = t.asClassDoc();
+	if (iface == null || cd == null || !supertypes(cd).contains(iface))
+	    return null;
+	if (iface.equals(cd) && t instanceof ParameterizedType)
+	    return ((ParameterizedType) t).typeArguments();
+	List<Object> key = t instanceof ClassDoc ? Arrays.<Object>asList(iface, t)
+		: Arrays.<Object>asList(iface, scope, t.toString());
+	Type[] result = interfaceTypeArguments.get(key);
+	if (result == null) {
+	    result = walkSupertypes(iface, t, t instanceof ClassDoc ? cd : scope);
+	    if (result == null)
+		result = NOT_IMPLEMENTED;
+	    interfaceTypeArguments.putIfAbsent(key, result);
+	}
+	return result == NOT_IMPLEMENTED ? null : result;
+    }
+
+    /** Look for the interface among the direct supertypes of a type */
+    private Type[] walkSupertypes(ClassDoc iface, Type t, ClassDoc scope) {
+	Type[] interfaces;
+	Type superclass;
+	if (t instanceof ParameterizedType) {
+	    interfaces = ((ParameterizedType) t).interfaceTypes();
+	    superclass = ((ParameterizedType) t).superclassType();
+	} else if (t instanceof ClassDoc) {
+	    interfaces = ((ClassDoc) t).interfaceTypes();
+	    superclass = ((ClassDoc) t).superclassType();
+	} else
+	    return null;
+	for (Type pti : interfaces) {
+	    Type[] result = getInterfaceTypeArguments(iface, pti, scope);
+	    if (result != null)
+		return result;
+	}
+	return superclass != null ? getInterfaceTypeArguments(iface, superclass, scope) : null;
+    }
+
+    /** Return the specified class and all the classes and interfaces it extends */
+    private Set<ClassDoc> supertypes(ClassDoc cd) {
+	Set<ClassDoc> closure = supertypes.get(cd);
+	if (closure == null) {
+	    closure = new HashSet<ClassDoc>();
+	    closure.add(cd);
+	    for (Type t : cd.interfaceTypes())
+		if (t.asClassDoc() != null)
+		    closure.addAll(supertypes(t.asClassDoc()));
+	    Type s = cd.superclassType();
+	    if (s != null && s.asClassDoc() != null)
+		closure.addAll(supertypes(s.asClassDoc()));
+	    supertypes.putIfAbsent(cd, closure);
+	}
+	return closure;
+    }
+}
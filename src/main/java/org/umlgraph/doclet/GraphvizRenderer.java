@@ -0,0 +1,424 @@
+/*
+ * Create a graphviz graph based on the classes in the specified java
+ * source files.
+ *
+ * (C) Copyright 2002-2010 Diomidis Spinellis
+ *
+ * Permission to use, copy, and distribute this software and its
+ * documentation for any purpose and without fee is hereby granted,
+ * provided that the above copyright notice appear in all copies and that
+ * both that copyright notice and this permission notice appear in
+ * supporting documentation.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND WITHOUT ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF
+ * MERCHANTIBILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ *
+ */
+
+package org.umlgraph.doclet;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import com.sun.javadoc.RootDoc;
+
+/**
+ * Renders dot files into SVG diagrams through a bounded pool of
+ * concurrent Graphviz processes.
+ * Queued files are handed to dot in batches, using its <code>-O</code>
+ * option to render many diagrams with a single process.
+ * When a batch fails its files are rendered again one by one, so that
+ * errors and the Graphviz messages are reported for each file.
+ * Diagrams kept in memory are piped to a dot process each, which writes
+ * the SVG diagram to its standard output.
+ * Diagrams found in the optional DiagramCache are not rendered at all.
+ * The batches wait in the bounded queue of the rendering PipelineStage,
+ * so that the diagram generators wait when Graphviz can not keep up.
+ *
+ * @has - - - DiagramCache
+ * @composed - - - PipelineStage
+ * @version $Revision$
+ * @author <a href="http://www.spinellis.gr">Diomidis Spinellis</a>
+ */
+class GraphvizRenderer implements DiagramRenderer {
+    private final String dotExecutable;
+    private final int processes;
+    private final int batchSize;
+    private final RootDoc root;
+    private final DiagramCache cache;
+    private final PipelineStage stage;
+    /** Files queued, but not yet handed to a process */
+    private final List<File> pending = new ArrayList<File>();
+    /** The dot files whose diagrams could not be rendered */
+    private final Set<File> failures = Collections.synchronizedSet(new HashSet<File>());
+
+    /**
+     * Create a new renderer
+     * @param dotExecutable the dot executable, or null to find it in the path
+     * @param processes the maximum number of concurrent dot processes
+     * @param batchSize the maximum number of files passed to a dot process
+     * @param root the javadoc root, used to report warnings
+     * @param cache the cache of rendered diagrams, or null
+     */
+    public GraphvizRenderer(String dotExecutable, int processes, int batchSize, RootDoc root,
+	    DiagramCache cache) {
+	this.dotExecutable = dotExecutable == null ? "dot" : dotExecutable;
+	this.processes = Math.max(1, processes);
+	this.batchSize = Math.max(1, batchSize);
+	this.root = root;
+	this.cache = cache;
+	this.stage = new PipelineStage("rendering", this.processes, this.processes, root);
+    }
+
+    /**
+     * Queue the specified dot file for rendering into an SVG file next to
+     * it, waiting while the rendering queue is full
+     */
+    public void render(File dotFile) throws InterruptedException {
+	if (cache != null && cache.fetch(dotFile, svgFile(dotFile)))
+	    return;
+	List<File> batch = null;
+	synchronized (this) {
+	    pending.add(dotFile);
+	    if (pending.size() >= batchSize) {
+		batch = new ArrayList<File>(pending);
+		pending.clear();
+	    }
+	}
+	if (batch != null)
+	    submit(batch);
+    }
+
+    /**
+     * Queue the specified dot text for rendering into the SVG file next to
+     * the specified dot file, waiting while the rendering queue is full.
+     * The text is piped to its own dot process, and the dot file need not
+     * exist.
+     */
+    public void render(final File dotFile, final byte[] dot) throws InterruptedException {
+	if (cache != null && cache.fetch(dot, svgFile(dotFile)))
+	    return;
+	stage.submit("rendering " + dotFile, new Callable<Void>() {
+	    public Void call() {
+		boolean done = false;
+		try {
+		    renderText(dotFile, dot);
+		    done = true;
+		} finally {
+		    // an unexpected error leaves the diagram unrendered
+		    if (!done)
+			failures.add(dotFile);
+		}
+		return null;
+	    }
+	});
+    }
+
+    /**
+     * Render all the queued files and wait for the processes to complete.
+     * The remaining files are spread over the pool's processes.
+     * @return false if any file could not be rendered
+     */
+    public boolean finish() {
+	List<File> rest;
+	synchronized (this) {
+	    rest = new ArrayList<File>(pending);
+	    pending.clear();
+	}
+	boolean success;
+	try {
+	    int n = rest.size();
+	    int chunk = (n + processes - 1) / processes;
+	    for (int i = 0; i < n; i += chunk)
+		submit(new ArrayList<File>(rest.subList(i, Math.min(n, i + chunk))));
+	    success = stage.finish() && failures.isEmpty();
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    return false;
+	}
+	if (cache != null)
+	    cache.evict();
+	return success;
+    }
+
+    /** Return the dot files whose diagrams could not be rendered */
+    public Set<File> failures() {
+	synchronized (failures) {
+	    return new HashSet<File>(failures);
+	}
+    }
+
+    /** Return the throughput and queue statistics of the rendering */
+    public String statistics() {
+	return stage.statistics();
+    }
+
+    /** Hand the specified files to a process of the pool */
+    private void submit(final List<File> files) throws InterruptedException {
+	stage.submit("rendering " + files, new Callable<Void>() {
+	    public Void call() {
+		boolean done = false;
+		try {
+		    if (files.size() == 1)
+			renderFile(files.get(0));
+		    else
+			renderBatch(files);
+		    done = true;
+		} finally {
+		    // an unexpected error leaves the diagrams unrendered
+		    if (!done)
+			failures.addAll(files);
+		}
+		return null;
+	    }
+	});
+    }
+
+    /** Render the files with a single dot invocation */
+    private boolean renderBatch(List<File> files) {
+	List<String> command = new ArrayList<String>();
+	command.add(dotExecutable);
+	command.add("-Tsvg");
+	command.add("-O");
+	for (File dotFile : files) {
+	    autoOutput(dotFile).delete();
+	    command.add(dotFile.getAbsolutePath());
+	}
+	List<String> messages = new ArrayList<String>();
+	int result = run(command, messages);
+	if (result < 0) {
+	    failures.addAll(files);
+	    return false;
+	}
+
+	// dot -O names the output of x.dot x.dot.svg
+	List<File> rendered = new ArrayList<File>();
+	List<File> missing = new ArrayList<File>();
+	for (File dotFile : files) {
+	    File svgFile = svgFile(dotFile);
+	    svgFile.delete();
+	    if (autoOutput(dotFile).renameTo(svgFile))
+		rendered.add(dotFile);
+	    else
+		missing.add(dotFile);
+	}
+	// a failure without a missing output does not tell which file failed
+	if (result != 0 && missing.isEmpty()) {
+	    missing.addAll(rendered);
+	    rendered.clear();
+	}
+	// the files rendered again report their own messages
+	reportBatch(rendered, messages, missing.isEmpty());
+	for (File dotFile : rendered)
+	    cached(dotFile);
+	boolean success = true;
+	for (File dotFile : missing)
+	    success &= renderFile(dotFile);
+	return success;
+    }
+
+    /**
+     * Report the messages of a dot run on several files. Graphviz names
+     * the file in the messages about it, such as syntax errors; the
+     * messages naming one of the specified files are reported as they
+     * are. The others are reported after the list of the files of the
+     * batch, if specified.
+     */
+    private void reportBatch(List<File> files, List<String> messages, boolean unattributed) {
+	List<String> named = new ArrayList<String>();
+	List<String> other = new ArrayList<String>();
+	for (String message : messages) {
+	    boolean found = false;
+	    for (File dotFile : files)
+		if (message.contains(dotFile.getAbsolutePath())) {
+		    found = true;
+		    break;
+		}
+	    if (found)
+		named.add(message);
+	    else if (unattributed)
+		other.add(message);
+	}
+	if (!other.isEmpty())
+	    named.add("Graphviz messages for " + files + ":");
+	named.addAll(other);
+	report(named, null);
+    }
+
+    /** Render a single file, reporting the Graphviz messages for it */
+    private boolean renderFile(File dotFile) {
+	List<String> command = new ArrayList<String>();
+	command.add(dotExecutable);
+	command.add("-Tsvg");
+	command.add("-o");
+	command.add(svgFile(dotFile).getAbsolutePath());
+	command.add(dotFile.getAbsolutePath());
+	List<String> messages = new ArrayList<String>();
+	int result = run(command, messages);
+	if (result >= 0)
+	    report(messages, result != 0 ? "Errors running Graphviz on " + dotFile : null);
+	if (result != 0) {
+	    failures.add(dotFile);
+	    return false;
+	}
+	cached(dotFile);
+	return true;
+    }
+
+    /** Render the specified dot text, reading the diagram from dot's output */
+    private boolean renderText(File dotFile, byte[] dot) {
+	List<String> command = new ArrayList<String>();
+	command.add(dotExecutable);
+	command.add("-Tsvg");
+	List<String> messages = new ArrayList<String>();
+	File svgFile = svgFile(dotFile);
+	int result = run(command, dot, svgFile, messages);
+	if (result >= 0)
+	    report(messages, result != 0 ? "Errors running Graphviz on " + dotFile : null);
+	if (result != 0) {
+	    failures.add(dotFile);
+	    return false;
+	}
+	if (cache != null)
+	    cache.store(dot, svgFile);
+	return true;
+    }
+
+    /** Add the diagram rendered from the specified file to the cache */
+    private void cached(File dotFile) {
+	if (cache != null)
+	    cache.store(dotFile, svgFile(dotFile));
+    }
+
+    /**
+     * Run the specified command, collecting its error output.
+     * @return the exit value of the process, or -1 if it could not be run
+     */
+    private int run(List<String> command, List<String> messages) {
+	return run(command, null, null, messages);
+    }
+
+    /**
+     * Run the specified command, feeding it the specified input, copying
+     * its output to the specified file, and collecting its error output.
+     * The input and output are transferred by separate threads, so that
+     * the process never waits for a full pipe.
+     * @param input the input of the process, or null for none
+     * @param output the file receiving the output, or null to ignore it
+     * @return the exit value of the process, or -1 if it could not be run
+     */
+    private int run(List<String> command, final byte[] input, final File output, List<String> messages) {
+	try {
+	    final Process p = Runtime.getRuntime().exec(command.toArray(new String[command.size()]));
+	    Thread feeder = null;
+	    if (input == null)
+		p.getOutputStream().close();
+	    else {
+		feeder = new Thread(new Runnable() {
+		    public void run() {
+			try {
+			    OutputStream in = p.getOutputStream();
+			    try {
+				in.write(input);
+			    } finally {
+				in.close();
+			    }
+			} catch (IOException e) {
+			    // dot exited early; its error output tells why
+			}
+		    }
+		});
+		feeder.start();
+	    }
+	    final IOException[] copyError = new IOException[1];
+	    Thread copier = null;
+	    if (output != null) {
+		copier = new Thread(new Runnable() {
+		    public void run() {
+			try {
+			    copy(p.getInputStream(), output);
+			} catch (IOException e) {
+			    copyError[0] = e;
+			}
+		    }
+		});
+		copier.start();
+	    }
+	    BufferedReader reader = new BufferedReader(new InputStreamReader(p.getErrorStream()));
+	    String line;
+	    while ((line = reader.readLine()) != null)
+		messages.add(line);
+	    reader.close();
+	    if (feeder != null)
+		feeder.join();
+	    if (copier != null)
+		copier.join();
+	    int result = p.waitFor();
+	    if (copyError[0] != null) {
+		messages.add("Unable to write " + output + ": " + copyError[0]);
+		return result == 0 ? 1 : result;
+	    }
+	    return result;
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    return -1;
+	} catch (IOException e) {
+	    e.printStackTrace();
+	    System.err.println("Ensure that dot is in your path and that its path does not contain spaces");
+	    return -1;
+	}
+    }
+
+    /** Copy the specified stream to a file, closing both */
+    private static void copy(InputStream in, File file) throws IOException {
+	try {
+	    OutputStream out = new FileOutputStream(file);
+	    try {
+		byte[] buffer = new byte[8192];
+		int n;
+		while ((n = in.read(buffer)) > 0)
+		    out.write(buffer, 0, n);
+	    } finally {
+		out.close();
+	    }
+	} finally {
+	    in.close();
+	}
+    }
+
+    /** Print the messages of a process, keeping those of one file together */
+    private void report(List<String> messages, String error) {
+	if (messages.isEmpty() && error == null)
+	    return;
+	synchronized (root) {
+	    for (String message : messages)
+		root.printWarning(message);
+	    if (error != null)
+		root.printWarning(error);
+	}
+    }
+
+    private static File svgFile(File dotFile) {
+	String name = dotFile.getName();
+	if (name.endsWith(".dot"))
+	    name = name.substring(0, name.length() - 4);
+	return new File(dotFile.getParentFile(), name + ".svg");
+    }
+
+    private static File autoOutput(File dotFile) {
+	return new File(dotFile.getPath() + ".svg");
+    }
+}
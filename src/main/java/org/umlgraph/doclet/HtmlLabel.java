@@ -0,0 +1,597 @@
+/*
+ * Create a graphviz graph based on the classes in the specified java
+ * source files.
+ *
+ * (C) Copyright 2002-2010 Diomidis Spinellis
+ *
+ * Permission to use, copy, and distribute this software and its
+ * documentation for any purpose and without fee is hereby granted,
+ * provided that the above copyright notice appear in all copies and that
+ * both that copyright notice and this permission notice appear in
+ * supporting documentation.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND WITHOUT ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF
+ * MERCHANTIBILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ *
+ */
+
+package org.umlgraph.doclet;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A node or edge label, measured and drawn by the SvgWriter.
+ * HTML-like labels are read into their tables, rows, and cells, with the
+ * text of the cells split into lines of spans in the fonts set by the
+ * font, i, b, and u elements.  This covers the tables ClassGraph writes
+ * for the classes and their compartments, stereotypes, tagged values,
+ * and notes.
+ * Other labels are lines of text, split at their escape sequences.
+ * Text is measured with the TextMetrics tables.
+ * Tables nested in a cell are stretched to the cell's width, so that the
+ * lines of all compartments align with the compartment border.
+ *
+ * @depend - - - TextMetrics
+ * @version $Revision$
+ * @author <a href="http://www.spinellis.gr">Diomidis Spinellis</a>
+ */
+class HtmlLabel {
+    /** Line height, as a fraction of the font size */
+    private static final double LINE_HEIGHT = 1.2;
+
+    /** The table of the label, or null for text */
+    private final Table table;
+    /** The text of the label, if it is not a table */
+    private final Cell text;
+    final double width, height;
+
+    /** The font of a span of text */
+    static class Style {
+	final String face;
+	final double size;
+	final String color;
+	final boolean italic, bold, underline;
+	private TextMetrics metrics;
+
+	Style(String face, double size, String color, boolean italic, boolean bold, boolean underline) {
+	    this.face = face;
+	    this.size = size;
+	    this.color = color;
+	    this.italic = italic;
+	    this.bold = bold;
+	    this.underline = underline;
+	}
+
+	/** Return the style modified by the specified element */
+	Style with(Tag tag) {
+	    if (tag.name.equals("font"))
+		return new Style(DotGraph.attribute(tag.attributes, "face", face),
+			DotGraph.attribute(tag.attributes, "point-size", size),
+			DotGraph.attribute(tag.attributes, "color", color), italic, bold, underline);
+	    return new Style(face, size, color, italic || tag.name.equals("i"), bold || tag.name.equals("b"),
+		    underline || tag.name.equals("u"));
+	}
+
+	/** Return the face's family, without its PostScript variant such as -Bold */
+	String family() {
+	    int dash = face.indexOf('-');
+	    return dash > 0 ? face.substring(0, dash) : face;
+	}
+
+	boolean isBold() {
+	    return bold || variant().contains("bold");
+	}
+
+	boolean isItalic() {
+	    return italic || variant().contains("italic") || variant().contains("oblique");
+	}
+
+	private String variant() {
+	    int dash = face.indexOf('-');
+	    return dash > 0 ? face.substring(dash).toLowerCase(Locale.ROOT) : "";
+	}
+
+	TextMetrics metrics() {
+	    if (metrics == null)
+		metrics = TextMetrics.of(face, size, isBold());
+	    return metrics;
+	}
+    }
+
+    /** A run of text in a single style */
+    private static class Span {
+	final String text;
+	final Style style;
+	final double width;
+
+	Span(String text, Style style) {
+	    this.text = text;
+	    this.style = style;
+	    this.width = style.metrics().width(text);
+	}
+    }
+
+    /** A line of text */
+    private static class Line {
+	final List<Span> spans = new ArrayList<Span>();
+	/** The alignment set by the line's break, or null */
+	String align;
+	double width, height;
+
+	void measure(Style style) {
+	    width = 0;
+	    height = spans.isEmpty() ? style.size * LINE_HEIGHT : 0;
+	    for (Span span : spans) {
+		width += span.width;
+		height = Math.max(height, span.style.size * LINE_HEIGHT);
+	    }
+	}
+    }
+
+    /** A table cell, holding a table or lines of text */
+    private static class Cell {
+	final Map<String, String> attributes;
+	Table table;
+	final List<Line> lines = new ArrayList<Line>();
+	int row, column, rowSpan = 1, columnSpan = 1;
+	double border, padding;
+	double width, height;
+
+	Cell(Map<String, String> attributes) {
+	    this.attributes = attributes;
+	}
+
+	/** Compute the natural size of the cell */
+	void measure() {
+	    double contentWidth = 0, contentHeight = 0;
+	    if (table != null) {
+		contentWidth = table.width;
+		contentHeight = table.height;
+	    } else
+		for (Line line : lines) {
+		    contentWidth = Math.max(contentWidth, line.width);
+		    contentHeight += line.height;
+		}
+	    double frame = 2 * (border + padding);
+	    width = Math.max(contentWidth + frame, DotGraph.attribute(attributes, "width", 0));
+	    height = Math.max(contentHeight + frame, DotGraph.attribute(attributes, "height", 0));
+	}
+
+	/** Draw the cell in the specified box */
+	void draw(SvgWriter out, String stroke, double x, double y, double w, double h) {
+	    String bgcolor = attributes.get("bgcolor");
+	    if (bgcolor != null)
+		out.rectangle(x, y, w, h, bgcolor, null, 0);
+	    if (border > 0)
+		out.rectangle(x + border / 2, y + border / 2, w - border, h - border, null,
+			DotGraph.attribute(attributes, "color", stroke), border);
+	    double inset = border + padding;
+	    double left = x + inset, top = y + inset, right = x + w - inset, bottom = y + h - inset;
+	    String valign = DotGraph.attribute(attributes, "valign", "middle");
+	    if (table != null) {
+		double ty = valign.equals("top") ? top : valign.equals("bottom") ? bottom - table.height
+			: (top + bottom - table.height) / 2;
+		table.draw(out, stroke, left, ty, right - left, table.height);
+		return;
+	    }
+	    double blockWidth = 0, blockHeight = 0;
+	    for (Line line : lines) {
+		blockWidth = Math.max(blockWidth, line.width);
+		blockHeight += line.height;
+	    }
+	    String align = DotGraph.attribute(attributes, "align", "center");
+	    String balign = DotGraph.attribute(attributes, "balign", "center");
+	    double blockLeft = align.equals("left") ? left : align.equals("right") ? right - blockWidth
+		    : (left + right - blockWidth) / 2;
+	    double lineTop = valign.equals("top") ? top : valign.equals("bottom") ? bottom - blockHeight
+		    : (top + bottom - blockHeight) / 2;
+	    for (Line line : lines) {
+		String lineAlign = line.align != null ? line.align : balign;
+		double lx = lineAlign.equals("left") ? blockLeft
+			: lineAlign.equals("right") ? blockLeft + blockWidth - line.width
+			: blockLeft + (blockWidth - line.width) / 2;
+		for (Span span : line.spans) {
+		    double size = span.style.size;
+		    // center the capitals in the line
+		    double baseline = lineTop + (line.height + 0.7 * size) / 2;
+		    out.text(lx, baseline, span.text, span.style);
+		    lx += span.width;
+		}
+		lineTop += line.height;
+	    }
+	}
+    }
+
+    /** A table, and the grid of its cells */
+    private static class Table {
+	final Map<String, String> attributes;
+	final List<List<Cell>> rows = new ArrayList<List<Cell>>();
+	double border, spacing;
+	double[] columnWidths, rowHeights;
+	double width, height;
+
+	Table(Map<String, String> attributes) {
+	    this.attributes = attributes;
+	    border = DotGraph.attribute(attributes, "border", 1);
+	    spacing = DotGraph.attribute(attributes, "cellspacing", 2);
+	}
+
+	/** Place the cells in the grid, and compute its natural size */
+	void measure() {
+	    double cellBorder = DotGraph.attribute(attributes, "cellborder", border);
+	    double cellPadding = DotGraph.attribute(attributes, "cellpadding", 2);
+	    List<BitSet> taken = new ArrayList<BitSet>();
+	    List<Cell> cells = new ArrayList<Cell>();
+	    int columns = 0;
+	    for (int r = 0; r < rows.size(); r++) {
+		int c = 0;
+		for (Cell cell : rows.get(r)) {
+		    while (taken(taken, r).get(c))
+			c++;
+		    cell.row = r;
+		    cell.column = c;
+		    // like dot, do not let a cell span rows past the last one
+		    cell.rowSpan = Math.min(rows.size() - r,
+			    Math.max(1, (int) DotGraph.attribute(cell.attributes, "rowspan", 1)));
+		    cell.columnSpan = Math.max(1, (int) DotGraph.attribute(cell.attributes, "colspan", 1));
+		    for (int i = r; i < r + cell.rowSpan; i++)
+			taken(taken, i).set(c, c + cell.columnSpan);
+		    c += cell.columnSpan;
+		    columns = Math.max(columns, c);
+		    cell.border = DotGraph.attribute(cell.attributes, "border", cellBorder);
+		    cell.padding = DotGraph.attribute(cell.attributes, "cellpadding", cellPadding);
+		    cell.measure();
+		    cells.add(cell);
+		}
+	    }
+	    columnWidths = new double[columns];
+	    rowHeights = new double[rows.size()];
+	    // single cells first, then spread what the spanning ones miss
+	    for (int pass = 0; pass < 2; pass++)
+		for (Cell cell : cells) {
+		    if ((cell.columnSpan == 1) == (pass == 0))
+			grow(columnWidths, cell.column, cell.columnSpan, cell.width);
+		    if ((cell.rowSpan == 1) == (pass == 0))
+			grow(rowHeights, cell.row, cell.rowSpan, cell.height);
+		}
+	    width = total(columnWidths, 0, columns) + (columns + 1) * spacing + 2 * border;
+	    height = total(rowHeights, 0, rowHeights.length) + (rowHeights.length + 1) * spacing + 2 * border;
+	}
+
+	private static BitSet taken(List<BitSet> taken, int row) {
+	    while (taken.size() <= row)
+		taken.add(new BitSet());
+	    return taken.get(row);
+	}
+
+	/** Grow a span of sizes so that they fit the specified size */
+	private void grow(double[] sizes, int start, int span, double size) {
+	    double missing = size - total(sizes, start, span) - (span - 1) * spacing;
+	    if (missing > 0)
+		for (int i = start; i < start + span; i++)
+		    sizes[i] += missing / span;
+	}
+
+	private static double total(double[] sizes, int start, int span) {
+	    double sum = 0;
+	    for (int i = start; i < start + span; i++)
+		sum += sizes[i];
+	    return sum;
+	}
+
+	/** Draw the table in the specified box, spreading the extra space over its columns */
+	void draw(SvgWriter out, String stroke, double x, double y, double w, double h) {
+	    String bgcolor = attributes.get("bgcolor");
+	    if (bgcolor != null)
+		out.rectangle(x, y, w, h, bgcolor, null, 0);
+	    stroke = DotGraph.attribute(attributes, "color", stroke);
+	    if (border > 0)
+		out.rectangle(x + border / 2, y + border / 2, w - border, h - border, null, stroke, border);
+	    double[] columnX = offsets(columnWidths, x, w - width);
+	    double[] rowY = offsets(rowHeights, y, h - height);
+	    for (List<Cell> row : rows)
+		for (Cell cell : row) {
+		    int lastColumn = cell.column + cell.columnSpan - 1;
+		    int lastRow = cell.row + cell.rowSpan - 1;
+		    double cw = columnX[lastColumn] + size(columnWidths, lastColumn, w - width) - columnX[cell.column];
+		    double ch = rowY[lastRow] + size(rowHeights, lastRow, h - height) - rowY[cell.row];
+		    cell.draw(out, stroke, columnX[cell.column], rowY[cell.row], cw, ch);
+		}
+	}
+
+	/** Return the positions of the columns or rows, given the extra space */
+	private double[] offsets(double[] sizes, double start, double extra) {
+	    double[] offsets = new double[sizes.length];
+	    double position = start + border + spacing;
+	    for (int i = 0; i < sizes.length; i++) {
+		offsets[i] = position;
+		position += size(sizes, i, extra) + spacing;
+	    }
+	    return offsets;
+	}
+
+	private static double size(double[] sizes, int i, double extra) {
+	    return sizes[i] + Math.max(0, extra) / sizes.length;
+	}
+    }
+
+    /** A start or end tag */
+    private static class Tag {
+	final String name;
+	final boolean end;
+	final boolean empty;
+	final Map<String, String> attributes = new HashMap<String, String>();
+
+	Tag(String text) {
+	    String body = text.substring(1, text.length() - 1).trim();
+	    end = body.startsWith("/");
+	    empty = body.endsWith("/");
+	    if (end)
+		body = body.substring(1);
+	    if (empty)
+		body = body.substring(0, body.length() - 1);
+	    int i = 0;
+	    while (i < body.length() && !Character.isWhitespace(body.charAt(i)))
+		i++;
+	    name = body.substring(0, i).toLowerCase(Locale.ROOT);
+	    // name="value" pairs
+	    while (i < body.length()) {
+		int equals = body.indexOf('=', i);
+		if (equals < 0)
+		    break;
+		String attribute = body.substring(i, equals).trim().toLowerCase(Locale.ROOT);
+		int open = equals + 1;
+		while (open < body.length() && Character.isWhitespace(body.charAt(open)))
+		    open++;
+		if (open >= body.length())
+		    break;
+		char quote = body.charAt(open);
+		int close;
+		String value;
+		if (quote == '"' || quote == '\'') {
+		    close = body.indexOf(quote, open + 1);
+		    if (close < 0)
+			close = body.length();
+		    value = body.substring(open + 1, close);
+		    close++;
+		} else {
+		    close = open;
+		    while (close < body.length() && !Character.isWhitespace(body.charAt(close)))
+			close++;
+		    value = body.substring(open, close);
+		}
+		attributes.put(attribute, unescape(value));
+		i = close;
+	    }
+	}
+    }
+
+    /**
+     * Create a label
+     * @param label the label attribute; HTML-like labels keep their angle brackets
+     * @param style the font of the node or edge
+     */
+    HtmlLabel(String label, Style style) {
+	if (label.startsWith("<") && label.endsWith(">")) {
+	    List<Object> tokens = tokenize(label.substring(1, label.length() - 1));
+	    int[] next = { 0 };
+	    Table found = null;
+	    for (; next[0] < tokens.size(); next[0]++) {
+		Object token = tokens.get(next[0]);
+		if (token instanceof Tag && ((Tag) token).name.equals("table") && !((Tag) token).end) {
+		    next[0]++;
+		    found = parseTable((Tag) token, tokens, next, style);
+		    break;
+		} else if (!(token instanceof String) || !((String) token).trim().isEmpty())
+		    break;
+	    }
+	    if (found != null) {
+		table = found;
+		text = null;
+	    } else {
+		next[0] = 0;
+		table = null;
+		text = parseText(new Cell(new HashMap<String, String>()), tokens, next, style);
+	    }
+	} else {
+	    table = null;
+	    text = new Cell(new HashMap<String, String>());
+	    plainLines(text, label, style);
+	}
+	if (table != null) {
+	    width = table.width;
+	    height = table.height;
+	} else {
+	    text.measure();
+	    width = text.width;
+	    height = text.height;
+	}
+    }
+
+    /** Return the title of the label's table, or null */
+    String title() {
+	return table == null ? null : table.attributes.get("title");
+    }
+
+    /** Draw the label in the box with the specified top left corner */
+    void draw(SvgWriter out, String stroke, double x, double y) {
+	if (table != null)
+	    table.draw(out, stroke, x, y, width, height);
+	else
+	    text.draw(out, stroke, x, y, width, height);
+    }
+
+    /** Parse the rows of a table, up to its end tag */
+    private static Table parseTable(Tag start, List<Object> tokens, int[] next, Style style) {
+	Table table = new Table(start.attributes);
+	for (; next[0] < tokens.size(); next[0]++) {
+	    Object token = tokens.get(next[0]);
+	    if (!(token instanceof Tag))
+		continue;
+	    Tag tag = (Tag) token;
+	    if (tag.name.equals("table") && tag.end)
+		break;
+	    if (tag.name.equals("tr") && !tag.end)
+		table.rows.add(new ArrayList<Cell>());
+	    else if (tag.name.equals("td") && !tag.end) {
+		if (table.rows.isEmpty())
+		    table.rows.add(new ArrayList<Cell>());
+		next[0]++;
+		Cell cell = new Cell(tag.attributes);
+		table.rows.get(table.rows.size() - 1).add(parseText(cell, tokens, next, style));
+	    }
+	}
+	table.measure();
+	return table;
+    }
+
+    /**
+     * Parse the contents of a cell, a nested table or lines of text, up
+     * to its end tag or the end of the tokens
+     */
+    private static Cell parseText(Cell cell, List<Object> tokens, int[] next, Style base) {
+	List<Style> styles = new ArrayList<Style>();
+	styles.add(base);
+	Line line = new Line();
+	for (; next[0] < tokens.size(); next[0]++) {
+	    Object token = tokens.get(next[0]);
+	    Style style = styles.get(styles.size() - 1);
+	    if (token instanceof String) {
+		String text = unescape(((String) token).replace("\r", "").replace('\n', ' '));
+		if (!text.isEmpty())
+		    line.spans.add(new Span(text, style));
+		continue;
+	    }
+	    Tag tag = (Tag) token;
+	    if (tag.name.equals("td") && tag.end)
+		break;
+	    if (tag.name.equals("table") && !tag.end) {
+		next[0]++;
+		cell.table = parseTable(tag, tokens, next, style);
+		line.spans.clear();
+	    } else if (tag.name.equals("br")) {
+		line.align = tag.attributes.get("align");
+		line.measure(style);
+		cell.lines.add(line);
+		line = new Line();
+	    } else if (tag.end) {
+		if (styles.size() > 1)
+		    styles.remove(styles.size() - 1);
+	    } else if (!tag.empty)
+		styles.add(style.with(tag));
+	}
+	if (cell.table != null)
+	    cell.lines.clear();
+	else if (!line.spans.isEmpty() || !cell.lines.isEmpty()) {
+	    line.measure(styles.get(styles.size() - 1));
+	    cell.lines.add(line);
+	}
+	return cell;
+    }
+
+    /** Split a plain label at its \n, \l, and \r line breaks */
+    private static void plainLines(Cell cell, String label, Style style) {
+	Line line = new Line();
+	StringBuilder text = new StringBuilder();
+	for (int i = 0; i < label.length(); i++) {
+	    char c = label.charAt(i);
+	    if (c == '\\' && i + 1 < label.length() && "nlr".indexOf(label.charAt(i + 1)) >= 0) {
+		char kind = label.charAt(++i);
+		line.align = kind == 'l' ? "left" : kind == 'r' ? "right" : null;
+		endLine(cell, line, text, style);
+		line = new Line();
+	    } else
+		text.append(c);
+	}
+	if (text.length() > 0 || cell.lines.isEmpty())
+	    endLine(cell, line, text, style);
+    }
+
+    private static void endLine(Cell cell, Line line, StringBuilder text, Style style) {
+	if (text.length() > 0)
+	    line.spans.add(new Span(text.toString(), style));
+	text.setLength(0);
+	line.measure(style);
+	cell.lines.add(line);
+    }
+
+    /** Split HTML-like text into Tag objects and text strings */
+    private static List<Object> tokenize(String html) {
+	List<Object> tokens = new ArrayList<Object>();
+	int i = 0;
+	while (i < html.length()) {
+	    int open = html.indexOf('<', i);
+	    if (open < 0)
+		open = html.length();
+	    if (open > i)
+		tokens.add(html.substring(i, open));
+	    if (open == html.length())
+		break;
+	    int close = html.indexOf('>', open);
+	    if (close < 0)
+		close = html.length() - 1;
+	    tokens.add(new Tag(html.substring(open, close + 1)));
+	    i = close + 1;
+	}
+	return tokens;
+    }
+
+    /** Decode the character entities of HTML-like label text */
+    static String unescape(String text) {
+	if (text.indexOf('&') < 0)
+	    return text;
+	StringBuilder result = new StringBuilder(text.length());
+	for (int i = 0; i < text.length(); i++) {
+	    char c = text.charAt(i);
+	    int end = c == '&' ? text.indexOf(';', i) : -1;
+	    if (end < 0 || end - i > 10) {
+		result.append(c);
+		continue;
+	    }
+	    String entity = text.substring(i + 1, end);
+	    String decoded = null;
+	    if (entity.startsWith("#x") || entity.startsWith("#X"))
+		decoded = codePoint(entity.substring(2), 16);
+	    else if (entity.startsWith("#"))
+		decoded = codePoint(entity.substring(1), 10);
+	    else if (entity.equals("lt"))
+		decoded = "<";
+	    else if (entity.equals("gt"))
+		decoded = ">";
+	    else if (entity.equals("amp"))
+		decoded = "&";
+	    else if (entity.equals("quot"))
+		decoded = "\"";
+	    else if (entity.equals("apos"))
+		decoded = "'";
+	    else if (entity.equals("nbsp"))
+		decoded = "\u00a0";
+	    else if (entity.equals("laquo"))
+		decoded = "\u00ab";
+	    else if (entity.equals("raquo"))
+		decoded = "\u00bb";
+	    if (decoded == null)
+		result.append(c);
+	    else {
+		result.append(decoded);
+		i = end;
+	    }
+	}
+	return result.toString();
+    }
+
+    private static String codePoint(String digits, int radix) {
+	try {
+	    return new String(Character.toChars(Integer.parseInt(digits, radix)));
+	} catch (IllegalArgumentException e) {
+	    return null;
+	}
+    }
+}
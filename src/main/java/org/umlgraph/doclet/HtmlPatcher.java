@@ -0,0 +1,381 @@
+/*
+ * Create a graphviz graph based on the classes in the specified java
+ * source files.
+ *
+ * (C) Copyright 2002-2010 Diomidis Spinellis
+ *
+ * Permission to use, copy, and distribute this software and its
+ * documentation for any purpose and without fee is hereby granted,
+ * provided that the above copyright notice appear in all copies and that
+ * both that copyright notice and this permission notice appear in
+ * supporting documentation.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND WITHOUT ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF
+ * MERCHANTIBILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ *
+ */
+
+package org.umlgraph.doclet;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.regex.Pattern;
+
+import com.sun.javadoc.RootDoc;
+
+/**
+ * Inserts the reference to a diagram into an HTML page of the standard
+ * doclet, after the first line matching an insertion point pattern.
+ * <p>
+ * Only the lines containing one of the literals of the insertion point
+ * are matched against its pattern, and the page is not scanned past the
+ * insertion point. The page is written to a temporary file that then
+ * replaces it, so that readers never see a partially written page.
+ * A page that already holds a diagram reference right after its
+ * insertion point, from a previous run, is left as is.
+ * <p>
+ * The pages are patched by a PipelineStage of their own, either as soon
+ * as their insertions are requested, or, in batch mode, in one sweep
+ * over all the pages, in path order, once every diagram has been
+ * generated. The batch sweep reports the outcome for each page.
+ *
+ * @composed - - - PipelineStage
+ * @version $Revision$
+ * @author <a href="http://www.spinellis.gr">Diomidis Spinellis</a>
+ */
+class HtmlPatcher {
+    /** The start of the comment preceding the inserted diagram reference */
+    static final String MARKER = "<!-- UML diagram added by UMLGraph";
+
+    /** The outcome of patching a page */
+    enum Result {
+	PATCHED("Patched"),
+	ALREADY_PATCHED("Already patched"),
+	NO_INSERTION_POINT("No insertion point in");
+
+	final String description;
+
+	Result(String description) {
+	    this.description = description;
+	}
+    }
+
+    //Format string for the uml image div tag.
+    private static final String UML_DIV_TAG =
+	"<div align=\"center\">" +
+	    "<object width=\"100%%\" height=\"100%%\" type=\"image/svg+xml\" data=\"%1$s.svg\" alt=\"Package class diagram package %1$s\" border=0></object>" +
+	"</div>";
+
+    private static final String UML_AUTO_SIZED_DIV_TAG =
+    "<div align=\"center\">" +
+        "<object type=\"image/svg+xml\" data=\"%1$s.svg\" alt=\"Package class diagram package %1$s\" border=0></object>" +
+    "</div>";
+
+    private static final String EXPANDABLE_UML_STYLE = "font-family: Arial,Helvetica,sans-serif;font-size: 1.5em; display: block; width: 250px; height: 20px; background: #009933; padding: 5px; text-align: center; border-radius: 8px; color: white; font-weight: bold;";
+
+    //Format string for the java script tag.
+    private static final String EXPANDABLE_UML =
+	"<script type=\"text/javascript\">\n" +
+	"function show() {\n" +
+	"    document.getElementById(\"uml\").innerHTML = \n" +
+	"        \'<a style=\"" + EXPANDABLE_UML_STYLE + "\" href=\"javascript:hide()\">%3$s</a>\' +\n" +
+	"        \'%1$s\';\n" +
+	"}\n" +
+	"function hide() {\n" +
+	"	document.getElementById(\"uml\").innerHTML = \n" +
+	"	\'<a style=\"" + EXPANDABLE_UML_STYLE + "\" href=\"javascript:show()\">%2$s</a>\' ;\n" +
+	"}\n" +
+	"</script>\n" +
+	"<div id=\"uml\" >\n" +
+	"	<a href=\"javascript:show()\">\n" +
+	"	<a style=\"" + EXPANDABLE_UML_STYLE + "\" href=\"javascript:show()\">%2$s</a> \n" +
+	"</div>";
+
+    private static final String NEWLINE = System.getProperty("line.separator");
+
+    private final String encoding;
+    private final boolean autoSize;
+    private final boolean collapsible;
+    private final RootDoc root;
+    private final PipelineStage stage;
+    /** The insertions of the batch sweep, or null if pages are patched immediately */
+    private final List<Insertion> pending;
+
+    /** A request to insert the reference to a diagram into a page */
+    private static class Insertion {
+	final File htmlFile;
+	final String name;
+	final Pattern insertionPoint;
+	final String[] literals;
+	/** The outcome, or null if the page could not be patched */
+	Result result;
+
+	Insertion(File htmlFile, String name, Pattern insertionPoint, String[] literals) {
+	    this.htmlFile = htmlFile;
+	    this.name = name;
+	    this.insertionPoint = insertionPoint;
+	    this.literals = literals;
+	}
+    }
+
+    /**
+     * Create a new patcher, and start its stage
+     * @param opt the options, giving the pages' encoding, the form of the
+     * diagram references, and the patching threads and mode
+     * @param root the javadoc root, used to report the outcomes
+     */
+    public HtmlPatcher(Options opt, RootDoc root) {
+	this.encoding = opt.outputEncoding;
+	this.autoSize = opt.autoSize;
+	this.collapsible = opt.collapsibleDiagrams;
+	this.root = root;
+	this.stage = new PipelineStage("patching", opt.patchThreads, 4 * opt.patchThreads, root);
+	this.pending = opt.patchBatch ? new ArrayList<Insertion>() : null;
+    }
+
+    /**
+     * Request the insertion of the reference to the diagram of the
+     * specified class or package into a page. Unless the patcher works in
+     * batch mode, the page is queued for patching right away, waiting
+     * while the queue is full.
+     * @see #patch(File, String, Pattern, String...)
+     */
+    public void insert(File htmlFile, String name, Pattern insertionPoint, String... literals)
+	    throws InterruptedException {
+	Insertion insertion = new Insertion(htmlFile, name, insertionPoint, literals);
+	if (pending != null) {
+	    synchronized (pending) {
+		pending.add(insertion);
+	    }
+	} else
+	    submit(insertion);
+    }
+
+    /**
+     * Patch the pages of the batch sweep, if any, wait for all the pages
+     * to be patched, and stop the patching threads
+     * @return false if any page could not be patched
+     */
+    public boolean finish() throws InterruptedException {
+	if (pending == null)
+	    return stage.finish();
+	// visit the pages in the order of the output tree
+	Collections.sort(pending, new Comparator<Insertion>() {
+	    public int compare(Insertion i1, Insertion i2) {
+		return i1.htmlFile.getPath().compareTo(i2.htmlFile.getPath());
+	    }
+	});
+	for (Insertion insertion : pending)
+	    submit(insertion);
+	boolean success = stage.finish();
+	int[] counts = new int[Result.values().length];
+	synchronized (root) {
+	    for (Insertion insertion : pending) {
+		if (insertion.result == null)
+		    continue;
+		counts[insertion.result.ordinal()]++;
+		root.printNotice(insertion.result.description + " " + insertion.htmlFile);
+	    }
+	    root.printNotice(String.format("HTML pages: %d patched, %d already patched, %d without an insertion point",
+		    counts[Result.PATCHED.ordinal()], counts[Result.ALREADY_PATCHED.ordinal()],
+		    counts[Result.NO_INSERTION_POINT.ordinal()]));
+	}
+	return success;
+    }
+
+    /** Return the throughput and queue statistics of the patching */
+    public String statistics() {
+	return stage.statistics();
+    }
+
+    private void submit(final Insertion insertion) throws InterruptedException {
+	stage.submit("patching " + insertion.htmlFile, new Callable<Void>() {
+	    public Void call() throws IOException {
+		apply(insertion);
+		return null;
+	    }
+	});
+    }
+
+    /** Patch the page of the specified insertion, reporting a missing page or insertion point */
+    private void apply(Insertion insertion) throws IOException {
+	if (!insertion.htmlFile.exists()) {
+	    System.err.println("Expected file not found: " + insertion.htmlFile.getAbsolutePath());
+	    return;
+	}
+	insertion.result = patch(insertion.htmlFile, insertion.name, insertion.insertionPoint, insertion.literals);
+	if (insertion.result == Result.NO_INSERTION_POINT) {
+	    synchronized (root) {
+		root.printNotice("Warning, could not find a line that matches the pattern '"
+			+ insertion.insertionPoint.pattern() + "'.\n Class diagram reference not inserted");
+	    }
+	}
+    }
+
+    /**
+     * Insert the reference to the diagram of the specified class or
+     * package after the first line of the page that matches the pattern.
+     * @param htmlFile the page
+     * @param name the name of the diagram, without the .svg suffix
+     * @param insertionPoint the pattern the whole line must match
+     * @param literals strings one of which any line matching the pattern
+     * contains, or none to match every line against the pattern
+     */
+    public Result patch(File htmlFile, String name, Pattern insertionPoint, String... literals)
+	    throws IOException {
+	File temp;
+	FileChannel in = new FileInputStream(htmlFile).getChannel();
+	try {
+	    ByteBuffer bytes = ByteBuffer.allocate((int) in.size());
+	    while (bytes.hasRemaining() && in.read(bytes) >= 0)
+		;
+	    String text = new String(bytes.array(), 0, bytes.position(), encoding);
+	    int end = -1;
+	    for (int start = nextCandidate(text, 0, literals); start >= 0; ) {
+		int lineStart = lineStart(text, start);
+		end = lineEnd(text, start);
+		if (insertionPoint.matcher(text.subSequence(lineStart, end)).matches())
+		    break;
+		start = nextCandidate(text, nextLine(text, end), literals);
+		end = -1;
+	    }
+	    if (end < 0)
+		return Result.NO_INSERTION_POINT;
+	    int insert = nextLine(text, end);
+	    if (text.startsWith(MARKER, insert))
+		return Result.ALREADY_PATCHED;
+
+	    StringBuilder reference = new StringBuilder();
+	    if (insert == end)
+		reference.append(NEWLINE);
+	    reference.append(MARKER).append(" version ").append(Version.VERSION)
+		    .append(" (http://www.spinellis.gr/umlgraph/) -->").append(NEWLINE)
+		    .append(tag(name)).append(NEWLINE);
+	    temp = File.createTempFile(htmlFile.getName(), ".uml", htmlFile.getAbsoluteFile().getParentFile());
+	    boolean written = false;
+	    try {
+		FileChannel out = new FileOutputStream(temp).getChannel();
+		try {
+		    int prefix = byteOffset(text, insert, bytes.array());
+		    if (prefix >= 0) {
+			// copy the bytes around the reference as they are
+			out.write(ByteBuffer.wrap(bytes.array(), 0, prefix));
+			out.write(ByteBuffer.wrap(reference.toString().getBytes(encoding)));
+			long size = in.size();
+			for (long position = prefix; position < size; )
+			    position += in.transferTo(position, size - position, out);
+		    } else
+			out.write(ByteBuffer.wrap((text.substring(0, insert) + reference
+				+ text.substring(insert)).getBytes(encoding)));
+		} finally {
+		    out.close();
+		}
+		written = true;
+	    } finally {
+		if (!written)
+		    temp.delete();
+	    }
+	} finally {
+	    in.close();
+	}
+	// the page must be closed before it is replaced, or Windows refuses to replace it
+	try {
+	    replace(temp, htmlFile);
+	} finally {
+	    temp.delete();
+	}
+	return Result.PATCHED;
+    }
+
+    /**
+     * Return the number of bytes that encode the specified number of
+     * characters at the start of the page, or -1 if the encoding, such as
+     * one with a byte order mark, does not map them to a prefix of the
+     * page's bytes, or would not encode the reference on its own as in
+     * its place
+     */
+    private int byteOffset(String text, int chars, byte[] page) throws IOException {
+	// an encoding starting each string with a byte order mark would add one before the reference
+	if ("\n\n".getBytes(encoding).length != 2 * "\n".getBytes(encoding).length)
+	    return -1;
+	byte[] prefix = text.substring(0, chars).getBytes(encoding);
+	if (prefix.length > page.length)
+	    return -1;
+	for (int i = 0; i < prefix.length; i++)
+	    if (prefix[i] != page[i])
+		return -1;
+	return prefix.length;
+    }
+
+    /** Return the diagram reference inserted into the pages */
+    private String tag(String name) {
+	String tag = String.format(autoSize ? UML_AUTO_SIZED_DIV_TAG : UML_DIV_TAG, name);
+	if (collapsible)
+	    tag = String.format(EXPANDABLE_UML, tag, "Show UML class diagram", "Hide UML class diagram");
+	return tag;
+    }
+
+    /**
+     * Return the position of the first literal at or after the specified
+     * position, or -1 if there is none
+     */
+    private static int nextCandidate(String text, int from, String[] literals) {
+	if (from >= text.length())
+	    return -1;
+	if (literals.length == 0)
+	    return from;
+	int next = -1;
+	for (String literal : literals) {
+	    int i = text.indexOf(literal, from);
+	    if (i >= 0 && (next < 0 || i < next))
+		next = i;
+	}
+	return next;
+    }
+
+    /** Return the start of the line holding the specified position */
+    private static int lineStart(String text, int pos) {
+	while (pos > 0 && text.charAt(pos - 1) != '\n' && text.charAt(pos - 1) != '\r')
+	    pos--;
+	return pos;
+    }
+
+    /** Return the position of the terminator of the line holding the specified position */
+    private static int lineEnd(String text, int pos) {
+	while (pos < text.length() && text.charAt(pos) != '\n' && text.charAt(pos) != '\r')
+	    pos++;
+	return pos;
+    }
+
+    /** Return the start of the line following the specified line terminator */
+    private static int nextLine(String text, int end) {
+	if (end >= text.length())
+	    return end;
+	if (text.charAt(end) == '\r' && end + 1 < text.length() && text.charAt(end + 1) == '\n')
+	    return end + 2;
+	return end + 1;
+    }
+
+    /**
+     * Replace a file with another. Where renaming does not replace an
+     * existing file, the file is deleted first.
+     */
+    private static void replace(File from, File to) throws IOException {
+	if (from.renameTo(to))
+	    return;
+	to.delete();
+	if (!from.renameTo(to))
+	    throw new IOException("Unable to replace " + to);
+    }
+}
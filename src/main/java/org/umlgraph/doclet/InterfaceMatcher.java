@@ -35,7 +35,7 @@ public class InterfaceMatcher implements ClassMatcher {
     }
 
     public boolean matches(String name) {
-	ClassDoc cd = root.classNamed(name);
+	ClassDoc cd = GraphModel.of(root).classNamed(name);
 	return cd == null ? false : matches(cd);
     }
 
@@ -0,0 +1,689 @@
+/*
+ * Create a graphviz graph based on the classes in the specified java
+ * source files.
+ *
+ * (C) Copyright 2002-2010 Diomidis Spinellis
+ *
+ * Permission to use, copy, and distribute this software and its
+ * documentation for any purpose and without fee is hereby granted,
+ * provided that the above copyright notice appear in all copies and that
+ * both that copyright notice and this permission notice appear in
+ * supporting documentation.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND WITHOUT ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF
+ * MERCHANTIBILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ *
+ */
+
+package org.umlgraph.doclet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lays out a directed graph in ranks, in the manner of dot.
+ * The layout follows the steps of Sugiyama's method:
+ * <ol>
+ * <li>Edges closing a cycle are reversed.</li>
+ * <li>Each node is given the rank of its longest path from a source, and
+ * is then moved down towards its successors to shorten its edges.</li>
+ * <li>Edges spanning several ranks are split by virtual nodes, one for
+ * each rank they cross.</li>
+ * <li>The nodes of each rank are ordered by sweeping the ranks up and
+ * down, sorting each by the barycenters of the neighboring nodes, and
+ * keeping the order with the fewest crossings.</li>
+ * <li>The nodes of each rank are placed as near as possible to the
+ * weighted average of their neighbors' positions, keeping their order
+ * and separation.  Each of these placements is a weighted isotonic
+ * regression, solved exactly by pooling adjacent violators.</li>
+ * </ol>
+ * The layout is done top to bottom, and then rotated or flipped according
+ * to the rank direction.  All dimensions are in points.
+ *
+ * @version $Revision$
+ * @author <a href="http://www.spinellis.gr">Diomidis Spinellis</a>
+ */
+class LayeredLayout {
+    /** Maximum number of ordering sweeps */
+    private static final int ORDER_SWEEPS = 24;
+    /** Ordering sweeps without improvement before giving up */
+    private static final int ORDER_PATIENCE = 4;
+    /** Number of placement sweeps */
+    private static final int PLACE_SWEEPS = 8;
+
+    private final boolean horizontal;
+    private final boolean flipped;
+    private final double nodeSep;
+    private final double rankSep;
+    private final List<Vertex> nodes = new ArrayList<Vertex>();
+    private final List<Link> links = new ArrayList<Link>();
+    private List<List<Vertex>> ranks;
+    private double width;
+    private double height;
+
+    /** A node, real or virtual, of the layout */
+    private static class Vertex {
+	/** Size across and along the ranks */
+	final double breadth, depth;
+	final boolean virtual;
+	/** The node's number, or -1 for virtual nodes */
+	final int id;
+	final List<Segment> up = new ArrayList<Segment>();
+	final List<Segment> down = new ArrayList<Segment>();
+	int rank;
+	int order;
+	double position;
+	double x, y;
+	/** State of the depth-first search breaking the cycles */
+	int mark;
+
+	Vertex(double breadth, double depth, int id) {
+	    this.breadth = breadth;
+	    this.depth = depth;
+	    this.virtual = id < 0;
+	    this.id = id;
+	}
+    }
+
+    /** A part of an edge between adjacent ranks */
+    private static class Segment {
+	final Vertex upper, lower;
+	final double weight;
+
+	Segment(Vertex upper, Vertex lower, double weight) {
+	    this.upper = upper;
+	    this.lower = lower;
+	    this.weight = weight;
+	}
+    }
+
+    /** An edge of the graph */
+    private static class Link {
+	final Vertex tail, head;
+	final double weight;
+	final double labelBreadth, labelDepth;
+	boolean reversed;
+	/** The sideways shift separating the edge from others joining the same nodes */
+	double shift;
+	/** The vertices the edge passes through, from its upper end */
+	final List<Vertex> chain = new ArrayList<Vertex>();
+
+	Link(Vertex tail, Vertex head, double weight, double labelBreadth, double labelDepth) {
+	    this.tail = tail;
+	    this.head = head;
+	    this.weight = weight;
+	    this.labelBreadth = labelBreadth;
+	    this.labelDepth = labelDepth;
+	}
+    }
+
+    /**
+     * Create a layout
+     * @param rankDir the dot rank direction: TB, LR, BT, or RL
+     * @param nodeSep the separation between the nodes of a rank
+     * @param rankSep the separation between ranks
+     */
+    LayeredLayout(String rankDir, double nodeSep, double rankSep) {
+	this.horizontal = "LR".equalsIgnoreCase(rankDir) || "RL".equalsIgnoreCase(rankDir);
+	this.flipped = "BT".equalsIgnoreCase(rankDir) || "RL".equalsIgnoreCase(rankDir);
+	this.nodeSep = nodeSep;
+	this.rankSep = rankSep;
+    }
+
+    /**
+     * Add a node of the specified size
+     * @return the node's number
+     */
+    int addNode(double width, double height) {
+	int id = nodes.size();
+	nodes.add(horizontal ? new Vertex(height, width, id) : new Vertex(width, height, id));
+	return id;
+    }
+
+    /**
+     * Add an edge
+     * @param weight how strongly the edge pulls its nodes together
+     * @param labelWidth the width of the edge's label, or 0
+     * @param labelHeight the height of the edge's label, or 0
+     * @return the edge's number
+     */
+    int addEdge(int tail, int head, double weight, double labelWidth, double labelHeight) {
+	links.add(horizontal
+		? new Link(nodes.get(tail), nodes.get(head), weight, labelHeight, labelWidth)
+		: new Link(nodes.get(tail), nodes.get(head), weight, labelWidth, labelHeight));
+	return links.size() - 1;
+    }
+
+    /** Lay out the graph */
+    void layout() {
+	breakCycles();
+	rank();
+	split();
+	order();
+	place();
+	separate();
+	measure();
+    }
+
+    /** Return the width of the laid out graph */
+    double width() {
+	return horizontal ? height : width;
+    }
+
+    /** Return the height of the laid out graph */
+    double height() {
+	return horizontal ? width : height;
+    }
+
+    /** Return the x coordinate of the specified node's center */
+    double x(int node) {
+	return point(nodes.get(node).x, nodes.get(node).y)[0];
+    }
+
+    /** Return the y coordinate of the specified node's center */
+    double y(int node) {
+	return point(nodes.get(node).x, nodes.get(node).y)[1];
+    }
+
+    /**
+     * Return the route of the specified edge as a list of {x, y} points,
+     * from its tail to its head.  The end points lie on the boundaries of
+     * the nodes, and the others are the centers of the virtual nodes.
+     */
+    List<double[]> route(int edge) {
+	Link link = links.get(edge);
+	List<double[]> route = new ArrayList<double[]>();
+	if (link.tail == link.head) {
+	    // a loop on the side of the node
+	    Vertex v = link.tail;
+	    double side = v.x + v.breadth / 2;
+	    double reach = Math.min(v.depth / 4, 9);
+	    route.add(point(side, v.y - reach));
+	    route.add(point(side + nodeSep, v.y - 2 * reach));
+	    route.add(point(side + nodeSep, v.y + 2 * reach));
+	    route.add(point(side, v.y + reach));
+	    return route;
+	}
+	List<Vertex> chain = link.chain;
+	double shift = link.shift;
+	for (int i = 0; i < chain.size(); i++) {
+	    Vertex v = chain.get(i);
+	    double[] p = { v.x, v.y };
+	    if (i == 0)
+		p = clip(v, chain.get(1), shift);
+	    else if (i == chain.size() - 1)
+		p = clip(v, chain.get(i - 1), shift);
+	    route.add(point(p[0], p[1]));
+	}
+	if (link.reversed)
+	    Collections.reverse(route);
+	return route;
+    }
+
+    /**
+     * Return the point where the line between the centers of the two
+     * vertices, shifted sideways, leaves the box of the first one
+     */
+    private static double[] clip(Vertex v, Vertex toward, double shift) {
+	double x = v.x + (v.virtual ? 0 : Math.max(-v.breadth / 2, Math.min(v.breadth / 2, shift)));
+	double tx = toward.x + (toward.virtual ? 0 : Math.max(-toward.breadth / 2, Math.min(toward.breadth / 2, shift)));
+	double dx = tx - x;
+	double dy = toward.y - v.y;
+	double room = dx > 0 ? v.x + v.breadth / 2 - x : x - (v.x - v.breadth / 2);
+	double t = Math.min(dx == 0 ? Double.MAX_VALUE : room / Math.abs(dx),
+		dy == 0 ? Double.MAX_VALUE : v.depth / 2 / Math.abs(dy));
+	t = Math.min(t, 1);
+	return new double[] { x + t * dx, v.y + t * dy };
+    }
+
+    /** Convert a point of the top to bottom layout into the rank direction */
+    private double[] point(double x, double y) {
+	if (flipped)
+	    y = height - y;
+	return horizontal ? new double[] { y, x } : new double[] { x, y };
+    }
+
+    /** Reverse the edges closing a cycle, found by depth-first search */
+    private void breakCycles() {
+	List<List<Link>> out = new ArrayList<List<Link>>(nodes.size());
+	for (int i = 0; i < nodes.size(); i++)
+	    out.add(new ArrayList<Link>());
+	for (Link link : links)
+	    if (link.tail != link.head)
+		out.get(link.tail.id).add(link);
+	for (Vertex v : nodes)
+	    v.mark = 0;
+	// iterative, to survive long chains
+	int[] next = new int[nodes.size()];
+	int[] stack = new int[nodes.size()];
+	for (int start = 0; start < nodes.size(); start++) {
+	    if (nodes.get(start).mark != 0)
+		continue;
+	    int sp = 0;
+	    stack[sp++] = start;
+	    nodes.get(start).mark = 1;
+	    while (sp > 0) {
+		int u = stack[sp - 1];
+		List<Link> edges = out.get(u);
+		if (next[u] == edges.size()) {
+		    nodes.get(u).mark = 2;
+		    sp--;
+		    continue;
+		}
+		Link link = edges.get(next[u]++);
+		Vertex head = link.head;
+		if (head.mark == 1)
+		    link.reversed = true;
+		else if (head.mark == 0) {
+		    head.mark = 1;
+		    stack[sp++] = head.id;
+		}
+	    }
+	}
+    }
+
+    /** Assign the nodes to ranks */
+    private void rank() {
+	int n = nodes.size();
+	List<List<Integer>> successors = new ArrayList<List<Integer>>(n);
+	for (int i = 0; i < n; i++)
+	    successors.add(new ArrayList<Integer>());
+	int[] indegree = new int[n];
+	for (Link link : links) {
+	    if (link.tail == link.head)
+		continue;
+	    int upper = upper(link).id;
+	    int lower = lower(link).id;
+	    successors.get(upper).add(lower);
+	    indegree[lower]++;
+	}
+	// longest path from the sources, in topological order
+	int[] topological = new int[n];
+	int count = 0;
+	for (int i = 0; i < n; i++)
+	    if (indegree[i] == 0)
+		topological[count++] = i;
+	int[] rank = new int[n];
+	for (int i = 0; i < count; i++) {
+	    int u = topological[i];
+	    for (int v : successors.get(u)) {
+		rank[v] = Math.max(rank[v], rank[u] + 1);
+		if (--indegree[v] == 0)
+		    topological[count++] = v;
+	    }
+	}
+	// move nodes down to just above their nearest successor
+	for (int i = count - 1; i >= 0; i--) {
+	    int u = topological[i];
+	    int nearest = Integer.MAX_VALUE;
+	    for (int v : successors.get(u))
+		nearest = Math.min(nearest, rank[v]);
+	    if (nearest != Integer.MAX_VALUE)
+		rank[u] = Math.max(rank[u], nearest - 1);
+	}
+	int min = Integer.MAX_VALUE;
+	for (int r : rank)
+	    min = Math.min(min, r);
+	for (int i = 0; i < n; i++)
+	    nodes.get(i).rank = rank[i] - min;
+    }
+
+    /** Split the edges into segments between adjacent ranks */
+    private void split() {
+	int maxRank = 0;
+	for (Vertex v : nodes)
+	    maxRank = Math.max(maxRank, v.rank);
+	ranks = new ArrayList<List<Vertex>>(maxRank + 1);
+	for (int r = 0; r <= maxRank; r++)
+	    ranks.add(new ArrayList<Vertex>());
+	for (Vertex v : nodes)
+	    ranks.get(v.rank).add(v);
+	for (Link link : links) {
+	    if (link.tail == link.head)
+		continue;
+	    Vertex upper = upper(link);
+	    Vertex lower = lower(link);
+	    link.chain.add(upper);
+	    int span = lower.rank - upper.rank;
+	    Vertex previous = upper;
+	    for (int r = upper.rank + 1; r < lower.rank; r++) {
+		// the middle virtual node makes room for the label
+		boolean middle = r == upper.rank + span / 2;
+		Vertex v = middle ? new Vertex(link.labelBreadth, link.labelDepth, -1)
+			: new Vertex(0, 0, -1);
+		v.rank = r;
+		ranks.get(r).add(v);
+		connect(previous, v, link.weight);
+		link.chain.add(v);
+		previous = v;
+	    }
+	    connect(previous, lower, link.weight);
+	    link.chain.add(lower);
+	}
+    }
+
+    private static void connect(Vertex upper, Vertex lower, double weight) {
+	Segment s = new Segment(upper, lower, weight);
+	upper.down.add(s);
+	lower.up.add(s);
+    }
+
+    private static Vertex upper(Link link) {
+	return link.reversed ? link.head : link.tail;
+    }
+
+    private static Vertex lower(Link link) {
+	return link.reversed ? link.tail : link.head;
+    }
+
+    /** Order the nodes of each rank to reduce the edge crossings */
+    private void order() {
+	initialOrder();
+	Vertex[][] best = snapshot();
+	long bestCrossings = crossings();
+	int stale = 0;
+	for (int sweep = 0; sweep < ORDER_SWEEPS && bestCrossings > 0 && stale < ORDER_PATIENCE; sweep++) {
+	    boolean down = sweep % 2 == 0;
+	    if (down)
+		for (int r = 1; r < ranks.size(); r++)
+		    sortByBarycenter(ranks.get(r), true);
+	    else
+		for (int r = ranks.size() - 2; r >= 0; r--)
+		    sortByBarycenter(ranks.get(r), false);
+	    long c = crossings();
+	    if (c < bestCrossings) {
+		bestCrossings = c;
+		best = snapshot();
+		stale = 0;
+	    } else
+		stale++;
+	}
+	for (int r = 0; r < ranks.size(); r++) {
+	    List<Vertex> rank = ranks.get(r);
+	    rank.clear();
+	    rank.addAll(Arrays.asList(best[r]));
+	    renumber(rank);
+	}
+    }
+
+    /** Order the ranks by a depth-first traversal, keeping connected nodes together */
+    private void initialOrder() {
+	List<List<Vertex>> ordered = new ArrayList<List<Vertex>>(ranks.size());
+	for (int r = 0; r < ranks.size(); r++)
+	    ordered.add(new ArrayList<Vertex>(ranks.get(r).size()));
+	for (List<Vertex> rank : ranks)
+	    for (Vertex v : rank)
+		v.mark = 0;
+	List<Vertex> stack = new ArrayList<Vertex>();
+	for (List<Vertex> rank : ranks)
+	    for (Vertex start : rank) {
+		if (start.mark != 0)
+		    continue;
+		start.mark = 1;
+		stack.add(start);
+		while (!stack.isEmpty()) {
+		    Vertex v = stack.remove(stack.size() - 1);
+		    ordered.get(v.rank).add(v);
+		    for (int i = v.down.size() - 1; i >= 0; i--)
+			push(stack, v.down.get(i).lower);
+		    for (int i = v.up.size() - 1; i >= 0; i--)
+			push(stack, v.up.get(i).upper);
+		}
+	    }
+	ranks = ordered;
+	for (List<Vertex> rank : ranks)
+	    renumber(rank);
+    }
+
+    private static void push(List<Vertex> stack, Vertex v) {
+	if (v.mark == 0) {
+	    v.mark = 1;
+	    stack.add(v);
+	}
+    }
+
+    /**
+     * Sort a rank by the mean order of each node's neighbors in the
+     * adjacent rank above, or below.  Nodes without such neighbors keep
+     * their place.
+     */
+    private static void sortByBarycenter(List<Vertex> rank, boolean above) {
+	for (Vertex v : rank) {
+	    List<Segment> segments = above ? v.up : v.down;
+	    if (segments.isEmpty()) {
+		v.position = v.order;
+		continue;
+	    }
+	    double sum = 0;
+	    for (Segment s : segments)
+		sum += (above ? s.upper : s.lower).order;
+	    v.position = sum / segments.size();
+	}
+	Collections.sort(rank, new Comparator<Vertex>() {
+	    public int compare(Vertex a, Vertex b) {
+		return Double.compare(a.position, b.position);
+	    }
+	});
+	renumber(rank);
+    }
+
+    private static void renumber(List<Vertex> rank) {
+	for (int i = 0; i < rank.size(); i++)
+	    rank.get(i).order = i;
+    }
+
+    private Vertex[][] snapshot() {
+	Vertex[][] copy = new Vertex[ranks.size()][];
+	for (int r = 0; r < ranks.size(); r++)
+	    copy[r] = ranks.get(r).toArray(new Vertex[0]);
+	return copy;
+    }
+
+    /** Return the number of edge crossings of the current order */
+    private long crossings() {
+	long total = 0;
+	for (int r = 0; r + 1 < ranks.size(); r++)
+	    total += crossings(ranks.get(r), ranks.get(r + 1).size());
+	return total;
+    }
+
+    /**
+     * Count the crossings between a rank and the one below it, as the
+     * inversions of the lower ends of the segments listed by their upper
+     * ends, using a Fenwick tree.
+     */
+    private static long crossings(List<Vertex> upper, int lowerSize) {
+	long[] tree = new long[lowerSize + 1];
+	long count = 0;
+	int seen = 0;
+	int[] ends = new int[16];
+	for (Vertex v : upper) {
+	    int n = v.down.size();
+	    if (ends.length < n)
+		ends = new int[n];
+	    for (int i = 0; i < n; i++)
+		ends[i] = v.down.get(i).lower.order;
+	    Arrays.sort(ends, 0, n);
+	    // segments from the same node never cross each other
+	    for (int i = 0; i < n; i++) {
+		long notAfter = 0;
+		for (int j = ends[i] + 1; j > 0; j -= j & -j)
+		    notAfter += tree[j];
+		count += seen - notAfter;
+	    }
+	    for (int i = 0; i < n; i++) {
+		for (int j = ends[i] + 1; j <= lowerSize; j += j & -j)
+		    tree[j]++;
+		seen++;
+	    }
+	}
+	return count;
+    }
+
+    /** Assign coordinates to the nodes */
+    private void place() {
+	for (List<Vertex> rank : ranks) {
+	    double x = 0;
+	    for (int i = 0; i < rank.size(); i++) {
+		Vertex v = rank.get(i);
+		if (i > 0)
+		    x += separation(rank.get(i - 1), v);
+		v.x = x;
+	    }
+	}
+	for (int sweep = 0; sweep < PLACE_SWEEPS; sweep++) {
+	    boolean down = sweep % 2 == 0;
+	    if (down)
+		for (int r = 1; r < ranks.size(); r++)
+		    balance(ranks.get(r), true, false);
+	    else
+		for (int r = ranks.size() - 2; r >= 0; r--)
+		    balance(ranks.get(r), false, true);
+	}
+	for (List<Vertex> rank : ranks)
+	    balance(rank, true, true);
+
+	double left = Double.MAX_VALUE;
+	for (List<Vertex> rank : ranks)
+	    for (Vertex v : rank)
+		left = Math.min(left, v.x - v.breadth / 2);
+	double y = 0;
+	for (List<Vertex> rank : ranks) {
+	    double depth = 0;
+	    for (Vertex v : rank)
+		depth = Math.max(depth, v.depth);
+	    for (Vertex v : rank) {
+		v.x -= left;
+		v.y = y + depth / 2;
+	    }
+	    y += depth + rankSep;
+	}
+    }
+
+    /** Return the distance between the centers of two adjacent nodes */
+    private double separation(Vertex a, Vertex b) {
+	return (a.breadth + b.breadth) / 2 + (a.virtual && b.virtual ? nodeSep / 2 : nodeSep);
+    }
+
+    /**
+     * Move the nodes of a rank as near as possible to the weighted mean
+     * position of their neighbors, keeping their order and separation.
+     * With offsets s<sub>i</sub> fixing the minimum separation, the
+     * positions are x<sub>i</sub> = y<sub>i</sub> + s<sub>i</sub>, where
+     * the y<sub>i</sub> minimizing the weighted squared distance to their
+     * targets must not decrease: an isotonic regression.
+     */
+    private void balance(List<Vertex> rank, boolean above, boolean below) {
+	int n = rank.size();
+	if (n == 0)
+	    return;
+	double[] offset = new double[n];
+	double[] target = new double[n];
+	double[] weight = new double[n];
+	for (int i = 0; i < n; i++) {
+	    Vertex v = rank.get(i);
+	    if (i > 0)
+		offset[i] = offset[i - 1] + separation(rank.get(i - 1), v);
+	    double sum = 0, total = 0;
+	    if (above)
+		for (Segment s : v.up) {
+		    double w = pull(s);
+		    sum += w * s.upper.x;
+		    total += w;
+		}
+	    if (below)
+		for (Segment s : v.down) {
+		    double w = pull(s);
+		    sum += w * s.lower.x;
+		    total += w;
+		}
+	    if (total == 0) {
+		// no neighbors: stay, but give way easily
+		sum = v.x * 1e-3;
+		total = 1e-3;
+	    }
+	    target[i] = sum / total - offset[i];
+	    weight[i] = total;
+	}
+	// pool adjacent violators
+	double[] blockSum = new double[n];
+	double[] blockWeight = new double[n];
+	int[] blockEnd = new int[n];
+	int blocks = 0;
+	for (int i = 0; i < n; i++) {
+	    blockSum[blocks] = weight[i] * target[i];
+	    blockWeight[blocks] = weight[i];
+	    blockEnd[blocks] = i;
+	    blocks++;
+	    while (blocks > 1 && blockSum[blocks - 2] / blockWeight[blocks - 2]
+		    > blockSum[blocks - 1] / blockWeight[blocks - 1]) {
+		blockSum[blocks - 2] += blockSum[blocks - 1];
+		blockWeight[blocks - 2] += blockWeight[blocks - 1];
+		blockEnd[blocks - 2] = blockEnd[blocks - 1];
+		blocks--;
+	    }
+	}
+	int i = 0;
+	for (int b = 0; b < blocks; b++) {
+	    double value = blockSum[b] / blockWeight[b];
+	    for (; i <= blockEnd[b]; i++)
+		rank.get(i).x = value + offset[i];
+	}
+    }
+
+    /**
+     * Return how strongly a segment pulls its ends together: virtual
+     * nodes are pulled harder, to straighten long edges
+     */
+    private static double pull(Segment s) {
+	double w = Math.max(s.weight, 0.1);
+	if (s.upper.virtual && s.lower.virtual)
+	    return 8 * w;
+	if (s.upper.virtual || s.lower.virtual)
+	    return 2 * w;
+	return w;
+    }
+
+    /**
+     * Shift apart the edges joining the same two nodes in adjacent ranks,
+     * which would otherwise be drawn on top of each other
+     */
+    private void separate() {
+	Map<List<Vertex>, List<Link>> parallel = new HashMap<List<Vertex>, List<Link>>();
+	for (Link link : links)
+	    if (link.chain.size() == 2) {
+		List<Vertex> ends = link.chain;
+		List<Link> group = parallel.get(ends);
+		if (group == null) {
+		    group = new ArrayList<Link>();
+		    parallel.put(ends, group);
+		}
+		group.add(link);
+	    }
+	for (List<Link> group : parallel.values())
+	    for (int i = 0; i < group.size(); i++)
+		group.get(i).shift = (i - (group.size() - 1) / 2.0) * nodeSep / 2;
+    }
+
+    /** Compute the size of the layout */
+    private void measure() {
+	width = 0;
+	height = 0;
+	for (List<Vertex> rank : ranks)
+	    for (Vertex v : rank) {
+		width = Math.max(width, v.x + v.breadth / 2);
+		height = Math.max(height, v.y + v.depth / 2);
+	    }
+	// room for the loops
+	for (Link link : links)
+	    if (link.tail == link.head)
+		width = Math.max(width, link.tail.x + link.tail.breadth / 2 + nodeSep);
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Create a graphviz graph based on the classes in the specified java
+ * source files.
+ *
+ * (C) Copyright 2002-2010 Diomidis Spinellis
+ *
+ * Permission to use, copy, and distribute this software and its
+ * documentation for any purpose and without fee is hereby granted,
+ * provided that the above copyright notice appear in all copies and that
+ * both that copyright notice and this permission notice appear in
+ * supporting documentation.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND WITHOUT ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF
+ * MERCHANTIBILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ *
+ */
+
+package org.umlgraph.doclet;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import com.sun.javadoc.RootDoc;
+
+/**
+ * Renders the dot diagrams into SVG in-process, without Graphviz.
+ * Each diagram is read back into a DotGraph, laid out by the
+ * LayeredLayout, and written by the SvgWriter, as a task of the
+ * rendering PipelineStage.
+ * Diagrams found in the optional DiagramCache are not rendered at all.
+ *
+ * @has - - - DiagramCache
+ * @composed - - - PipelineStage
+ * @depend - - - SvgWriter
+ * @version $Revision$
+ * @author <a href="http://www.spinellis.gr">Diomidis Spinellis</a>
+ */
+class LayoutRenderer implements DiagramRenderer {
+    private final String encoding;
+    private final RootDoc root;
+    private final DiagramCache cache;
+    private final PipelineStage stage;
+    /** The dot files whose diagrams could not be rendered */
+    private final Set<File> failures = Collections.synchronizedSet(new HashSet<File>());
+
+    /**
+     * Create a new renderer
+     * @param encoding the encoding of the dot text
+     * @param threads the number of threads laying out diagrams
+     * @param root the javadoc root, used to report warnings
+     * @param cache the cache of rendered diagrams, or null
+     */
+    public LayoutRenderer(String encoding, int threads, RootDoc root, DiagramCache cache) {
+	this.encoding = encoding;
+	this.root = root;
+	this.cache = cache;
+	this.stage = new PipelineStage("layout", threads, 2 * threads, root);
+    }
+
+    public void render(final File dotFile) throws InterruptedException {
+	if (cache != null && cache.fetch(dotFile, svgFile(dotFile)))
+	    return;
+	stage.submit("rendering " + dotFile, new Callable<Void>() {
+	    public Void call() throws IOException {
+		boolean rendered = false;
+		try {
+		    rendered = renderText(dotFile, read(dotFile));
+		} finally {
+		    if (!rendered)
+			failures.add(dotFile);
+		}
+		return null;
+	    }
+	});
+    }
+
+    public void render(final File dotFile, final byte[] dot) throws InterruptedException {
+	if (cache != null && cache.fetch(dot, svgFile(dotFile)))
+	    return;
+	stage.submit("rendering " + dotFile, new Callable<Void>() {
+	    public Void call() throws IOException {
+		boolean rendered = false;
+		try {
+		    rendered = renderText(dotFile, dot);
+		} finally {
+		    if (!rendered)
+			failures.add(dotFile);
+		}
+		return null;
+	    }
+	});
+    }
+
+    public boolean finish() {
+	boolean success;
+	try {
+	    success = stage.finish() && failures.isEmpty();
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    return false;
+	}
+	if (cache != null)
+	    cache.evict();
+	return success;
+    }
+
+    public Set<File> failures() {
+	synchronized (failures) {
+	    return new HashSet<File>(failures);
+	}
+    }
+
+    public String statistics() {
+	return stage.statistics();
+    }
+
+    /** Lay out the specified dot text into the SVG file of the dot file */
+    private boolean renderText(File dotFile, byte[] dot) throws IOException {
+	DotGraph graph;
+	try {
+	    graph = DotGraph.parse(new String(dot, encoding));
+	} catch (IllegalArgumentException e) {
+	    synchronized (root) {
+		root.printWarning("Unable to lay out " + dotFile + ": " + e.getMessage());
+	    }
+	    return false;
+	}
+	File svgFile = svgFile(dotFile);
+	PrintWriter w = new PrintWriter(new BufferedWriter(new OutputStreamWriter(
+		new FileOutputStream(svgFile), "UTF-8")));
+	try {
+	    new SvgWriter(graph, w).write();
+	} finally {
+	    w.close();
+	}
+	if (w.checkError())
+	    throw new IOException("Unable to write " + svgFile);
+	if (cache != null)
+	    cache.store(dot, svgFile);
+	return true;
+    }
+
+    private static byte[] read(File file) throws IOException {
+	ByteArrayOutputStream content = new ByteArrayOutputStream((int) file.length());
+	InputStream in = new FileInputStream(file);
+	try {
+	    byte[] buffer = new byte[8192];
+	    int n;
+	    while ((n = in.read(buffer)) > 0)
+		content.write(buffer, 0, n);
+	} finally {
+	    in.close();
+	}
+	return content.toByteArray();
+    }
+
+    private static File svgFile(File dotFile) {
+	String name = dotFile.getName();
+	if (name.endsWith(".dot"))
+	    name = name.substring(0, name.length() - 4);
+	return new File(dotFile.getParentFile(), name + ".svg");
+    }
+}
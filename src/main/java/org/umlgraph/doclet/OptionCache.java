@@ -0,0 +1,71 @@
+/*
+ * Create a graphviz graph based on the classes in the specified java
+ * source files.
+ *
+ * (C) Copyright 2002-2010 Diomidis Spinellis
+ *
+ * Permission to use, copy, and distribute this software and its
+ * documentation for any purpose and without fee is hereby granted,
+ * provided that the above copyright notice appear in all copies and that
+ * both that copyright notice and this permission notice appear in
+ * supporting documentation.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND WITHOUT ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF
+ * MERCHANTIBILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ *
+ */
+
+package org.umlgraph.doclet;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.sun.javadoc.ClassDoc;
+
+/**
+ * The options an OptionProvider resolved for each class, so that the
+ * provider clones its options and applies the class overrides only once
+ * per class.
+ * The cached options are shared by all the callers, and are therefore
+ * frozen when cached, so that no caller can change them for the others.
+ * The cache can be used concurrently; when two threads resolve the
+ * options of the same class, the first options cached are kept.
+ *
+ * @version $Revision$
+ * @author <a href="http://www.spinellis.gr">Diomidis Spinellis</a>
+ */
+class OptionCache {
+    private final ConcurrentHashMap<ClassDoc, Options> classes = new ConcurrentHashMap<ClassDoc, Options>();
+    private final ConcurrentHashMap<String, Options> names = new ConcurrentHashMap<String, Options>();
+
+    /** Return the cached options of the specified class, or null */
+    public Options get(ClassDoc cd) {
+	return classes.get(cd);
+    }
+
+    /** Return the cached options of the named class, or null */
+    public Options get(String name) {
+	return names.get(name);
+    }
+
+    /** Cache the options of the specified class, and return the cached options */
+    public Options put(ClassDoc cd, Options opt) {
+	opt.freeze();
+	Options cached = classes.putIfAbsent(cd, opt);
+	return cached == null ? opt : cached;
+    }
+
+    /** Cache the options of the named class, and return the cached options */
+    public Options put(String name, Options opt) {
+	opt.freeze();
+	Options cached = names.putIfAbsent(name, opt);
+	return cached == null ? opt : cached;
+    }
+
+    /** Forget all the cached options */
+    public void clear() {
+	classes.clear();
+	names.clear();
+    }
+}
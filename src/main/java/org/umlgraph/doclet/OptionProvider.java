@@ -26,16 +26,19 @@ import com.sun.javadoc.ClassDoc;
 public interface OptionProvider {
     /**
      * Returns the options for the specified class.
+     * The options may be shared with other callers, and must not be modified.
      */
     public Options getOptionsFor(ClassDoc cd);
 
     /**
      * Returns the options for the specified class.
+     * The options may be shared with other callers, and must not be modified.
      */
     public Options getOptionsFor(String name);
 
     /**
-     * Returns the global options (the class independent definition)
+     * Returns the global options (the class independent definition).
+     * The caller may modify the options returned.
      */
     public Options getGlobalOptions();
 
@@ -31,10 +31,11 @@ import java.lang.reflect.Modifier;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
-import java.util.regex.Matcher;
+import java.util.Set;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
@@ -49,12 +50,12 @@ import com.sun.javadoc.Tag;
  */
 public class Options implements Cloneable, OptionProvider {
     // reused often, especially in UmlGraphDoc, worth creating just once and reusing
-    private static final Pattern allPattern = Pattern.compile(".*");
+    private static final PatternSet hideAll = PatternSet.EMPTY.with(Pattern.compile(".*"));
     protected static final String DEFAULT_EXTERNAL_APIDOC = "http://docs.oracle.com/javase/7/docs/api/";
     
     // instance fields
-    List<Pattern> hidePatterns = new ArrayList<Pattern>();
-    List<Pattern> includePatterns = new ArrayList<Pattern>();
+    PatternSet hidePatterns = PatternSet.EMPTY;
+    PatternSet includePatterns = PatternSet.EMPTY;
     boolean showQualified = false;
     boolean showQualifiedGenerics = false;
     boolean hideGenerics = false;
@@ -87,7 +88,7 @@ public class Options implements Cloneable, OptionProvider {
     String bgColor = null;
     public String outputFileName = "graph.dot";
     String outputEncoding = "ISO-8859-1"; // TODO: default to UTF-8 now?
-    Map<Pattern, String> apiDocMap = new HashMap<Pattern, String>();
+    ApiDocResolver apiDocMap = ApiDocResolver.EMPTY;
     String apiDocRoot = null;
     boolean postfixPackage = false;
     boolean useGuillemot = true;
@@ -109,13 +110,29 @@ public class Options implements Cloneable, OptionProvider {
     boolean inferDependencies = false;
     boolean collapsibleDiagrams = false;
     RelationPattern contextRelationPattern = new RelationPattern(RelationDirection.BOTH);
+    // number of relations that may separate a class from the context center
+    int contextDepth = 1;
+    // maximum number of classes in a context, 0 for no limit
+    int contextMaxNodes = 0;
+    // number of classes above which a diagram is summarized by package, 0 for no limit
+    int largeGraph = 0;
+    // relations followed at specific hops from the context center
+    Map<Integer, RelationPattern> contextHopPatterns = new HashMap<Integer, RelationPattern>();
     boolean useImports = false;
     Visibility inferDependencyVisibility = Visibility.PRIVATE;
     boolean inferDepInPackage = false;
     RelationType inferRelationshipType = RelationType.NAVASSOC;
-    private List<Pattern> collPackages = new ArrayList<Pattern>();
+    private PatternSet collPackages = PatternSet.EMPTY;
     boolean compact = false;
     boolean hidePrivateInner = false;
+    // UMLDoc regenerates only the diagrams whose inputs changed since the previous run
+    boolean incremental = false;
+    // UMLDoc pipes the dot text to Graphviz instead of rendering the dot files
+    boolean dotStream = false;
+    // UMLDoc also writes the dot files it pipes to Graphviz
+    boolean keepDot = false;
+    // UMLDoc lays out and renders the diagrams itself instead of running Graphviz
+    boolean javaLayout = false;
     // internal option, used by UMLDoc to generate relative links between classes
     boolean relativeLinksForSourcePackages = false;
     // internal option, used by UMLDoc to force strict matching on the class names
@@ -125,6 +142,24 @@ public class Options implements Cloneable, OptionProvider {
     // TODO: consider making this standard behaviour
     boolean strictMatching = false;
     String dotExecutable = "dot";
+    // number of threads UMLDoc uses to generate the context diagrams
+    int threads = 1;
+    // number of dot processes UMLDoc runs concurrently
+    int dotProcesses = 1;
+    // maximum number of diagrams UMLDoc passes to a single dot invocation
+    int dotBatch = 32;
+    // number of threads UMLDoc uses to patch the HTML pages with the diagrams
+    int patchThreads = 1;
+    // UMLDoc patches all the HTML pages in one sweep, once the diagrams are generated
+    boolean patchBatch = false;
+    // directory of the cache of rendered diagrams, none if null
+    String dotCache = null;
+    // maximum size of the diagram cache in megabytes
+    long dotCacheSize = 64;
+    // options resolved for each class, when used as an OptionProvider
+    private OptionCache optionCache;
+    // true once the options are complete, and can no longer be set
+    private volatile boolean frozen = false;
 
     Options() {
     }
@@ -137,11 +172,15 @@ public class Options implements Cloneable, OptionProvider {
 	} catch (CloneNotSupportedException e) {
 	    throw new RuntimeException("Cannot clone?!?", e); // Should not happen
 	}
-	// deep clone the hide and collection patterns
-	clone.hidePatterns = new ArrayList<Pattern>(hidePatterns);
-	clone.includePatterns = new ArrayList<Pattern>(includePatterns);
-	clone.collPackages= new ArrayList<Pattern>(collPackages);
-	clone.apiDocMap = new HashMap<Pattern, String>(apiDocMap);
+	// the pattern sets are immutable, and shared with their match caches
+	clone.contextHopPatterns = new HashMap<Integer, RelationPattern>();
+	for (Map.Entry<Integer, RelationPattern> e : contextHopPatterns.entrySet()) {
+	    RelationPattern rp = new RelationPattern(RelationDirection.NONE);
+	    System.arraycopy(e.getValue().directions, 0, rp.directions, 0, rp.directions.length);
+	    clone.contextHopPatterns.put(e.getKey(), rp);
+	}
+	clone.optionCache = null;
+	clone.frozen = false;
 	return clone;
     }
 
@@ -214,6 +253,11 @@ public class Options implements Cloneable, OptionProvider {
            matchOption(option, "inferdep", true) ||
            matchOption(option, "inferdepinpackage", true) ||
            matchOption(option, "hideprivateinner", true) ||
+           matchOption(option, "incremental", true) ||
+           matchOption(option, "dotstream", true) ||
+           matchOption(option, "keepdot", true) ||
+           matchOption(option, "javalayout", true) ||
+           matchOption(option, "patchbatch", true) ||
            matchOption(option, "compact", true))
 
             return 1;
@@ -247,17 +291,30 @@ public class Options implements Cloneable, OptionProvider {
            matchOption(option, "nodesep") ||
            matchOption(option, "ranksep") ||
            matchOption(option, "dotexecutable") ||
+           matchOption(option, "threads") ||
+           matchOption(option, "dotprocesses") ||
+           matchOption(option, "dotbatch") ||
+           matchOption(option, "patchthreads") ||
+           matchOption(option, "dotcache") ||
+           matchOption(option, "dotcachesize") ||
+           matchOption(option, "contextdepth") ||
+           matchOption(option, "contextmaxnodes") ||
+           matchOption(option, "largegraph") ||
            matchOption(option, "link"))
            return 2;
         else if(matchOption(option, "contextPattern") ||
            matchOption(option, "linkoffline"))
             return 3;
+        else if(matchOption(option, "contexthoppattern"))
+            return 4;
         else
             return 0;
     }
     
     /** Set the options based on a single option and its arguments */
     void setOption(String[] opt) {
+	if (frozen)
+	    throw new IllegalStateException("Options are read-only once frozen: " + opt[0]);
 	if(!matchOption(opt[0], "hide") && optionLength(opt[0]) > opt.length) {
 	    System.err.println("Skipping option '" + opt[0] + "', missing argument");
 	    return;
@@ -334,33 +391,32 @@ public class Options implements Cloneable, OptionProvider {
 	} else if(matchOption(opt[0], "hide", true)) {
 	    if (positive) {
 		if (opt.length == 1) {
-		    hidePatterns.clear();
-		    hidePatterns.add(allPattern);
+		    hidePatterns = hideAll;
 		} else {
 		    try {
-			hidePatterns.add(Pattern.compile(opt[1]));
+			hidePatterns = hidePatterns.with(Pattern.compile(opt[1]));
 		    } catch (PatternSyntaxException e) {
 			System.err.println("Skipping invalid pattern " + opt[1]);
 		    }
 		}
 	    } else
-		hidePatterns.clear();
+		hidePatterns = PatternSet.EMPTY;
 	} else if(matchOption(opt[0], "include", true)) {
 	    if (positive) {
 		try {
-		    includePatterns.add(Pattern.compile(opt[1]));
+		    includePatterns = includePatterns.with(Pattern.compile(opt[1]));
 		} catch (PatternSyntaxException e) {
 		    System.err.println("Skipping invalid pattern " + opt[1]);
 		}
 	    } else
-		includePatterns.clear();
+		includePatterns = PatternSet.EMPTY;
 	} else if(matchOption(opt[0], "apidocroot", true)) {
 	    apiDocRoot = positive ? fixApiDocRoot(opt[1]) : null;
 	} else if(matchOption(opt[0], "apidocmap", true)) {
 	    if (positive)
 		setApiDocMapFile(opt[1]);
 	    else
-		apiDocMap.clear();
+		apiDocMap = ApiDocResolver.EMPTY;
 	} else if(matchOption(opt[0], "noguillemot", true)) {
 	    guilOpen = positive ? "&lt;&lt;" : "\u00ab";
 	    guilClose = positive ? "&gt;&gt;" : "\u00bb";
@@ -400,17 +456,27 @@ public class Options implements Cloneable, OptionProvider {
 	    inferDepInPackage = positive;
 	} else if (matchOption(opt[0], "hideprivateinner", true)) {
 	    hidePrivateInner = positive;
+	} else if (matchOption(opt[0], "incremental", true)) {
+	    incremental = positive;
+	} else if (matchOption(opt[0], "dotstream", true)) {
+	    dotStream = positive;
+	} else if (matchOption(opt[0], "keepdot", true)) {
+	    keepDot = positive;
+	} else if (matchOption(opt[0], "javalayout", true)) {
+	    javaLayout = positive;
+	} else if (matchOption(opt[0], "patchbatch", true)) {
+	    patchBatch = positive;
 	} else if(matchOption(opt[0], "useimports", true)) {
 	    useImports = positive;
 	} else if (matchOption(opt[0], "collpackages", true)) {
 	    if (positive) {
 		try {
-		    collPackages.add(Pattern.compile(opt[1]));
+		    collPackages = collPackages.with(Pattern.compile(opt[1]));
 		} catch (PatternSyntaxException e) {
 		    System.err.println("Skipping invalid pattern " + opt[1]);
 		}
 	    } else
-		collPackages.clear();
+		collPackages = PatternSet.EMPTY;
 	} else if (matchOption(opt[0], "compact", true)) {
 	    compact = positive;
 	} else if (matchOption(opt[0], "postfixpackage", true)) {
@@ -433,6 +499,32 @@ public class Options implements Cloneable, OptionProvider {
 		
 	    }
 		
+	} else if (matchOption(opt[0], "contexthoppattern")) {
+	    try {
+		int hop = Integer.parseInt(opt[1]);
+		RelationDirection d = RelationDirection.valueOf(opt[3].toUpperCase());
+		RelationPattern rp = contextHopPatterns.get(hop);
+		if (opt[2].equalsIgnoreCase("all") || rp == null)
+		    contextHopPatterns.put(hop, rp = new RelationPattern(RelationDirection.NONE));
+		if (opt[2].equalsIgnoreCase("all"))
+		    rp.directions = new RelationPattern(d).directions;
+		else
+		    rp.addRelation(RelationType.valueOf(opt[2].toUpperCase()), d);
+	    } catch (IllegalArgumentException e) {
+		System.err.println("Skipping invalid contexthoppattern " + opt[1] + " " + opt[2] + " " + opt[3]);
+	    }
+	} else if (matchOption(opt[0], "contextdepth", true)) {
+	    try {
+		contextDepth = positive ? Math.max(1, Integer.parseInt(opt[1])) : 1;
+	    } catch (NumberFormatException e) {
+		System.err.println("Skipping invalid contextdepth " + opt[1]);
+	    }
+	} else if (matchOption(opt[0], "contextmaxnodes", true)) {
+	    try {
+		contextMaxNodes = positive ? Math.max(0, Integer.parseInt(opt[1])) : 0;
+	    } catch (NumberFormatException e) {
+		System.err.println("Skipping invalid contextmaxnodes " + opt[1]);
+	    }
 	} else if (matchOption(opt[0], "nodesep", true)) {
 	    try {
 		nodeSep = positive ? Double.parseDouble(opt[1]) : 0.25;
@@ -447,6 +539,44 @@ public class Options implements Cloneable, OptionProvider {
 	    }
 	} else if (matchOption(opt[0], "dotexecutable")) {
 	    dotExecutable = opt[1];
+	} else if (matchOption(opt[0], "threads", true)) {
+	    try {
+		threads = positive ? Math.max(1, Integer.parseInt(opt[1])) : 1;
+	    } catch (NumberFormatException e) {
+		System.err.println("Skipping invalid threads " + opt[1]);
+	    }
+	} else if (matchOption(opt[0], "dotprocesses", true)) {
+	    try {
+		dotProcesses = positive ? Math.max(1, Integer.parseInt(opt[1])) : 1;
+	    } catch (NumberFormatException e) {
+		System.err.println("Skipping invalid dotprocesses " + opt[1]);
+	    }
+	} else if (matchOption(opt[0], "dotbatch", true)) {
+	    try {
+		dotBatch = positive ? Math.max(1, Integer.parseInt(opt[1])) : 1;
+	    } catch (NumberFormatException e) {
+		System.err.println("Skipping invalid dotbatch " + opt[1]);
+	    }
+	} else if (matchOption(opt[0], "patchthreads", true)) {
+	    try {
+		patchThreads = positive ? Math.max(1, Integer.parseInt(opt[1])) : 1;
+	    } catch (NumberFormatException e) {
+		System.err.println("Skipping invalid patchthreads " + opt[1]);
+	    }
+	} else if (matchOption(opt[0], "largegraph", true)) {
+	    try {
+		largeGraph = positive ? Math.max(0, Integer.parseInt(opt[1])) : 0;
+	    } catch (NumberFormatException e) {
+		System.err.println("Skipping invalid largegraph " + opt[1]);
+	    }
+	} else if (matchOption(opt[0], "dotcache", true)) {
+	    dotCache = positive ? opt[1] : null;
+	} else if (matchOption(opt[0], "dotcachesize", true)) {
+	    try {
+		dotCacheSize = positive ? Math.max(0, Long.parseLong(opt[1])) : 64;
+	    } catch (NumberFormatException e) {
+		System.err.println("Skipping invalid dotcachesize " + opt[1]);
+	    }
 	} else
 	    ; // Do nothing, javadoc will handle the option or complain, if needed.
     }
@@ -462,12 +592,11 @@ public class Options implements Cloneable, OptionProvider {
 	try {
 	    URL url = new URL(packageListUrl + "/package-list");
 	    br = new BufferedReader(new InputStreamReader(url.openStream()));
+	    List<String> packages = new ArrayList<String>();
 	    String line;
-	    while((line = br.readLine()) != null) {
-		line = line + ".";
-		Pattern pattern = Pattern.compile(line.replace(".", "\\.") + "[^\\.]*");
-		apiDocMap.put(pattern, packageListUrl);
-	    }
+	    while((line = br.readLine()) != null)
+		packages.add(line);
+	    apiDocMap = apiDocMap.withPackages(packages, packageListUrl);
 	} catch(IOException e) {
 	    System.err.println("Errors happened while accessing the package-list file at "
 		    + packageListUrl);
@@ -492,12 +621,11 @@ public class Options implements Cloneable, OptionProvider {
 	try {
 	    URL url = new URL(packageListUrl + "/package-list");
 	    br = new BufferedReader(new InputStreamReader(url.openStream()));
+	    List<String> packages = new ArrayList<String>();
 	    String line;
-	    while((line = br.readLine()) != null) {
-		line = line + ".";
-		Pattern pattern = Pattern.compile(line.replace(".", "\\.") + "[^\\.]*");
-		apiDocMap.put(pattern, fixApiDocRoot(docUrl));
-	    }
+	    while((line = br.readLine()) != null)
+		packages.add(line);
+	    apiDocMap = apiDocMap.withPackages(packages, fixApiDocRoot(docUrl));
 	} catch(IOException e) {
 	    System.err.println("Unable to access the package-list file at " + packageListUrl);
 	} finally {
@@ -516,19 +644,29 @@ public class Options implements Cloneable, OptionProvider {
     void setApiDocMapFile(String apiDocMapFileName) {
 	try {
 	    InputStream is = new FileInputStream(apiDocMapFileName);
-	    Properties userMap = new Properties();
+	    // record the order of the patterns in the file, which is their match order
+	    final Set<Object> patterns = new LinkedHashSet<Object>();
+	    Properties userMap = new Properties() {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public synchronized Object put(Object key, Object value) {
+		    patterns.add(key);
+		    return super.put(key, value);
+		}
+	    };
 	    userMap.load(is);
-	    for (Map.Entry<?, ?> mapEntry : userMap.entrySet()) {
+	    for (Object pattern : patterns) {
 		try {
-		    String thisRoot = (String) mapEntry.getValue();
+		    String thisRoot = (String) userMap.get(pattern);
 		    if (thisRoot != null) {
 			thisRoot = fixApiDocRoot(thisRoot);
-			apiDocMap.put(Pattern.compile((String) mapEntry.getKey()), thisRoot);
+			apiDocMap = apiDocMap.withPattern(Pattern.compile((String) pattern), thisRoot);
 		    } else {
-			System.err.println("No URL for pattern " + mapEntry.getKey());
+			System.err.println("No URL for pattern " + pattern);
 		    }
 		} catch (PatternSyntaxException e) {
-		    System.err.println("Skipping bad pattern " + mapEntry.getKey());
+		    System.err.println("Skipping bad pattern " + pattern);
 		}
 	    }
 	} catch (FileNotFoundException e) {
@@ -545,19 +683,11 @@ public class Options implements Cloneable, OptionProvider {
      * <code>apiDocMap</code>; if a match is found, the associated URL
      * will be returned.
      * <p>
-     * <b>NOTE:</b> The match order of the match attempts is the one specified by the
-     * constructor of the api doc root, so it depends on the order of "-link" and "-apiDocMap"
-     * parameters.
+     * <b>NOTE:</b> The match order of the match attempts is the order of the
+     * "-link", "-linkoffline" and "-apiDocMap" parameters.
      */
     public String getApiDocRoot(String className) {
-	if(apiDocMap.isEmpty())
-	    apiDocMap.put(Pattern.compile(".*"), DEFAULT_EXTERNAL_APIDOC);
-	
-	for (Map.Entry<Pattern, String> mapEntry : apiDocMap.entrySet()) {
-	    if (mapEntry.getKey().matcher(className).matches())
-		return mapEntry.getValue();
-	}
-	return null;
+	return apiDocMap.getRoot(className);
     }
     
     /** Trim and append a file separator to the string */
@@ -596,30 +726,16 @@ public class Options implements Cloneable, OptionProvider {
      * @return true if the string matches.
      */
     public boolean matchesHideExpression(String s) {
-	for (Pattern hidePattern : hidePatterns) {
-	    // micro-optimization because the "all pattern" is heavily used in UmlGraphDoc
-	    if(hidePattern == allPattern)
-		return true;
-	    
-	    Matcher m = hidePattern.matcher(s);
-	    if (strictMatching ? m.matches() : m.find())
-		return true;
-	}
-	return false;
+	return hidePatterns.matches(s, strictMatching);
     }
-    
+
     /**
      * Check if the supplied string matches an entity specified
      * with the -include parameter.
      * @return true if the string matches.
      */
     public boolean matchesIncludeExpression(String s) {
-	for (Pattern includePattern : includePatterns) {
-	    Matcher m = includePattern.matcher(s);
-	    if (strictMatching ? m.matches() : m.find())
-		return true;
-	}
-	return false;
+	return includePatterns.matches(s, strictMatching);
     }
 
     /**
@@ -628,26 +744,62 @@ public class Options implements Cloneable, OptionProvider {
      * @return true if the string matches.
      */
     public boolean matchesCollPackageExpression(String s) {
-	for (Pattern collPattern : collPackages) {
-	    Matcher m = collPattern.matcher(s);
-	    if (strictMatching ? m.matches() : m.find())
-		return true;
-	}
-	return false;
+	return collPackages.matches(s, strictMatching);
     }
     
+    /**
+     * Return a key identifying the options that affect the relations
+     * found, or inferred, between classes.
+     */
+    String relationsKey() {
+	return hidePatterns + " " + strictMatching + " " + hidePrivateInner + " "
+	    + inferRelationships + " " + inferRelationshipType + " " + collPackages + " "
+	    + inferDependencies + " " + inferDependencyVisibility + " " + inferDepInPackage + " "
+	    + useImports;
+    }
+
     // ---------------------------------------------------------------- 
     // OptionProvider methods
     // ---------------------------------------------------------------- 
     
+    /**
+     * Return the options of the specified class. These are cached only
+     * once the options are frozen, since until then they can still change.
+     */
     public Options getOptionsFor(ClassDoc cd) {
-	Options localOpt = getGlobalOptions();
-	localOpt.setOptions(cd);
+	Options localOpt = frozen ? optionCache().get(cd) : null;
+	if (localOpt == null) {
+	    localOpt = getGlobalOptions();
+	    localOpt.setOptions(cd);
+	    if (frozen)
+		localOpt = optionCache().put(cd, localOpt);
+	}
 	return localOpt;
     }
 
     public Options getOptionsFor(String name) {
-	return getGlobalOptions();
+	Options localOpt = frozen ? optionCache().get(name) : null;
+	if (localOpt == null) {
+	    localOpt = getGlobalOptions();
+	    if (frozen)
+		localOpt = optionCache().put(name, localOpt);
+	}
+	return localOpt;
+    }
+
+    private synchronized OptionCache optionCache() {
+	if (optionCache == null)
+	    optionCache = new OptionCache();
+	return optionCache;
+    }
+
+    /**
+     * Make the options read-only: setting an option from now on is an
+     * error. The options must be frozen once they are complete, including
+     * the fields set directly, before they are shared among diagrams.
+     */
+    void freeze() {
+	frozen = true;
     }
 
     public Options getGlobalOptions() {
@@ -0,0 +1,333 @@
+/*
+ * Create a graphviz graph based on the classes in the specified java
+ * source files.
+ *
+ * (C) Copyright 2002-2010 Diomidis Spinellis
+ *
+ * Permission to use, copy, and distribute this software and its
+ * documentation for any purpose and without fee is hereby granted,
+ * provided that the above copyright notice appear in all copies and that
+ * both that copyright notice and this permission notice appear in
+ * supporting documentation.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND WITHOUT ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF
+ * MERCHANTIBILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ *
+ */
+
+package org.umlgraph.doclet;
+
+import static org.umlgraph.doclet.StringUtil.splitPackageClass;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.sun.javadoc.ClassDoc;
+import com.sun.javadoc.PackageDoc;
+import com.sun.javadoc.RootDoc;
+
+/**
+ * Summary of a diagram with too many classes to lay out.
+ * The diagram's classes and relations are selected as for a class
+ * diagram, but only counted: each package becomes a node, and the
+ * relations between the classes of two packages become a single edge,
+ * labeled with their number by relation type.
+ * Packages are grouped in clusters by their parent package, and each
+ * summarized package documented in the javadoc run links to a
+ * sub-diagram of its own classes, written next to the summary.
+ * @depend - - - PackageView
+ * @depend - - - UmlGraph
+ *
+ * @version $Revision$
+ * @author <a href="http://www.spinellis.gr">Diomidis Spinellis</a>
+ */
+class PackageSummary extends ClassGraph {
+    /** Label of the unnamed package */
+    private static final String UNNAMED = "(default package)";
+
+    private final RootDoc root;
+    /** The classes and internal relations of each package, by package name */
+    private final Map<String, int[]> packages = new TreeMap<String, int[]>();
+    /** The relations between packages by type, by source and destination package */
+    private final Map<String, Map<String, int[]>> relations = new TreeMap<String, Map<String, int[]>>();
+    /** The relations found between classes, as their type and the ids of their classes */
+    private final List<int[]> classRelations = new ArrayList<int[]>();
+
+    /**
+     * Create a new summary of the diagram of the specified option provider
+     * @param root the javadoc root
+     * @param optionProvider the options of the summarized diagram
+     */
+    public PackageSummary(RootDoc root, OptionProvider optionProvider) {
+	super(GraphModel.of(root), optionProvider, null);
+	this.root = root;
+    }
+
+    /**
+     * Select the classes and relations of the diagram, as
+     * UmlGraph.buildClassGraph would print them, and count them by package
+     * @return the number of classes the diagram would show
+     */
+    public int select() {
+	Options opt = optionProvider.getGlobalOptions();
+	ClassDoc[] classes = root.classes();
+	for (ClassDoc cd : classes)
+	    classId(cd, true);
+	for (ClassDoc cd : classes)
+	    addRelations(cd);
+	if (opt.inferRelationships)
+	    for (ClassDoc cd : classes)
+		addInferredRelations(cd);
+	if (opt.inferDependencies)
+	    for (ClassDoc cd : classes)
+		addInferredDependencies(cd);
+
+	int count = 0;
+	boolean[] selected = new boolean[registry.size()];
+	for (int id = 0; id < registry.size(); id++) {
+	    if (registry.isHidden(id))
+		continue;
+	    String className = registry.name(id);
+	    ClassDoc c = model.classNamed(className);
+	    if (c != null && c.isEnum() && !optionProvider.getOptionsFor(c).showEnumerations)
+		continue;
+	    counts(packages, packageOf(className), 2)[0]++;
+	    selected[id] = true;
+	    count++;
+	}
+	// only the relations between selected classes would be shown
+	for (int[] r : classRelations)
+	    if (r[1] < selected.length && selected[r[1]] && r[2] < selected.length && selected[r[2]])
+		countRelation(RelationType.values()[r[0]], r[1], r[2]);
+	return count;
+    }
+
+    /** Return the number of packages of the selected classes */
+    public int packageCount() {
+	return packages.size();
+    }
+
+    /** Record the relation, to be counted once its classes are selected */
+    @Override
+    protected void relation(Options opt, RelationType rt, ClassDoc from, String fromName,
+	    ClassDoc to, String toName, String tailLabel, String label, String headLabel) {
+	int id1 = classId(from, fromName, true), id2 = classId(to, toName, true);
+	addRelation(rt, id1, id2);
+	classRelations.add(new int[] { rt.ordinal(), id1, id2 });
+    }
+
+    /** Count a relation between selected classes, in their package or between their packages */
+    private void countRelation(RelationType rt, int id1, int id2) {
+	String p1 = packageOf(registry.name(id1)), p2 = packageOf(registry.name(id2));
+	if (p1.equals(p2)) {
+	    counts(packages, p1, 2)[1]++;
+	    return;
+	}
+	Map<String, int[]> targets = relations.get(p1);
+	if (targets == null)
+	    relations.put(p1, targets = new TreeMap<String, int[]>());
+	counts(targets, p2, RelationType.values().length)[rt.ordinal()]++;
+    }
+
+    /** Return the counters of the specified key, creating them if needed */
+    private static int[] counts(Map<String, int[]> map, String key, int size) {
+	int[] c = map.get(key);
+	if (c == null)
+	    map.put(key, c = new int[size]);
+	return c;
+    }
+
+    /** Return the name of the package of the named class */
+    private String packageOf(String className) {
+	ClassDoc c = model.classNamed(className);
+	if (c != null)
+	    return c.containingPackage().name();
+	int idx = splitPackageClass(className);
+	return idx > 0 ? className.substring(0, idx) : "";
+    }
+
+    /**
+     * Write the summary to the output file of the options, followed by the
+     * sub-diagrams of its packages documented in the javadoc run
+     */
+    public void write() throws IOException {
+	Options opt = optionProvider.getGlobalOptions();
+	opt.shape = Shape.PACKAGE;
+	Map<String, PackageDoc> documented = new TreeMap<String, PackageDoc>();
+	for (ClassDoc cd : root.classes())
+	    if (packages.containsKey(cd.containingPackage().name()))
+		documented.put(cd.containingPackage().name(), cd.containingPackage());
+
+	// the sub-diagrams are named after the summary
+	String output = opt.outputFileName.equals("-") ? "graph.dot" : opt.outputFileName;
+	String parent = new File(output).getParent();
+	String base = new File(output).getName();
+	if (base.endsWith(".dot"))
+	    base = base.substring(0, base.length() - 4);
+
+	// group the packages by their parent package
+	Map<String, List<String>> groups = new TreeMap<String, List<String>>();
+	Map<String, Integer> index = new HashMap<String, Integer>();
+	for (String name : packages.keySet()) {
+	    index.put(name, index.size());
+	    int idx = name.lastIndexOf('.');
+	    String group = idx > 0 ? name.substring(0, idx) : "";
+	    List<String> members = groups.get(group);
+	    if (members == null)
+		groups.put(group, members = new ArrayList<String>());
+	    members.add(name);
+	}
+
+	prologue();
+	int cluster = 0;
+	for (Map.Entry<String, List<String>> group : groups.entrySet()) {
+	    boolean clustered = !group.getKey().isEmpty() && group.getValue().size() > 1;
+	    if (clustered) {
+		w.println(linePrefix + "subgraph cluster_" + cluster++ + " {");
+		linePrefix += indentStep;
+		w.println(linePrefix + "label=\"" + group.getKey() + "\";");
+	    }
+	    for (String name : group.getValue()) {
+		String url = documented.containsKey(name) ? subDiagram(base, name) + ".svg" : null;
+		printPackage(opt, index.get(name), name, url);
+	    }
+	    if (clustered) {
+		linePrefix = linePrefix.substring(indentStep.length());
+		w.println(linePrefix + "}");
+	    }
+	}
+	for (Map.Entry<String, Map<String, int[]>> source : relations.entrySet())
+	    for (Map.Entry<String, int[]> target : source.getValue().entrySet())
+		if (index.containsKey(source.getKey()) && index.containsKey(target.getKey()))
+		    printRelations(index.get(source.getKey()), source.getKey(),
+			    index.get(target.getKey()), target.getKey(), target.getValue());
+	epilogue();
+
+	for (PackageDoc pd : documented.values()) {
+	    String file = subDiagram(base, pd.name()) + ".dot";
+	    UmlGraph.buildClassGraph(root, new SubDiagram(pd, root, optionProvider,
+		    parent == null ? file : new File(parent, file).getPath()), null);
+	}
+    }
+
+    /** Return the file name, without extension, of a package's sub-diagram */
+    private static String subDiagram(String base, String packageName) {
+	return base + "-" + (packageName.isEmpty() ? "default" : packageName);
+    }
+
+    /** Print the node of a package */
+    private void printPackage(Options opt, int index, String name, String url) {
+	int[] c = packages.get(name);
+	String label = name.isEmpty() ? UNNAMED : name;
+	comment(label);
+	w.print(linePrefix);
+	w.print('p');
+	w.print(index);
+	w.print(" [label=");
+	externalTableStart(opt, label, url);
+	innerTableStart();
+	tableLine(Align.CENTER, Font.CLASS, opt, label, false);
+	tableLine(Align.CENTER, Font.PACKAGE, opt, c[0] + (c[0] == 1 ? " class" : " classes")
+		+ (c[1] > 0 ? ", " + c[1] + (c[1] == 1 ? " relation" : " relations") : ""), false);
+	innerTableEnd();
+	externalTableEnd();
+	if (url != null) {
+	    w.print(", URL=\"");
+	    w.print(url);
+	    w.print('"');
+	}
+	w.print(opt.shape.style);
+	w.println("];");
+    }
+
+    /** Print the edge of the relations from one package to another */
+    private void printRelations(int from, String fromName, int to, String toName, int[] counts) {
+	StringBuilder label = new StringBuilder();
+	int total = 0;
+	for (RelationType rt : RelationType.values()) {
+	    int n = counts[rt.ordinal()];
+	    if (n == 0)
+		continue;
+	    if (label.length() > 0)
+		label.append("\\n");
+	    label.append(n).append(' ').append(rt.lower);
+	    total += n;
+	}
+	comment((fromName.isEmpty() ? UNNAMED : fromName) + " -> " + (toName.isEmpty() ? UNNAMED : toName));
+	w.print(linePrefix);
+	w.print('p');
+	w.print(from);
+	w.print(" -> p");
+	w.print(to);
+	w.print(" [arrowhead=open,style=dashed,weight=");
+	w.print(total);
+	w.print(",label=\"");
+	w.print(label);
+	w.println("\"];");
+    }
+
+    /**
+     * The diagram of the classes of a single package, written to the
+     * specified file. The classes keep the options the summarized diagram
+     * gives them, such as those of a view's matches, and the classes
+     * outside the package, unless included, are hidden.
+     */
+    private static class SubDiagram extends PackageView {
+	private static final String[] HIDE = new String[] { "hide" };
+	private final OptionProvider parent;
+	private final ClassMatcher matcher;
+	private final String output;
+	private final OptionCache optionCache = new OptionCache();
+
+	SubDiagram(PackageDoc pd, RootDoc root, OptionProvider parent, String output) {
+	    super(null, pd, root, parent);
+	    this.parent = parent;
+	    this.matcher = new PackageMatcher(pd);
+	    this.output = output;
+	}
+
+	@Override
+	public Options getGlobalOptions() {
+	    Options go = super.getGlobalOptions();
+	    go.setOption(new String[] { "output", output });
+	    return go;
+	}
+
+	@Override
+	public Options getOptionsFor(ClassDoc cd) {
+	    Options opt = optionCache.get(cd);
+	    if (opt == null) {
+		opt = (Options) parent.getOptionsFor(cd).clone();
+		restrict(opt, matcher.matches(cd), cd.qualifiedName());
+		opt = optionCache.put(cd, opt);
+	    }
+	    return opt;
+	}
+
+	@Override
+	public Options getOptionsFor(String name) {
+	    Options opt = optionCache.get(name);
+	    if (opt == null) {
+		opt = (Options) parent.getOptionsFor(name).clone();
+		restrict(opt, matcher.matches(name), name);
+		opt = optionCache.put(name, opt);
+	    }
+	    return opt;
+	}
+
+	/** Show the classes of the package unqualified, and hide those not included */
+	private static void restrict(Options opt, boolean inPackage, String name) {
+	    if (inPackage)
+		opt.showQualified = false;
+	    else if (!opt.matchesIncludeExpression(name))
+		opt.setOption(HIDE);
+	}
+    }
+}
@@ -23,6 +23,7 @@ public class PackageView implements OptionProvider {
     private ClassMatcher matcher;
     private String outputPath;
     private Options opt;
+    private final OptionCache optionCache = new OptionCache();
 
     public PackageView(String outputFolder, PackageDoc pd, RootDoc root, OptionProvider parent) {
 	this.parent = parent;
@@ -47,14 +48,22 @@ public class PackageView implements OptionProvider {
     }
 
     public Options getOptionsFor(ClassDoc cd) {
-	Options go = parent.getGlobalOptions();
-	overrideForClass(go, cd);
+	Options go = optionCache.get(cd);
+	if (go == null) {
+	    go = parent.getGlobalOptions();
+	    overrideForClass(go, cd);
+	    go = optionCache.put(cd, go);
+	}
 	return go;
     }
 
     public Options getOptionsFor(String name) {
-	Options go = parent.getGlobalOptions();
-	overrideForClass(go, name);
+	Options go = optionCache.get(name);
+	if (go == null) {
+	    go = parent.getGlobalOptions();
+	    overrideForClass(go, name);
+	    go = optionCache.put(name, go);
+	}
 	return go;
     }
 
@@ -0,0 +1,214 @@
+/*
+ * Create a graphviz graph based on the classes in the specified java
+ * source files.
+ *
+ * (C) Copyright 2002-2010 Diomidis Spinellis
+ *
+ * Permission to use, copy, and distribute this software and its
+ * documentation for any purpose and without fee is hereby granted,
+ * provided that the above copyright notice appear in all copies and that
+ * both that copyright notice and this permission notice appear in
+ * supporting documentation.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND WITHOUT ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF
+ * MERCHANTIBILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ *
+ */
+
+package org.umlgraph.doclet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An immutable set of the regular expressions given to options such as
+ * -hide, -include and -collpackages.
+ * <p>
+ * Most of these expressions are package prefixes, such as
+ * <code>java.util.*</code>, or plain class names. Such expressions are
+ * compiled into a trie of their characters, where an unescaped '.' is an
+ * edge matching any character, and are matched by walking the trie once.
+ * The other expressions are matched as regular expressions.
+ * Since the set never changes, the outcome for each name is cached,
+ * and the set, with its cache, is shared by all the copies of the
+ * options holding it.
+ *
+ * @version $Revision$
+ * @author <a href="http://www.spinellis.gr">Diomidis Spinellis</a>
+ */
+class PatternSet {
+    /** The set matching nothing */
+    static final PatternSet EMPTY = new PatternSet();
+
+    /** The expressions of the set, in the order they were specified */
+    private final List<Pattern> patterns;
+    /** The expressions that are not prefixes or literals */
+    private final List<Pattern> regexes;
+    private final Node trie;
+    /** Outcomes for the names already tested, with Matcher.matches() and find() */
+    private final ConcurrentHashMap<String, Boolean> matched = new ConcurrentHashMap<String, Boolean>();
+    private final ConcurrentHashMap<String, Boolean> found = new ConcurrentHashMap<String, Boolean>();
+
+    private PatternSet() {
+	patterns = Collections.emptyList();
+	regexes = Collections.emptyList();
+	trie = new Node();
+    }
+
+    private PatternSet(List<Pattern> patterns) {
+	this.patterns = patterns;
+	this.regexes = new ArrayList<Pattern>();
+	this.trie = new Node();
+	for (Pattern p : patterns)
+	    if (!addLiteral(p))
+		regexes.add(p);
+    }
+
+    /** Return a set with the patterns of this one and the specified pattern */
+    public PatternSet with(Pattern p) {
+	List<Pattern> l = new ArrayList<Pattern>(patterns);
+	l.add(p);
+	return new PatternSet(l);
+    }
+
+    /** Return true if the set has no patterns */
+    public boolean isEmpty() {
+	return patterns.isEmpty();
+    }
+
+    /**
+     * Return true if one of the patterns matches the specified string.
+     * @param strict if true, a pattern must match the whole string,
+     * as with Matcher.matches(); otherwise a part of it, as with
+     * Matcher.find()
+     */
+    public boolean matches(String s, boolean strict) {
+	if (patterns.isEmpty())
+	    return false;
+	// micro-optimization for the "hide all" pattern, heavily used in UmlGraphDoc
+	if (trie.prefix && (!strict || !hasLineTerminator(s, 0)))
+	    return true;
+	ConcurrentHashMap<String, Boolean> cache = strict ? matched : found;
+	Boolean result = cache.get(s);
+	if (result == null) {
+	    result = match(s, strict);
+	    cache.put(s, result);
+	}
+	return result;
+    }
+
+    private boolean match(String s, boolean strict) {
+	if (strict) {
+	    if (trie.matches(s, 0, true))
+		return true;
+	} else {
+	    for (int i = 0; i <= s.length(); i++)
+		if (trie.matches(s, i, false))
+		    return true;
+	}
+	for (Pattern p : regexes) {
+	    Matcher m = p.matcher(s);
+	    if (strict ? m.matches() : m.find())
+		return true;
+	}
+	return false;
+    }
+
+    /**
+     * Add the specified pattern to the trie, if it consists of literal
+     * characters and '.' wildcards, optionally followed by ".*"
+     * @return false if the pattern must be matched as a regular expression
+     */
+    private boolean addLiteral(Pattern p) {
+	if (p.flags() != 0)
+	    return false;
+	String s = p.pattern();
+	boolean prefix = s.endsWith(".*") && !s.endsWith("\\.*");
+	int end = prefix ? s.length() - 2 : s.length();
+	// check the whole pattern first, leaving the trie unchanged for regexes
+	for (int i = 0; i < end; i++) {
+	    char c = s.charAt(i);
+	    if (c == '\\') {
+		if (++i == end || (s.charAt(i) != '.' && s.charAt(i) != '$'))
+		    return false;
+	    } else if (c != '.' && c != '_' && !Character.isLetterOrDigit(c))
+		return false;
+	}
+	Node n = trie;
+	for (int i = 0; i < end; i++) {
+	    char c = s.charAt(i);
+	    if (c == '.') {
+		if (n.any == null)
+		    n.any = new Node();
+		n = n.any;
+	    } else {
+		if (c == '\\')
+		    c = s.charAt(++i);
+		Node child = n.children.get(c);
+		if (child == null)
+		    n.children.put(c, child = new Node());
+		n = child;
+	    }
+	}
+	if (prefix)
+	    n.prefix = true;
+	else
+	    n.exact = true;
+	return true;
+    }
+
+    /** The patterns, as written in the options */
+    public String toString() {
+	return patterns.toString();
+    }
+
+    /** A node of the trie of literal patterns */
+    private static class Node {
+	final Map<Character, Node> children = new HashMap<Character, Node>();
+	/** The edge matching any character */
+	Node any;
+	/** A pattern ends here */
+	boolean exact;
+	/** A pattern ending with ".*" ends here */
+	boolean prefix;
+
+	/**
+	 * Return true if a pattern of the trie matches the string
+	 * starting at the specified position
+	 * @param whole true if the pattern must match the rest of the string
+	 */
+	boolean matches(String s, int i, boolean whole) {
+	    if (exact && (!whole || i == s.length()))
+		return true;
+	    if (prefix && (!whole || !hasLineTerminator(s, i)))
+		return true;
+	    if (i == s.length())
+		return false;
+	    char c = s.charAt(i);
+	    if (any != null && !isLineTerminator(c) && any.matches(s, i + 1, whole))
+		return true;
+	    Node child = children.get(c);
+	    return child != null && child.matches(s, i + 1, whole);
+	}
+    }
+
+    /** Return true for the characters '.' does not match */
+    private static boolean isLineTerminator(char c) {
+	return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    private static boolean hasLineTerminator(String s, int from) {
+	for (int i = from; i < s.length(); i++)
+	    if (isLineTerminator(s.charAt(i)))
+		return true;
+	return false;
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Create a graphviz graph based on the classes in the specified java
+ * source files.
+ *
+ * (C) Copyright 2002-2010 Diomidis Spinellis
+ *
+ * Permission to use, copy, and distribute this software and its
+ * documentation for any purpose and without fee is hereby granted,
+ * provided that the above copyright notice appear in all copies and that
+ * both that copyright notice and this permission notice appear in
+ * supporting documentation.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND WITHOUT ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF
+ * MERCHANTIBILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ *
+ */
+
+package org.umlgraph.doclet;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.javadoc.RootDoc;
+
+/**
+ * A stage of the UMLGraphDoc pipeline: a fixed number of worker threads
+ * taking their tasks from a bounded queue.
+ * When the queue is full, the threads submitting tasks wait, so that a
+ * slow stage holds back the stages feeding it instead of piling up work.
+ * The stage counts its tasks, their failures, the time its workers spend
+ * on them, and the deepest its queue has been.
+ *
+ * @version $Revision$
+ * @author <a href="http://www.spinellis.gr">Diomidis Spinellis</a>
+ */
+class PipelineStage {
+    /** The task telling a worker to stop */
+    private static final Task STOP = new Task(null, null);
+
+    private final String name;
+    private final RootDoc root;
+    private final int capacity;
+    private final BlockingQueue<Task> queue;
+    private final Thread[] workers;
+    private final AtomicInteger completed = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicInteger maxDepth = new AtomicInteger();
+    /** Nanoseconds the workers spent running tasks */
+    private final AtomicLong busy = new AtomicLong();
+    private final long start = System.nanoTime();
+    private long elapsed = -1;
+
+    /** A task, along with its description used to report its failure */
+    private static class Task {
+	final String description;
+	final Callable<Void> callable;
+
+	Task(String description, Callable<Void> callable) {
+	    this.description = description;
+	    this.callable = callable;
+	}
+    }
+
+    /**
+     * Create a new stage and start its workers
+     * @param name the stage's name, used in its statistics
+     * @param workers the number of worker threads
+     * @param capacity the number of tasks the queue holds
+     * @param root the javadoc root, used to report failures
+     */
+    public PipelineStage(final String name, int workers, int capacity, RootDoc root) {
+	this.name = name;
+	this.root = root;
+	this.capacity = Math.max(1, capacity);
+	this.queue = new ArrayBlockingQueue<Task>(this.capacity);
+	this.workers = new Thread[Math.max(1, workers)];
+	for (int i = 0; i < this.workers.length; i++) {
+	    this.workers[i] = new Thread(new Runnable() {
+		public void run() {
+		    work();
+		}
+	    }, "UMLGraph " + name + " " + (i + 1));
+	    this.workers[i].setDaemon(true);
+	    this.workers[i].start();
+	}
+    }
+
+    /**
+     * Queue the specified task, waiting while the queue is full
+     * @param description what the task does, reported if it fails
+     */
+    public void submit(String description, Callable<Void> callable) throws InterruptedException {
+	queue.put(new Task(description, callable));
+	int depth = queue.size();
+	for (int max = maxDepth.get(); depth > max && !maxDepth.compareAndSet(max, depth); max = maxDepth.get())
+	    ;
+    }
+
+    /** Return the number of tasks waiting in the queue */
+    public int depth() {
+	return queue.size();
+    }
+
+    /**
+     * Wait for the queued tasks to complete and stop the workers.
+     * No tasks may be submitted afterwards.
+     * @return false if any task failed
+     */
+    public boolean finish() throws InterruptedException {
+	for (int i = 0; i < workers.length; i++)
+	    queue.put(STOP);
+	for (Thread worker : workers)
+	    worker.join();
+	synchronized (this) {
+	    elapsed = System.nanoTime() - start;
+	}
+	return failed.get() == 0;
+    }
+
+    /** Return the throughput and queue statistics of the stage */
+    public String statistics() {
+	long time;
+	synchronized (this) {
+	    time = elapsed >= 0 ? elapsed : System.nanoTime() - start;
+	}
+	return String.format("%s: %d tasks, %d failed, %.1f tasks/s, %d ms busy on %d threads, "
+		+ "queue depth at most %d of %d", name, completed.get(), failed.get(),
+		completed.get() * 1e9 / Math.max(1, time), busy.get() / 1000000, workers.length,
+		maxDepth.get(), capacity);
+    }
+
+    private void work() {
+	for (;;) {
+	    Task task;
+	    try {
+		task = queue.take();
+	    } catch (InterruptedException e) {
+		return;
+	    }
+	    if (task == STOP)
+		return;
+	    long t0 = System.nanoTime();
+	    try {
+		task.callable.call();
+	    } catch (Throwable t) {
+		failed.incrementAndGet();
+		synchronized (root) {
+		    root.printWarning("Error " + task.description + ": " + t);
+		}
+		t.printStackTrace();
+	    } finally {
+		busy.addAndGet(System.nanoTime() - t0);
+		completed.incrementAndGet();
+	    }
+	}
+    }
+}
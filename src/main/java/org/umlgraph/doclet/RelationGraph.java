@@ -0,0 +1,209 @@
+/*
+ * Create a graphviz graph based on the classes in the specified java
+ * source files.
+ *
+ * (C) Copyright 2002-2010 Diomidis Spinellis
+ *
+ * Permission to use, copy, and distribute this software and its
+ * documentation for any purpose and without fee is hereby granted,
+ * provided that the above copyright notice appear in all copies and that
+ * both that copyright notice and this permission notice appear in
+ * supporting documentation.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND WITHOUT ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF
+ * MERCHANTIBILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ *
+ */
+
+package org.umlgraph.doclet;
+
+import static org.umlgraph.doclet.StringUtil.removeTemplate;
+
+import java.util.Set;
+
+import com.sun.javadoc.ClassDoc;
+import com.sun.javadoc.ProgramElementDoc;
+import com.sun.javadoc.Type;
+import com.sun.javadoc.TypeVariable;
+import com.sun.javadoc.WildcardType;
+
+/**
+ * Graph computation engine. Selects, according to the options of an
+ * OptionProvider, the classes and relations of a diagram from the shared
+ * GraphModel, without generating any output.
+ * @depend - - - GraphModel
+ * @composed - - - ClassRegistry
+ * @has - - - OptionProvider
+ *
+ * @version $Revision$
+ * @author <a href="http://www.spinellis.gr">Diomidis Spinellis</a>
+ */
+class RelationGraph {
+    /** The classes of the graph; their ids are unique within the graph */
+    protected final ClassRegistry registry = new ClassRegistry();
+    protected final GraphModel model;
+    protected OptionProvider optionProvider;
+
+    /**
+     * Create a new relation graph
+     * @param model The model of the classes of the javadoc run
+     * @param optionProvider The main option provider
+     */
+    public RelationGraph(GraphModel model, OptionProvider optionProvider) {
+	this.model = model;
+	this.optionProvider = optionProvider;
+    }
+
+    /** Return true if c has a @hidden tag associated with it */
+    protected boolean hidden(ProgramElementDoc c) {
+	if (c.tags("hidden").length > 0 || c.tags("view").length > 0)
+	    return true;
+	Options opt = optionProvider.getOptionsFor(c instanceof ClassDoc ? (ClassDoc) c : c.containingClass());
+	return opt.matchesHideExpression(c.toString()) //
+		|| (opt.hidePrivateInner && c instanceof ClassDoc  && c.isPrivate() && ((ClassDoc) c).containingClass() != null);
+    }
+
+    protected int classId(ClassDoc cd, boolean create) {
+	return classId(cd, cd.toString(), create);
+    }
+
+    protected int classId(String className, boolean create) {
+	return classId(null, className, create);
+    }
+
+    /**
+     * Return the id of the specified class, registering it if needed and
+     * create is true
+     * @return the class id, or -1 if the class is not registered
+     */
+    protected int classId(ClassDoc cd, String className, boolean create) {
+	int id = registry.find(className);
+	if (id < 0 && create) {
+	    String name = removeTemplate(className);
+	    boolean hidden = cd != null ? hidden(cd) : optionProvider.getOptionsFor(name).matchesHideExpression(name);
+	    id = registry.add(name, hidden);
+	}
+	return id;
+    }
+
+    /** Return true if the class name is associated to an hidden class or matches a hide expression */
+    protected boolean hidden(String className) {
+	int id = registry.find(className);
+	if (id >= 0)
+	    return registry.isHidden(id);
+	className = removeTemplate(className);
+	return optionProvider.getOptionsFor(className).matchesHideExpression(className);
+    }
+
+    /** Return the relations of the specified class to the named one, or null if there are none */
+    public RelationPattern getRelation(ClassDoc from, String toName) {
+	return registry.getRelation(classId(from, true), registry.find(toName));
+    }
+
+    /**
+     * Add the specified relation to the graph
+     * @param from the source class (may be null)
+     * @param fromName the source class's name
+     * @param to the destination class (may be null)
+     * @param toName the destination class's name
+     */
+    protected void relation(Options opt, RelationType rt, ClassDoc from, String fromName,
+	    ClassDoc to, String toName, String tailLabel, String label, String headLabel) {
+	addRelation(rt, classId(from, fromName, true), classId(to, toName, true));
+    }
+
+    /** Update the relation information of both ends of a relation */
+    protected void addRelation(RelationType rt, int from, int to) {
+	RelationDirection d = RelationDirection.BOTH;
+	if(rt == RelationType.NAVASSOC || rt == RelationType.DEPEND)
+	    d = RelationDirection.OUT;
+	registry.addRelation(from, to, rt, d);
+	registry.addRelation(to, from, rt, d.inverse());
+    }
+
+    /** Add a class's generalizations, realizations and tagged relations */
+    public void addRelations(ClassDoc c) {
+	Options opt = optionProvider.getOptionsFor(c);
+	if (hidden(c) || c.name().equals("")) // avoid phantom classes, they may pop up when the source uses annotations
+	    return;
+	for (GraphModel.Relation r : model.getFacts(c).relations) {
+	    if (r.hideName != null ? hidden(r.hideName) : r.to != null ? hidden(r.to) : hidden(r.toName))
+		continue;
+	    relation(opt, r.type, c, c.toString(), r.to, r.toName, r.tailLabel, r.label, r.headLabel);
+	}
+    }
+
+    /**
+     * Adds associations recovered from the fields of a class. An association is inferred only
+     * if another relation between the two classes is not already in the graph.
+     */
+    public void addInferredRelations(ClassDoc c) {
+	// check if the source is excluded from inference
+	if (hidden(c))
+	    return;
+
+	Options opt = optionProvider.getOptionsFor(c);
+
+	for (GraphModel.FieldFacts field : model.getFacts(c).fields) {
+	    if (hidden(field.field))
+		continue;
+	    ClassDoc cd = field.typeClass;
+	    boolean multiple = field.array;
+	    if (!field.array && field.elementClass != null
+		    && optionProvider.getOptionsFor(field.typeClass).matchesCollPackageExpression(field.typeName)) {
+		cd = field.elementClass;
+		multiple = true;
+	    }
+	    // check if the destination is excluded from inference
+	    if (hidden(cd))
+		continue;
+
+	    // if source and dest are not already linked, add a dependency
+	    RelationPattern rp = getRelation(c, cd.toString());
+	    if (rp == null) {
+		String destAdornment = multiple ? "*" : "";
+		relation(opt, opt.inferRelationshipType, c, c.toString(), cd, cd.toString(), "", "", destAdornment);
+	    }
+	}
+    }
+
+    /**
+     * Adds dependencies recovered from the methods of a class. A
+     * dependency is inferred only if another relation between the two
+     * classes is not already in the graph.
+     */
+    public void addInferredDependencies(ClassDoc c) {
+	if (hidden(c))
+	    return;
+
+	Options opt = optionProvider.getOptionsFor(c);
+	Set<Type> types = model.getFacts(c).dependencyTypes(opt);
+
+	// compute dependencies
+	for (Type type : types) {
+	    // skip primitives and type variables, as well as dependencies
+	    // on the source class
+	    if (type.isPrimitive() || type instanceof WildcardType || type instanceof TypeVariable
+		    || c.toString().equals(type.asClassDoc().toString()))
+		continue;
+
+	    // check if the destination is excluded from inference
+	    ClassDoc fc = type.asClassDoc();
+	    if (hidden(fc))
+		continue;
+
+	    // check if source and destination are in the same package and if we are allowed
+	    // to infer dependencies between classes in the same package
+	    if(!opt.inferDepInPackage && c.containingPackage().equals(fc.containingPackage()))
+		continue;
+
+	    // if source and dest are not already linked, add a dependency
+	    RelationPattern rp = getRelation(c, fc.toString());
+	    if (rp == null || rp.matchesOne(new RelationPattern(RelationDirection.OUT))) {
+		relation(opt, RelationType.DEPEND, c, c.toString(), fc, fc.toString(), "", "", "");
+	    }
+	}
+    }
+}
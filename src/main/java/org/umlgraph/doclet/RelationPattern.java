@@ -47,4 +47,21 @@ public class RelationPattern {
 	return false;
     }
 
+    /**
+     * Returns true if this pattern contains the direction of at least one
+     * of the relations actually present in the other relation pattern.
+     * Unlike {@linkplain #matchesOne(RelationPattern)}, relation types
+     * that are absent from both patterns never match.
+     * @param relationPattern
+     * @return
+     */
+    public boolean containsOne(RelationPattern relationPattern) {
+	for (int i = 0; i < directions.length; i++) {
+	    if (relationPattern.directions[i] != RelationDirection.NONE
+		    && directions[i].contains(relationPattern.directions[i]))
+		return true;
+	}
+	return false;
+    }
+
 }
@@ -19,6 +19,7 @@
 
 package org.umlgraph.doclet;
 
+import java.io.PrintWriter;
 import java.util.*;
 import java.util.regex.Pattern;
 
@@ -97,54 +98,54 @@ class StringUtil {
     }
 
     /**
-     * Convert embedded newlines into HTML line breaks
+     * Print the string, escaping &lt;, &gt;, and &amp; characters with the
+     * corresponding HTML entity code, without building intermediate strings.
+     * @param htmlNewlines if true, newlines are printed as HTML line breaks
      */
-    public static String htmlNewline(String s) {
-	if (s.indexOf('\n') == -1)
-	    return s;
-
-	StringBuilder sb = new StringBuilder(s);
-	for (int i = 0; i < sb.length();) {
-	    if (sb.charAt(i) == '\n') {
-		sb.replace(i, i + 1, "<br/>");
-		i += "<br/>".length();
-	    } else
-		i++;
-	}
-	return sb.toString();
-    }
-
-    /**
-     * Convert &lt; and &gt; characters in the string to the respective guillemot
-     * characters.
-     */
-    public static String guillemize(Options opt, String s) {
-	StringBuilder r = new StringBuilder(s);
-	for (int i = 0; i < r.length();)
-	    switch (r.charAt(i)) {
+    public static void escape(PrintWriter w, String s, boolean htmlNewlines) {
+	int last = 0;
+	for (int i = 0; i < s.length(); i++) {
+	    String entity;
+	    switch (s.charAt(i)) {
+	    case '&':
+		entity = "&amp;";
+		break;
 	    case '<':
-		r.replace(i, i + 1, opt.guilOpen);
-		i += opt.guilOpen.length();
+		entity = "&lt;";
 		break;
 	    case '>':
-		r.replace(i, i + 1, opt.guilClose);
-		i += opt.guilClose.length();
+		entity = "&gt;";
 		break;
-	    default:
-		i++;
+	    case '\n':
+		if (!htmlNewlines)
+		    continue;
+		entity = "<br/>";
 		break;
+	    default:
+		continue;
 	    }
-	return r.toString();
+	    w.write(s, last, i - last);
+	    w.write(entity);
+	    last = i + 1;
+	}
+	w.write(s, last, s.length() - last);
     }
 
     /**
-     * Wraps a string in Guillemot (or an ASCII substitute) characters.
-     *
-     * @param str the <code>String</code> to be wrapped.
-     * @return the wrapped <code>String</code>.
+     * Print the string, converting &lt; and &gt; characters to the respective
+     * guillemot characters.
      */
-    public static String guilWrap(Options opt, String str) {
-	return opt.guilOpen + str + opt.guilClose;
+    public static void guillemize(PrintWriter w, Options opt, String s) {
+	int last = 0;
+	for (int i = 0; i < s.length(); i++) {
+	    char c = s.charAt(i);
+	    if (c != '<' && c != '>')
+		continue;
+	    w.write(s, last, i - last);
+	    w.write(c == '<' ? opt.guilOpen : opt.guilClose);
+	    last = i + 1;
+	}
+	w.write(s, last, s.length() - last);
     }
 
     /** Removes the template specs from a class name. */
@@ -0,0 +1,443 @@
+/*
+ * Create a graphviz graph based on the classes in the specified java
+ * source files.
+ *
+ * (C) Copyright 2002-2010 Diomidis Spinellis
+ *
+ * Permission to use, copy, and distribute this software and its
+ * documentation for any purpose and without fee is hereby granted,
+ * provided that the above copyright notice appear in all copies and that
+ * both that copyright notice and this permission notice appear in
+ * supporting documentation.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND WITHOUT ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF
+ * MERCHANTIBILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ *
+ */
+
+package org.umlgraph.doclet;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Lays out a DotGraph with the LayeredLayout and writes it as an SVG
+ * diagram, in the manner of dot's SVG output.
+ * The labels of the nodes, including the HTML-like tables of the
+ * classes, are measured and drawn by HtmlLabel, within the outline of
+ * the node's shape.
+ *
+ * @depend - - - DotGraph
+ * @depend - - - LayeredLayout
+ * @depend - - - HtmlLabel
+ * @version $Revision$
+ * @author <a href="http://www.spinellis.gr">Diomidis Spinellis</a>
+ */
+class SvgWriter {
+    private static final double POINTS_PER_INCH = 72;
+    /** Space around the diagram */
+    private static final double MARGIN = 4;
+    /** Length of the arrowheads */
+    private static final double ARROW = 10;
+    /** Size of the folds, tabs, and offsets of the node shapes */
+    private static final double FOLD = 8;
+
+    private final DotGraph graph;
+    private final PrintWriter w;
+
+    /**
+     * Create a writer of the specified graph
+     * @param w the writer receiving the SVG text
+     */
+    SvgWriter(DotGraph graph, PrintWriter w) {
+	this.graph = graph;
+	this.w = w;
+    }
+
+    /** Lay out and write the graph */
+    void write() {
+	Map<String, String> ga = graph.attributes;
+	LayeredLayout layout = new LayeredLayout(DotGraph.attribute(ga, "rankdir", "TB"),
+		DotGraph.attribute(ga, "nodesep", 0.25) * POINTS_PER_INCH,
+		DotGraph.attribute(ga, "ranksep", 0.5) * POINTS_PER_INCH);
+	List<DotGraph.Node> nodes = new ArrayList<DotGraph.Node>(graph.nodes.values());
+	List<HtmlLabel> labels = new ArrayList<HtmlLabel>(nodes.size());
+	Map<DotGraph.Node, Integer> index = new HashMap<DotGraph.Node, Integer>();
+	for (DotGraph.Node node : nodes) {
+	    index.put(node, index.size());
+	    Map<String, String> na = node.attributes;
+	    HtmlLabel label = new HtmlLabel(DotGraph.attribute(na, "label", node.id), style(na, "font"));
+	    labels.add(label);
+	    double[] size = shapeSize(shape(na), label);
+	    layout.addNode(size[0], size[1]);
+	}
+	List<DotGraph.Edge> edges = graph.edges;
+	for (DotGraph.Edge edge : edges) {
+	    Map<String, String> ea = edge.attributes;
+	    double labelWidth = 0, labelHeight = 0;
+	    String text = ea.get("label");
+	    if (text != null && !text.isEmpty()) {
+		HtmlLabel label = new HtmlLabel(text, style(ea, "font"));
+		labelWidth = label.width;
+		labelHeight = label.height;
+	    }
+	    layout.addEdge(index.get(edge.tail), index.get(edge.head),
+		    DotGraph.attribute(ea, "weight", 1), labelWidth, labelHeight);
+	}
+	layout.layout();
+
+	double width = layout.width() + 2 * MARGIN;
+	double height = layout.height() + 2 * MARGIN;
+	w.println("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>");
+	w.println("<!DOCTYPE svg PUBLIC \"-//W3C//DTD SVG 1.1//EN\"");
+	w.println(" \"http://www.w3.org/Graphics/SVG/1.1/DTD/svg11.dtd\">");
+	w.println("<!-- Generated by UMLGraph version " + Version.VERSION + " -->");
+	w.println("<svg width=\"" + fmt(width) + "pt\" height=\"" + fmt(height) + "pt\"");
+	w.println(" viewBox=\"0.00 0.00 " + fmt(width) + " " + fmt(height) + "\""
+		+ " xmlns=\"http://www.w3.org/2000/svg\" xmlns:xlink=\"http://www.w3.org/1999/xlink\">");
+	w.println("<g id=\"graph0\" class=\"graph\" transform=\"translate(" + fmt(MARGIN) + " " + fmt(MARGIN) + ")\">");
+	rectangle(-MARGIN, -MARGIN, width, height, DotGraph.attribute(ga, "bgcolor", "white"), null, 0);
+	for (int i = 0; i < nodes.size(); i++)
+	    node(i + 1, nodes.get(i), labels.get(i), layout.x(i), layout.y(i));
+	for (int i = 0; i < edges.size(); i++)
+	    edge(i + 1, edges.get(i), layout.route(i));
+	w.println("</g>");
+	w.println("</svg>");
+    }
+
+    /** Return the shape of a node */
+    private static String shape(Map<String, String> na) {
+	return DotGraph.attribute(na, "shape", "ellipse").toLowerCase(Locale.ROOT);
+    }
+
+    /** Return the width and height of a node of the specified shape around its label */
+    private static double[] shapeSize(String shape, HtmlLabel label) {
+	double w = label.width, h = label.height;
+	if (shape.equals("ellipse") || shape.equals("oval") || shape.equals("circle"))
+	    return new double[] { w * Math.sqrt(2), h * Math.sqrt(2) };
+	if (shape.equals("tab") || shape.equals("folder"))
+	    return new double[] { w, h + FOLD / 2 };
+	if (shape.equals("box3d"))
+	    return new double[] { w + FOLD / 2, h + FOLD / 2 };
+	if (shape.equals("component"))
+	    return new double[] { w + FOLD, h };
+	return new double[] { w, h };
+    }
+
+    /** Write a node centered at x, y */
+    private void node(int number, DotGraph.Node node, HtmlLabel label, double x, double y) {
+	Map<String, String> na = node.attributes;
+	w.println("<!-- " + escape(node.id) + " -->");
+	w.println("<g id=\"node" + number + "\" class=\"node\"><title>" + escape(node.id) + "</title>");
+	String url = na.get("URL");
+	if (url != null) {
+	    String title = label.title();
+	    w.println("<a xlink:href=\"" + escape(url) + "\""
+		    + (title == null ? "" : " xlink:title=\"" + escape(title) + "\"") + " target=\"_parent\">");
+	}
+	String shape = shape(na);
+	double[] size = shapeSize(shape, label);
+	double left = x - size[0] / 2, top = y - size[1] / 2;
+	String stroke = DotGraph.attribute(na, "color", "black");
+	outline(shape, na, stroke, left, top, size[0], size[1]);
+	double labelLeft = x - label.width / 2, labelTop = y - label.height / 2;
+	if (shape.equals("tab") || shape.equals("folder"))
+	    labelTop += FOLD / 4;
+	else if (shape.equals("box3d")) {
+	    labelLeft -= FOLD / 4;
+	    labelTop += FOLD / 4;
+	} else if (shape.equals("component"))
+	    labelLeft += FOLD / 2;
+	label.draw(this, stroke, labelLeft, labelTop);
+	if (url != null)
+	    w.println("</a>");
+	w.println("</g>");
+    }
+
+    /** Draw the outline of a node's shape in the specified box */
+    private void outline(String shape, Map<String, String> na, String stroke, double x, double y, double w, double h) {
+	String style = DotGraph.attribute(na, "style", "");
+	String fill = style.contains("filled") ? DotGraph.attribute(na, "fillcolor", DotGraph.attribute(na, "color", "lightgrey"))
+		: "none";
+	String dash = style.contains("dashed") ? " stroke-dasharray=\"5,2\"" : style.contains("dotted")
+		? " stroke-dasharray=\"1,5\"" : "";
+	double r = x + w, b = y + h;
+	if (shape.equals("plaintext") || shape.equals("plain") || shape.equals("none"))
+	    return;
+	if (shape.equals("ellipse") || shape.equals("oval") || shape.equals("circle"))
+	    this.w.println("<ellipse fill=\"" + color(fill) + "\" stroke=\"" + color(stroke) + "\"" + dash
+		    + " cx=\"" + fmt(x + w / 2) + "\" cy=\"" + fmt(y + h / 2) + "\" rx=\"" + fmt(w / 2)
+		    + "\" ry=\"" + fmt(h / 2) + "\"/>");
+	else if (shape.equals("note")) {
+	    polygon(fill, stroke, dash, x, y, r - FOLD, y, r, y + FOLD, r, b, x, b);
+	    polyline(stroke, r - FOLD, y, r - FOLD, y + FOLD, r, y + FOLD);
+	} else if (shape.equals("tab") || shape.equals("folder")) {
+	    double tab = FOLD / 2;
+	    polygon(fill, stroke, dash, x, y + tab, r, y + tab, r, b, x, b);
+	    polygon(fill, stroke, dash, x, y, x + Math.min(3 * FOLD, w / 3), y, x + Math.min(3 * FOLD, w / 3), y + tab,
+		    x, y + tab);
+	} else if (shape.equals("box3d")) {
+	    double d = FOLD / 2;
+	    polygon(fill, stroke, dash, x, y + d, r - d, y + d, r - d, b, x, b);
+	    polygon(fill, stroke, dash, x, y + d, x + d, y, r, y, r - d, y + d);
+	    polygon(fill, stroke, dash, r - d, y + d, r, y, r, b - d, r - d, b);
+	} else if (shape.equals("component")) {
+	    double peg = FOLD / 2;
+	    polygon(fill, stroke, dash, x + peg, y, r, y, r, b, x + peg, b);
+	    polygon(fill, stroke, dash, x, y + h / 4 - peg / 2, x + FOLD, y + h / 4 - peg / 2,
+		    x + FOLD, y + h / 4 + peg / 2, x, y + h / 4 + peg / 2);
+	    polygon(fill, stroke, dash, x, y + 3 * h / 4 - peg / 2, x + FOLD, y + 3 * h / 4 - peg / 2,
+		    x + FOLD, y + 3 * h / 4 + peg / 2, x, y + 3 * h / 4 + peg / 2);
+	} else
+	    polygon(fill, stroke, dash, x, y, r, y, r, b, x, b);
+    }
+
+    /** Return the style of the text set by the attributes with the specified prefix */
+    private static HtmlLabel.Style style(Map<String, String> attributes, String prefix) {
+	return new HtmlLabel.Style(DotGraph.attribute(attributes, prefix + "name", "Times-Roman"),
+		DotGraph.attribute(attributes, prefix + "size", 14),
+		DotGraph.attribute(attributes, prefix + "color", "black"), false, false, false);
+    }
+
+    /** Write an edge along the specified route */
+    private void edge(int number, DotGraph.Edge edge, List<double[]> route) {
+	Map<String, String> ea = edge.attributes;
+	w.println("<!-- " + escape(edge.tail.id) + "&#45;&gt;" + escape(edge.head.id) + " -->");
+	w.println("<g id=\"edge" + number + "\" class=\"edge\"><title>" + escape(edge.tail.id) + "&#45;&gt;"
+		+ escape(edge.head.id) + "</title>");
+	String dir = DotGraph.attribute(ea, "dir", "forward");
+	String head = dir.equals("forward") || dir.equals("both") ? DotGraph.attribute(ea, "arrowhead", "normal") : "none";
+	String tail = dir.equals("back") || dir.equals("both") ? DotGraph.attribute(ea, "arrowtail", "normal") : "none";
+	String color = color(DotGraph.attribute(ea, "color", "black"));
+
+	List<double[]> line = new ArrayList<double[]>(route);
+	int last = line.size() - 1;
+	double[] headArrow = arrowBase(route.get(last), route.get(last - 1), head);
+	if (headArrow != null)
+	    line.set(last, headArrow);
+	double[] tailArrow = arrowBase(route.get(0), route.get(1), tail);
+	if (tailArrow != null)
+	    line.set(0, tailArrow);
+	String dash = "dashed".equals(ea.get("style")) ? " stroke-dasharray=\"5,2\"" :
+		"dotted".equals(ea.get("style")) ? " stroke-dasharray=\"1,5\"" : "";
+	w.println("<path fill=\"none\" stroke=\"" + color + "\"" + dash + " d=\"" + path(line) + "\"/>");
+	if (headArrow != null)
+	    arrow(head, route.get(last), headArrow, color);
+	if (tailArrow != null)
+	    arrow(tail, route.get(0), tailArrow, color);
+
+	String label = ea.get("label");
+	if (label != null && !label.isEmpty()) {
+	    double[] middle = middle(route);
+	    HtmlLabel text = new HtmlLabel(label, style(ea, "font"));
+	    text.draw(this, color, middle[0], middle[1] - text.height / 2);
+	}
+	HtmlLabel.Style labelStyle = labelStyle(ea);
+	String headLabel = ea.get("headlabel");
+	if (headLabel != null && !headLabel.isEmpty())
+	    endLabel(route.get(last), route.get(last - 1), new HtmlLabel(headLabel, labelStyle), color);
+	String tailLabel = ea.get("taillabel");
+	if (tailLabel != null && !tailLabel.isEmpty())
+	    endLabel(route.get(0), route.get(1), new HtmlLabel(tailLabel, labelStyle), color);
+	w.println("</g>");
+    }
+
+    /**
+     * Return the point where an edge meets the base of its arrowhead, or
+     * null if the edge has no arrowhead at its end
+     */
+    private static double[] arrowBase(double[] end, double[] from, String arrow) {
+	if (arrow.equals("none"))
+	    return null;
+	double dx = end[0] - from[0], dy = end[1] - from[1];
+	double length = Math.hypot(dx, dy);
+	if (length == 0)
+	    return null;
+	double back = Math.min(arrowLength(arrow), length);
+	return new double[] { end[0] - dx / length * back, end[1] - dy / length * back };
+    }
+
+    private static double arrowLength(String arrow) {
+	return arrow.endsWith("diamond") ? 1.2 * ARROW : ARROW;
+    }
+
+    /** Draw an arrowhead with its tip at the end of an edge */
+    private void arrow(String arrow, double[] tip, double[] base, String color) {
+	double dx = tip[0] - base[0], dy = tip[1] - base[1];
+	double length = Math.hypot(dx, dy);
+	// the unit vector across the edge, scaled to half the arrow width
+	double ax = -dy / length * 3.5, ay = dx / length * 3.5;
+	boolean open = arrow.equals("empty") || arrow.startsWith("o") && !arrow.equals("open")
+		|| arrow.equals("ediamond");
+	String fill = open ? "none" : color;
+	if (arrow.endsWith("diamond")) {
+	    double mx = (tip[0] + base[0]) / 2, my = (tip[1] + base[1]) / 2;
+	    polygon(fill, color, tip[0], tip[1], mx + ax, my + ay, base[0], base[1], mx - ax, my - ay);
+	} else if (arrow.equals("open") || arrow.equals("vee")) {
+	    double nx = base[0] + dx / 3, ny = base[1] + dy / 3;
+	    polygon(fill, color, tip[0], tip[1], base[0] + ax, base[1] + ay, nx, ny, base[0] - ax, base[1] - ay);
+	} else
+	    polygon(fill, color, tip[0], tip[1], base[0] + ax, base[1] + ay, base[0] - ax, base[1] - ay);
+    }
+
+    private void polygon(String fill, String stroke, double... coordinates) {
+	polygon(fill, stroke, "", coordinates);
+    }
+
+    private void polygon(String fill, String stroke, String dash, double... coordinates) {
+	w.println("<polygon fill=\"" + color(fill) + "\" stroke=\"" + color(stroke) + "\"" + dash + " points=\""
+		+ points(coordinates) + "\"/>");
+    }
+
+    private void polyline(String stroke, double... coordinates) {
+	w.println("<polyline fill=\"none\" stroke=\"" + color(stroke) + "\" points=\"" + points(coordinates) + "\"/>");
+    }
+
+    /**
+     * Draw a rectangle
+     * @param fill the fill color, or null for none
+     * @param stroke the color of the outline, or null for none
+     * @param strokeWidth the width of the outline
+     */
+    void rectangle(double x, double y, double width, double height, String fill, String stroke, double strokeWidth) {
+	w.println("<polygon fill=\"" + (fill == null ? "none" : color(fill)) + "\" stroke=\""
+		+ (stroke == null ? "none" : color(stroke)) + "\""
+		+ (stroke != null && strokeWidth != 1 ? " stroke-width=\"" + fmt(strokeWidth) + "\"" : "")
+		+ " points=\"" + points(x, y, x + width, y, x + width, y + height, x, y + height) + "\"/>");
+    }
+
+    /**
+     * Draw a span of text starting at x.  Leading and trailing blanks,
+     * which SVG would collapse, are removed, keeping the position of the
+     * rest.
+     */
+    void text(double x, double baseline, String text, HtmlLabel.Style style) {
+	int start = 0, end = text.length();
+	while (start < end && isBlank(text.charAt(start)))
+	    start++;
+	while (end > start && isBlank(text.charAt(end - 1)))
+	    end--;
+	if (start == end)
+	    return;
+	TextMetrics metrics = style.metrics();
+	w.println("<text text-anchor=\"start\" x=\"" + fmt(x + metrics.width(text.substring(0, start)))
+		+ "\" y=\"" + fmt(baseline) + "\" font-family=\"" + escape(style.family()) + "," + metrics.genericFamily
+		+ "\"" + (style.isItalic() ? " font-style=\"italic\"" : "") + (style.isBold() ? " font-weight=\"bold\"" : "")
+		+ (style.underline ? " text-decoration=\"underline\"" : "")
+		+ " font-size=\"" + fmt(style.size) + "\" fill=\"" + color(style.color) + "\">"
+		+ escape(text.substring(start, end)) + "</text>");
+    }
+
+    private static boolean isBlank(char c) {
+	return c == ' ' || c == '\t' || c == '\u00a0';
+    }
+
+    /** Write the head or tail label of an edge, next to its end */
+    private void endLabel(double[] end, double[] from, HtmlLabel label, String color) {
+	double dx = from[0] - end[0], dy = from[1] - end[1];
+	double length = Math.max(Math.hypot(dx, dy), 1e-9);
+	// along the edge, and then off to its side
+	double distance = 1.2 * ARROW + label.height / 2;
+	double x = end[0] + (dx * distance - dy * (label.width / 2 + 2)) / length;
+	double y = end[1] + (dy * distance + dx * (label.width / 2 + 2)) / length;
+	label.draw(this, color, x - label.width / 2, y - label.height / 2);
+    }
+
+    /** Return the style of the head and tail labels, which defaults to that of the edge */
+    private static HtmlLabel.Style labelStyle(Map<String, String> ea) {
+	HtmlLabel.Style font = style(ea, "font");
+	return new HtmlLabel.Style(DotGraph.attribute(ea, "labelfontname", font.face),
+		DotGraph.attribute(ea, "labelfontsize", font.size),
+		DotGraph.attribute(ea, "labelfontcolor", font.color), false, false, false);
+    }
+
+    /** Return the point halfway along a route */
+    private static double[] middle(List<double[]> route) {
+	double total = 0;
+	for (int i = 1; i < route.size(); i++)
+	    total += distance(route.get(i - 1), route.get(i));
+	double remaining = total / 2;
+	for (int i = 1; i < route.size(); i++) {
+	    double[] a = route.get(i - 1), b = route.get(i);
+	    double d = distance(a, b);
+	    if (d >= remaining && d > 0) {
+		double t = remaining / d;
+		return new double[] { a[0] + t * (b[0] - a[0]), a[1] + t * (b[1] - a[1]) };
+	    }
+	    remaining -= d;
+	}
+	return route.get(route.size() - 1);
+    }
+
+    private static double distance(double[] a, double[] b) {
+	return Math.hypot(b[0] - a[0], b[1] - a[1]);
+    }
+
+    /**
+     * Return the SVG path data of a smooth curve through the route's
+     * points: a Catmull-Rom spline converted into cubic Bezier segments
+     */
+    private static String path(List<double[]> route) {
+	StringBuilder d = new StringBuilder();
+	double[] p0 = route.get(0);
+	d.append('M').append(fmt(p0[0])).append(',').append(fmt(p0[1]));
+	if (route.size() == 2) {
+	    double[] p1 = route.get(1);
+	    return d.append('L').append(fmt(p1[0])).append(',').append(fmt(p1[1])).toString();
+	}
+	for (int i = 0; i + 1 < route.size(); i++) {
+	    double[] before = route.get(Math.max(i - 1, 0));
+	    double[] a = route.get(i);
+	    double[] b = route.get(i + 1);
+	    double[] after = route.get(Math.min(i + 2, route.size() - 1));
+	    d.append('C').append(fmt(a[0] + (b[0] - before[0]) / 6)).append(',')
+		    .append(fmt(a[1] + (b[1] - before[1]) / 6)).append(' ')
+		    .append(fmt(b[0] - (after[0] - a[0]) / 6)).append(',')
+		    .append(fmt(b[1] - (after[1] - a[1]) / 6)).append(' ')
+		    .append(fmt(b[0])).append(',').append(fmt(b[1]));
+	}
+	return d.toString();
+    }
+
+    /** Return an SVG color for a dot color */
+    private static String color(String color) {
+	return color.startsWith("#") ? color : color.toLowerCase(Locale.ROOT);
+    }
+
+    /** Return the coordinates as the value of an SVG points attribute */
+    private static String points(double... coordinates) {
+	StringBuilder points = new StringBuilder();
+	for (int i = 0; i + 1 < coordinates.length; i += 2) {
+	    if (i > 0)
+		points.append(' ');
+	    points.append(fmt(coordinates[i])).append(',').append(fmt(coordinates[i + 1]));
+	}
+	return points.toString();
+    }
+
+    private static String fmt(double value) {
+	return String.format(Locale.ROOT, "%.2f", value);
+    }
+
+    /** Escape the XML special characters of the text */
+    private static String escape(String text) {
+	StringBuilder result = new StringBuilder(text.length());
+	for (int i = 0; i < text.length(); i++) {
+	    char c = text.charAt(i);
+	    switch (c) {
+	    case '<': result.append("&lt;"); break;
+	    case '>': result.append("&gt;"); break;
+	    case '&': result.append("&amp;"); break;
+	    case '"': result.append("&quot;"); break;
+	    default: result.append(c);
+	    }
+	}
+	return result.toString();
+    }
+}
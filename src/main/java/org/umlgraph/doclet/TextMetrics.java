@@ -0,0 +1,128 @@
+/*
+ * Create a graphviz graph based on the classes in the specified java
+ * source files.
+ *
+ * (C) Copyright 2002-2010 Diomidis Spinellis
+ *
+ * Permission to use, copy, and distribute this software and its
+ * documentation for any purpose and without fee is hereby granted,
+ * provided that the above copyright notice appear in all copies and that
+ * both that copyright notice and this permission notice appear in
+ * supporting documentation.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND WITHOUT ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF
+ * MERCHANTIBILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ *
+ */
+
+package org.umlgraph.doclet;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Character width tables of a font at a given size, used to measure the
+ * text of the diagrams laid out in-process.
+ * The widths come from the Adobe font metrics of the standard PostScript
+ * fonts that Graphviz also uses for its estimates: Helvetica for the sans
+ * serif fonts, Times for the serif ones, and Courier for the monospaced
+ * ones.
+ * The tables are scaled to the font size once, and shared among all
+ * diagrams, so that measuring a string costs a table lookup per
+ * character.
+ *
+ * @version $Revision$
+ * @author <a href="http://www.spinellis.gr">Diomidis Spinellis</a>
+ */
+class TextMetrics {
+    /** Helvetica widths of the characters from space to tilde, in 1/1000 em */
+    private static final short[] HELVETICA = {
+	278, 278, 355, 556, 556, 889, 667, 191, 333, 333, 389, 584, 278, 333, 278, 278,
+	556, 556, 556, 556, 556, 556, 556, 556, 556, 556, 278, 278, 584, 584, 584, 556,
+	1015, 667, 667, 722, 722, 667, 611, 778, 722, 278, 500, 667, 556, 833, 722, 778,
+	667, 778, 722, 667, 611, 722, 667, 944, 667, 667, 611, 278, 278, 278, 469, 556,
+	333, 556, 556, 500, 556, 556, 278, 556, 556, 222, 222, 500, 222, 833, 556, 556,
+	556, 556, 333, 500, 278, 556, 500, 722, 500, 500, 500, 334, 260, 334, 584,
+    };
+    /** Times widths of the characters from space to tilde, in 1/1000 em */
+    private static final short[] TIMES = {
+	250, 333, 408, 500, 500, 833, 778, 180, 333, 333, 500, 564, 250, 333, 250, 278,
+	500, 500, 500, 500, 500, 500, 500, 500, 500, 500, 278, 278, 564, 564, 564, 444,
+	921, 722, 667, 667, 722, 611, 556, 722, 722, 333, 389, 722, 611, 889, 722, 722,
+	556, 722, 667, 556, 611, 722, 722, 944, 722, 722, 611, 333, 278, 333, 469, 500,
+	333, 444, 500, 444, 500, 444, 333, 500, 500, 278, 278, 500, 278, 778, 500, 500,
+	500, 500, 333, 389, 278, 500, 500, 722, 500, 500, 444, 480, 200, 480, 541,
+    };
+    /** How much wider bold characters are, on average */
+    private static final double BOLD = 1.08;
+    /** Table size: the Latin-1 characters */
+    private static final int CHARS = 256;
+    /** Tables already scaled, by family and size */
+    private static final ConcurrentMap<String, TextMetrics> cache = new ConcurrentHashMap<String, TextMetrics>();
+
+    /** The generic SVG font family, used as a fallback */
+    final String genericFamily;
+    /** Character widths, in points */
+    private final double[] widths = new double[CHARS];
+    /** Width of the characters outside the table */
+    private final double otherWidth;
+
+    private TextMetrics(String genericFamily, short[] table, int fixed, double size) {
+	this.genericFamily = genericFamily;
+	this.otherWidth = (table == null ? fixed : table['n' - ' ']) * size / 1000;
+	for (int c = 0; c < CHARS; c++)
+	    widths[c] = table == null || c < ' ' || c - ' ' >= table.length ? otherWidth
+		    : table[c - ' '] * size / 1000;
+	// the non-breaking space
+	widths[0xa0] = widths[' '];
+    }
+
+    /**
+     * Return the metrics of the specified font name and size
+     * @param bold true for a bold font, whose characters are estimated
+     * to be wider by a fixed factor
+     */
+    static TextMetrics of(String fontName, double size, boolean bold) {
+	String family = family(fontName);
+	String key = family + "/" + size + (bold ? "/bold" : "");
+	TextMetrics metrics = cache.get(key);
+	if (metrics == null) {
+	    double scaled = bold ? size * BOLD : size;
+	    if (family.equals("monospace"))
+		metrics = new TextMetrics(family, null, 600, scaled);
+	    else if (family.equals("serif"))
+		metrics = new TextMetrics(family, TIMES, 0, scaled);
+	    else
+		metrics = new TextMetrics(family, HELVETICA, 0, scaled);
+	    TextMetrics existing = cache.putIfAbsent(key, metrics);
+	    if (existing != null)
+		metrics = existing;
+	}
+	return metrics;
+    }
+
+    /** Return the generic family of a font name */
+    private static String family(String fontName) {
+	String name = fontName.toLowerCase(Locale.ROOT);
+	if (name.contains("courier") || name.contains("mono") || name.contains("console"))
+	    return "monospace";
+	if (name.contains("sans") || name.contains("helvetica") || name.contains("arial"))
+	    return "sans-serif";
+	if (name.contains("times") || name.contains("serif") || name.contains("georgia"))
+	    return "serif";
+	return "sans-serif";
+    }
+
+    /** Return the width of the specified text, in points */
+    double width(String text) {
+	double width = 0;
+	for (int i = 0; i < text.length(); i++) {
+	    char c = text.charAt(i);
+	    width += c < CHARS ? widths[c] : otherWidth;
+	}
+	return width;
+    }
+}
@@ -19,10 +19,19 @@
 
 package org.umlgraph.doclet;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.sun.javadoc.ClassDoc;
 import com.sun.javadoc.Doc;
@@ -35,6 +44,8 @@ import com.sun.javadoc.RootDoc;
  * @depend - - - Options
  * @depend - - - View
  * @depend - - - ClassGraph
+ * @depend - - - PackageSummary
+ * @depend - - - GraphModel
  * @depend - - - Version
  *
  * @version $Revision$
@@ -45,23 +56,68 @@ public class UmlGraph {
     private static final String programName = "UmlGraph";
     private static final String docletName = "org.umlgraph.doclet.UmlGraph";
 
-    /** Options used for commenting nodes */
-    private static Options commentOptions;
-
     /** Entry point through javadoc */
     public static boolean start(RootDoc root) throws IOException {
-	Options opt = buildOptions(root);
-	root.printNotice("UMLGraph doclet version " + Version.VERSION + " started");
-
-	View[] views = buildViews(opt, root, root);
-	if(views == null)
-	    return false;
-	if (views.length == 0)
-	    buildGraph(root, opt, null);
-	else
-	    for (int i = 0; i < views.length; i++)
-		buildGraph(root, views[i], null);
-	return true;
+	try {
+	    Options opt = buildOptions(root);
+	    opt.freeze();
+	    root.printNotice("UMLGraph doclet version " + Version.VERSION + " started");
+
+	    View[] views = buildViews(opt, root, root);
+	    if(views == null)
+		return false;
+	    if (views.length == 0)
+		buildGraph(root, opt, null);
+	    else if (opt.threads > 1)
+		return buildViewGraphs(root, opt, views);
+	    else
+		for (int i = 0; i < views.length; i++)
+		    buildGraph(root, views[i], null);
+	    return true;
+	} finally {
+	    GraphModel.release(root);
+	}
+    }
+
+    /**
+     * Builds the graphs of the specified views, using as many threads as
+     * specified by the -threads option. Views writing to the same output
+     * are built one after the other, in view order, by the same thread.
+     * @return false if the graph of any view could not be built
+     */
+    private static boolean buildViewGraphs(final RootDoc root, Options opt, View[] views) {
+	// complete the javadoc model before the views share it
+	GraphModel model = GraphModel.of(root);
+	if (opt.inferDependencies)
+	    model.inferDependencies(opt, opt.threads);
+
+	Map<String, List<View>> byOutput = new LinkedHashMap<String, List<View>>();
+	for (View view : views) {
+	    Options vo = view.getGlobalOptions();
+	    String output = vo.outputFileName.equals("-") ? "-"
+		    : new File(vo.outputDirectory, vo.outputFileName).getPath();
+	    List<View> group = byOutput.get(output);
+	    if (group == null)
+		byOutput.put(output, group = new ArrayList<View>());
+	    group.add(view);
+	}
+
+	List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+	List<String> names = new ArrayList<String>();
+	for (final List<View> group : byOutput.values()) {
+	    tasks.add(new Callable<Void>() {
+		public Void call() throws Exception {
+		    for (View view : group)
+			buildGraph(root, view, null);
+		    return null;
+		}
+	    });
+	    StringBuilder name = new StringBuilder();
+	    for (View view : group)
+		name.append(name.length() == 0 ? "" : ", ").append(view.getDisplayName());
+	    names.add(name.toString());
+	}
+	return runAll(root, tasks, names, opt.threads);
     }
 
     public static void main(String args[]) {
@@ -70,28 +126,30 @@ public class UmlGraph {
 	  err, err, err, docletName, args);
     }
 
-    public static Options getCommentOptions() {
-    	return commentOptions;
-    }
-
     /**
      * Creates the base Options object.
      * This contains both the options specified on the command
      * line and the ones specified in the UMLOptions class, if available.
-     * Also create the globally accessible commentOptions object.
      */
     public static Options buildOptions(RootDoc root) {
-	commentOptions = new Options();
-	commentOptions.setOptions(root.options());
-	commentOptions.setOptions(findClass(root, "UMLNoteOptions"));
-	commentOptions.shape = Shape.NOTE;
-
 	Options opt = new Options();
 	opt.setOptions(root.options());
 	opt.setOptions(findClass(root, "UMLOptions"));
 	return opt;
     }
 
+    /**
+     * Creates the options used for commenting nodes, from the ones
+     * specified on the command line and in the UMLNoteOptions class.
+     */
+    static Options buildCommentOptions(RootDoc root) {
+	Options opt = new Options();
+	opt.setOptions(root.options());
+	opt.setOptions(findClass(root, "UMLNoteOptions"));
+	opt.shape = Shape.NOTE;
+	return opt;
+    }
+
     /** Return the ClassDoc for the specified class; null if not found. */
     private static ClassDoc findClass(RootDoc root, String name) {
 	ClassDoc[] classes = root.classes();
@@ -105,27 +163,91 @@ public class UmlGraph {
      * Builds and outputs a single graph according to the view overrides
      */
     public static void buildGraph(RootDoc root, OptionProvider op, Doc contextDoc) throws IOException {
-	if(getCommentOptions() == null)
-	    buildOptions(root);
 	Options opt = op.getGlobalOptions();
-	root.printNotice("Building " + op.getDisplayName());
+	if (opt.largeGraph > 0 && contextDoc == null) {
+	    PackageSummary summary = new PackageSummary(root, op);
+	    if (summary.select() > opt.largeGraph && summary.packageCount() > 1) {
+		synchronized (root) {
+		    root.printNotice("Summarizing " + op.getDisplayName() + " by package");
+		}
+		summary.write();
+		return;
+	    }
+	}
+	buildClassGraph(root, op, contextDoc);
+    }
+
+    /**
+     * Builds and outputs a single graph according to the view overrides
+     * @return the graph that was output
+     */
+    static ClassGraph buildClassGraph(RootDoc root, OptionProvider op, Doc contextDoc) throws IOException {
+	return buildClassGraph(root, op, contextDoc, null);
+    }
+
+    /**
+     * Builds a single graph according to the view overrides, and writes
+     * it to the specified stream
+     * @param out the stream, or null for the output file of the options
+     * @return the graph that was output
+     */
+    static ClassGraph buildClassGraph(RootDoc root, OptionProvider op, Doc contextDoc, OutputStream out)
+	    throws IOException {
+	Options opt = op.getGlobalOptions();
+	synchronized (root) {
+	    root.printNotice("Building " + op.getDisplayName());
+	}
 	ClassDoc[] classes = root.classes();
 
-	ClassGraph c = new ClassGraph(root, op, contextDoc);
-	c.prologue();
+	ClassGraph c = new ClassGraph(GraphModel.of(root), op, contextDoc);
+	c.prologue(out);
 	for (ClassDoc cd : classes)
 	    c.printClass(cd, true);
 	for (ClassDoc cd : classes)
-	    c.printRelations(cd);
+	    c.addRelations(cd);
 	if(opt.inferRelationships)
 	    for (ClassDoc cd : classes)
-		c.printInferredRelations(cd);
+		c.addInferredRelations(cd);
         if(opt.inferDependencies)
 	    for (ClassDoc cd : classes)
-		c.printInferredDependencies(cd);
+		c.addInferredDependencies(cd);
 
 	c.printExtraClasses(root);
 	c.epilogue();
+	return c;
+    }
+
+    /**
+     * Runs the specified tasks on the given number of threads. A failing
+     * task does not stop the others; failures are reported in task order.
+     * @return false if any task failed
+     */
+    static boolean runAll(RootDoc root, List<Callable<Void>> tasks, List<String> names, int threads) {
+	List<Future<Void>> results = new ArrayList<Future<Void>>();
+	ExecutorService executor = null;
+	if (threads > 1) {
+	    executor = Executors.newFixedThreadPool(threads);
+	    for (Callable<Void> task : tasks)
+		results.add(executor.submit(task));
+	    executor.shutdown();
+	}
+	boolean success = true;
+	for (int i = 0; i < tasks.size(); i++) {
+	    try {
+		if (executor != null)
+		    results.get(i).get();
+		else
+		    tasks.get(i).call();
+	    } catch (Exception e) {
+		Throwable t = e instanceof ExecutionException ? e.getCause() : e;
+		synchronized (root) {
+		    root.printWarning("Error generating " + names.get(i) + ": " + t);
+		}
+		t.printStackTrace();
+		success = false;
+	    }
+	}
+	return success;
     }
 
     /**
@@ -1,20 +1,21 @@
 package org.umlgraph.doclet;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
 import java.io.FileOutputStream;
-import java.io.FileInputStream;
-import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.TreeSet;
 import java.util.Comparator;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.regex.Pattern;
 
 import com.sun.javadoc.ClassDoc;
+import com.sun.javadoc.Doc;
 import com.sun.javadoc.LanguageVersion;
 import com.sun.javadoc.PackageDoc;
 import com.sun.javadoc.RootDoc;
@@ -29,6 +30,15 @@ import com.sun.tools.doclets.standard.Standard;
  * @depend - - - WrappedRootDoc
  */
 public class UmlGraphDoc {
+    /** The file of the output folder that holds the manifest of incremental runs */
+    private static final String MANIFEST = "umlgraph-manifest.txt";
+    /** The line of a package summary page after which the diagram is inserted */
+    private static final Pattern PACKAGE_INSERTION_POINT = Pattern.compile("(</[Hh]2>)|(<h1 title=\"Package\").*");
+    /** Strings one of which every package insertion point line contains */
+    private static final String[] PACKAGE_LITERALS = { "</h2>", "</H2>", "<h1 title=\"Package\"" };
+    /** Strings one of which every class insertion point line contains */
+    private static final String[] CLASS_LITERALS = { "Class ", "Interface ", "Enum " };
+
     /**
      * Option check, forwards options to the standard doclet, if that one refuses them,
      * they are sent to UmlGraph
@@ -60,16 +70,61 @@ public class UmlGraphDoc {
 	    opt.relativeLinksForSourcePackages = true;
 	    // enable strict matching for hide expressions
 	    opt.strictMatching = true;
+	    // from now on the options are shared by the diagrams, and cached
+	    opt.freeze();
 //	    root.printNotice(opt.toString());
 
-	    generatePackageDiagrams(root, opt, outputFolder);
-	    generateContextDiagrams(root, opt, outputFolder);
+	    if (opt.inferDependencies)
+		GraphModel.of(root).inferDependencies(opt, opt.threads);
+
+	    long cacheSize = opt.dotCacheSize * 1024 * 1024;
+	    DiagramCache cache = opt.dotCache == null ? null
+		    : opt.javaLayout ? DiagramCache.openForLayout(new File(opt.dotCache), cacheSize)
+		    : DiagramCache.open(new File(opt.dotCache), cacheSize, opt.dotExecutable);
+	    DiagramRenderer renderer = opt.javaLayout
+		    ? new LayoutRenderer(opt.outputEncoding, opt.dotProcesses, root, cache)
+		    : new GraphvizRenderer(opt.dotExecutable, opt.dotProcesses, opt.dotBatch, root, cache);
+	    File manifestFile = new File(outputFolder, MANIFEST);
+	    DiagramManifest manifest = opt.incremental
+		    ? new DiagramManifest(manifestFile, GraphModel.of(root), root.options(),
+			    !opt.dotStream || opt.keepDot) : null;
+	    HtmlPatcher patcher = new HtmlPatcher(opt, root);
+	    boolean success = false;
+	    boolean rendered = false;
+	    try {
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		List<String> names = new ArrayList<String>();
+		addPackageDiagrams(root, opt, outputFolder, renderer, patcher, manifest, tasks, names);
+		addContextDiagrams(root, opt, outputFolder, renderer, patcher, manifest, tasks, names);
+		long start = System.nanoTime();
+		success = UmlGraph.runAll(root, tasks, names, opt.threads);
+		root.printNotice(String.format("generation: %d tasks, %.1f tasks/s on %d threads",
+			tasks.size(), tasks.size() * 1e9 / Math.max(1, System.nanoTime() - start), opt.threads));
+	    } finally {
+		rendered = renderer.finish();
+		success &= rendered;
+		success &= patcher.finish();
+	    }
+	    root.printNotice(renderer.statistics());
+	    root.printNotice(patcher.statistics());
+	    // a diagram that failed to render must not pass for up to date in the next run
+	    Set<File> failures = renderer.failures();
+	    if (manifest != null && (rendered || !failures.isEmpty())) {
+		String prefix = new File(outputFolder).getPath() + File.separator;
+		for (File dotFile : failures)
+		    if (dotFile.getPath().startsWith(prefix))
+			manifest.forget(dotFile.getPath().substring(prefix.length()).replace(File.separatorChar, '/'));
+		manifest.write();
+	    } else
+		manifestFile.delete();
+	    return success;
 	} catch(Throwable t) {
 	    root.printWarning("Error: " + t.toString());
 	    t.printStackTrace();
 	    return false;
+	} finally {
+	    GraphModel.release(root);
 	}
-	return true;
     }
 
     /**
@@ -81,30 +136,48 @@ public class UmlGraphDoc {
     }
 
     /**
-     * Generates the package diagrams for all of the packages that contain classes among those 
-     * returned by RootDoc.class() 
+     * Adds the tasks generating the package diagrams for all of the packages
+     * that contain classes among those returned by RootDoc.class().
+     * Each task builds the diagram, and queues it for rendering and the
+     * package's summary page for patching, so that the packages proceed
+     * independently of each other and of the context diagrams.
      */
-    private static void generatePackageDiagrams(RootDoc root, Options opt, String outputFolder)
-	    throws IOException {
+    private static void addPackageDiagrams(final RootDoc root, final Options opt, final String outputFolder,
+	    final DiagramRenderer renderer, final HtmlPatcher patcher, final DiagramManifest manifest,
+	    List<Callable<Void>> tasks, List<String> names) {
 	Set<String> packages = new HashSet<String>();
 	for (ClassDoc classDoc : root.classes()) {
-	    PackageDoc packageDoc = classDoc.containingPackage();
+	    final PackageDoc packageDoc = classDoc.containingPackage();
 	    if(!packages.contains(packageDoc.name())) {
 		packages.add(packageDoc.name());
-    	    OptionProvider view = new PackageView(outputFolder, packageDoc, root, opt);
-    	    UmlGraph.buildGraph(root, view, packageDoc);
-    	    runGraphviz(opt.dotExecutable, outputFolder, packageDoc.name(), packageDoc.name(), root);
-    	    alterHtmlDocs(opt, outputFolder, packageDoc.name(), packageDoc.name(),
-    		    "package-summary.html", Pattern.compile("(</[Hh]2>)|(<h1 title=\"Package\").*"), root);
+		final String diagram = diagramName(packageDoc.name(), packageDoc.name());
+		final File dotFile = new File(outputFolder, diagram);
+		// the view reads the package's tags, so build it before the tasks run
+		final OptionProvider view = manifest == null || !manifest.upToDate(diagram, dotFile, packageDoc)
+			? new PackageView(outputFolder, packageDoc, root, opt) : null;
+		tasks.add(new Callable<Void>() {
+		    public Void call() throws Exception {
+			if (view != null) {
+			    ClassGraph graph = buildDiagram(root, opt, view, packageDoc, dotFile, renderer);
+			    if (manifest != null)
+				manifest.record(diagram, graph.shownClasses());
+			}
+			alterHtmlDocs(patcher, outputFolder, packageDoc.name(), packageDoc.name(),
+				"package-summary.html", PACKAGE_INSERTION_POINT, PACKAGE_LITERALS);
+			return null;
+		    }
+		});
+		names.add(packageDoc.name());
 	    }
 	}
     }
 
     /**
-     * Generates the context diagram for a single class
+     * Adds the tasks generating the context diagrams of all classes
      */
-    private static void generateContextDiagrams(RootDoc root, Options opt, String outputFolder)
-	    throws IOException {
+    private static void addContextDiagrams(final RootDoc root, final Options opt, final String outputFolder,
+	    final DiagramRenderer renderer, final HtmlPatcher patcher, final DiagramManifest manifest,
+	    List<Callable<Void>> tasks, List<String> names) {
         Set<ClassDoc> classDocs = new TreeSet<ClassDoc>(new Comparator<ClassDoc>() {
             public int compare(ClassDoc cd1, ClassDoc cd2) {
                 return cd1.name().compareTo(cd2.name());
@@ -113,148 +186,83 @@ public class UmlGraphDoc {
         for (ClassDoc classDoc : root.classes())
             classDocs.add(classDoc);
 
-	ContextView view = null;
-	for (ClassDoc classDoc : classDocs) {
-	    try {
-		if(view == null)
-		    view = new ContextView(outputFolder, classDoc, root, opt);
-		else
-		    view.setContextCenter(classDoc);
-		UmlGraph.buildGraph(root, view, classDoc);
-		runGraphviz(opt.dotExecutable, outputFolder, classDoc.containingPackage().name(), classDoc.name(), root);
-		alterHtmlDocs(opt, outputFolder, classDoc.containingPackage().name(), classDoc.name(),
-			classDoc.name() + ".html", Pattern.compile(".*(Class|Interface|Enum) " + classDoc.name() + ".*") , root);
-	    } catch (Exception e) {
-		throw new RuntimeException("Error generating " + classDoc.name(), e);
-	    }
+	for (final ClassDoc classDoc : classDocs) {
+	    tasks.add(new Callable<Void>() {
+		public Void call() throws Exception {
+		    generateContextDiagram(root, opt, outputFolder, classDoc, renderer, patcher, manifest);
+		    return null;
+		}
+	    });
+	    names.add(classDoc.name());
 	}
     }
 
     /**
-     * Runs Graphviz dot building both a diagram (in png format) and a client side map for it.
+     * Generates the context diagram for a single class
      */
-    private static void runGraphviz(String dotExecutable, String outputFolder, String packageName, String name, RootDoc root) {
-    if (dotExecutable == null) {
-      dotExecutable = "dot";
+    private static void generateContextDiagram(RootDoc root, Options opt, String outputFolder, ClassDoc classDoc,
+	    DiagramRenderer renderer, HtmlPatcher patcher, DiagramManifest manifest)
+	    throws IOException, InterruptedException {
+	String diagram = diagramName(classDoc.containingPackage().name(), classDoc.name());
+	File dotFile = new File(outputFolder, diagram);
+	if (manifest == null || !manifest.upToDate(diagram, dotFile, classDoc)) {
+	    ContextView view = new ContextView(outputFolder, classDoc, root, opt);
+	    ClassGraph graph = buildDiagram(root, opt, view, classDoc, dotFile, renderer);
+	    if (manifest != null)
+		manifest.record(diagram, graph.shownClasses());
+	}
+	alterHtmlDocs(patcher, outputFolder, classDoc.containingPackage().name(), classDoc.name(),
+		classDoc.name() + ".html", Pattern.compile(".*(Class|Interface|Enum) " + classDoc.name() + ".*"),
+		CLASS_LITERALS);
     }
-	File dotFile = new File(outputFolder, packageName.replace(".", "/") + "/" + name + ".dot");
-  File svgFile = new File(outputFolder, packageName.replace(".", "/") + "/" + name + ".svg");
 
-	try {
-	    Process p = Runtime.getRuntime().exec(new String [] {
-		dotExecutable,
-    "-Tsvg",
-		"-o",
-		svgFile.getAbsolutePath(),
-		dotFile.getAbsolutePath()
-	    });
-	    BufferedReader reader = new BufferedReader(new InputStreamReader(p.getErrorStream()));
-	    String line;
-	    while((line = reader.readLine()) != null)
-		root.printWarning(line);
-	    int result = p.waitFor();
-	    if (result != 0)
-		root.printWarning("Errors running Graphviz on " + dotFile);
-	} catch (Exception e) {
-	    e.printStackTrace();
-	    System.err.println("Ensure that dot is in your path and that its path does not contain spaces");
+    /**
+     * Builds the specified diagram and queues it for rendering. With
+     * -dotstream the dot text is kept in memory and piped to Graphviz, and
+     * the dot file is only written with -keepdot.
+     * @return the graph that was output
+     */
+    private static ClassGraph buildDiagram(RootDoc root, Options opt, OptionProvider view, Doc doc,
+	    File dotFile, DiagramRenderer renderer) throws IOException, InterruptedException {
+	if (!opt.dotStream) {
+	    ClassGraph graph = UmlGraph.buildClassGraph(root, view, doc);
+	    renderer.render(dotFile);
+	    return graph;
 	}
+	ByteArrayOutputStream dot = new ByteArrayOutputStream();
+	ClassGraph graph = UmlGraph.buildClassGraph(root, view, doc, dot);
+	dotFile.getParentFile().mkdirs();
+	if (opt.keepDot) {
+	    OutputStream out = new FileOutputStream(dotFile);
+	    try {
+		dot.writeTo(out);
+	    } finally {
+		out.close();
+	    }
+	} else
+	    // do not leave the dot file of a previous run behind
+	    dotFile.delete();
+	renderer.render(dotFile, dot.toByteArray());
+	return graph;
     }
 
-    //Format string for the uml image div tag.
-    private static final String UML_DIV_TAG = 
-	"<div align=\"center\">" +
-	    "<object width=\"100%%\" height=\"100%%\" type=\"image/svg+xml\" data=\"%1$s.svg\" alt=\"Package class diagram package %1$s\" border=0></object>" +
-	"</div>";
-    
-    private static final String UML_AUTO_SIZED_DIV_TAG = 
-    "<div align=\"center\">" +
-        "<object type=\"image/svg+xml\" data=\"%1$s.svg\" alt=\"Package class diagram package %1$s\" border=0></object>" +
-    "</div>";
-    
-    private static final String EXPANDABLE_UML_STYLE = "font-family: Arial,Helvetica,sans-serif;font-size: 1.5em; display: block; width: 250px; height: 20px; background: #009933; padding: 5px; text-align: center; border-radius: 8px; color: white; font-weight: bold;";
+    /**
+     * Returns the path of the specified diagram's dot file, relative to the output folder
+     */
+    private static String diagramName(String packageName, String name) {
+	return packageName.replace(".", "/") + "/" + name + ".dot";
+    }
 
-    //Format string for the java script tag.
-    private static final String EXPANDABLE_UML = 
-	"<script type=\"text/javascript\">\n" + 
-	"function show() {\n" + 
-	"    document.getElementById(\"uml\").innerHTML = \n" + 
-	"        \'<a style=\"" + EXPANDABLE_UML_STYLE + "\" href=\"javascript:hide()\">%3$s</a>\' +\n" +
-	"        \'%1$s\';\n" + 
-	"}\n" + 
-	"function hide() {\n" + 
-	"	document.getElementById(\"uml\").innerHTML = \n" + 
-	"	\'<a style=\"" + EXPANDABLE_UML_STYLE + "\" href=\"javascript:show()\">%2$s</a>\' ;\n" +
-	"}\n" + 
-	"</script>\n" + 
-	"<div id=\"uml\" >\n" + 
-	"	<a href=\"javascript:show()\">\n" + 
-	"	<a style=\"" + EXPANDABLE_UML_STYLE + "\" href=\"javascript:show()\">%2$s</a> \n" +
-	"</div>";
-    
     /**
-     * Takes an HTML file, looks for the first instance of the specified insertion point, and
-     * inserts the diagram image reference and a client side map in that point.
+     * Requests the insertion of the diagram image reference into an HTML file, at the first
+     * instance of the specified insertion point.
+     * @param literals strings one of which any line matching the insertion point contains
      */
-    private static void alterHtmlDocs(Options opt, String outputFolder, String packageName, String className,
-	    String htmlFileName, Pattern insertPointPattern, RootDoc root) throws IOException {
-	// setup files
+    private static void alterHtmlDocs(HtmlPatcher patcher, String outputFolder, String packageName,
+	    String className, String htmlFileName, Pattern insertPointPattern, String[] literals)
+	    throws InterruptedException {
 	File output = new File(outputFolder, packageName.replace(".", "/"));
-	File htmlFile = new File(output, htmlFileName);
-	File alteredFile = new File(htmlFile.getAbsolutePath() + ".uml");
-	if (!htmlFile.exists()) {
-	    System.err.println("Expected file not found: " + htmlFile.getAbsolutePath());
-	    return;
-	}
-
-	// parse & rewrite
-	BufferedWriter writer = null;
-	BufferedReader reader = null;
-	boolean matched = false;
-	try {
-	    writer = new BufferedWriter(new OutputStreamWriter(new
-		    FileOutputStream(alteredFile), opt.outputEncoding));
-	    reader = new BufferedReader(new InputStreamReader(new
-		    FileInputStream(htmlFile), opt.outputEncoding));
-
-	    String line;
-	    while ((line = reader.readLine()) != null) {
-		writer.write(line);
-		writer.newLine();
-		if (!matched && insertPointPattern.matcher(line).matches()) {
-		    matched = true;
-			
-		    String tag;
-		    if (opt.autoSize)
-		        tag = String.format(UML_AUTO_SIZED_DIV_TAG, className);
-		    else
-                tag = String.format(UML_DIV_TAG, className);
-		    if (opt.collapsibleDiagrams)
-		    	tag = String.format(EXPANDABLE_UML, tag, "Show UML class diagram", "Hide UML class diagram");
-		    writer.write("<!-- UML diagram added by UMLGraph version " +
-		    		Version.VERSION + 
-				" (http://www.spinellis.gr/umlgraph/) -->");
-		    writer.newLine();
-		    writer.write(tag);
-		    writer.newLine();
-		}
-	    }
-	} finally {
-	    if (writer != null)
-		writer.close();
-	    if (reader != null)
-		reader.close();
-	}
-
-	// if altered, delete old file and rename new one to the old file name
-	if (matched) {
-	    htmlFile.delete();
-	    alteredFile.renameTo(htmlFile);
-	} else {
-	    root.printNotice("Warning, could not find a line that matches the pattern '" + insertPointPattern.pattern() 
-		    + "'.\n Class diagram reference not inserted");
-	    alteredFile.delete();
-	}
+	patcher.insert(new File(output, htmlFileName), className, insertPointPattern, literals);
     }
 
     /**
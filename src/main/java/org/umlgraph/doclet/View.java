@@ -48,6 +48,9 @@ public class View implements OptionProvider {
     OptionProvider provider;
     List<String[]> globalOptions;
     RootDoc root;
+    /** The global options of the view, resolved on first use */
+    private Options resolvedGlobalOptions;
+    private final OptionCache optionCache = new OptionCache();
 
     /**
      * Builds a view given the class that contains its definition
@@ -94,10 +97,10 @@ public class View implements OptionProvider {
 	    if (strings[0].equals("class")) {
 		return new PatternMatcher(Pattern.compile(strings[1]));
 	    } else if (strings[0].equals("context")) {
-		return new ContextMatcher(root, Pattern.compile(strings[1]), getGlobalOptions(), 
+		return new ContextMatcher(root, Pattern.compile(strings[1]), resolveGlobalOptions(), 
 			false);
 	    } else if (strings[0].equals("outgoingContext")) {
-		return new ContextMatcher(root, Pattern.compile(strings[1]), getGlobalOptions(), 
+		return new ContextMatcher(root, Pattern.compile(strings[1]), resolveGlobalOptions(), 
 			false);
 	    } else if (strings[0].equals("interface")) {
 		return new InterfaceMatcher(root, Pattern.compile(strings[1]));
@@ -123,19 +126,40 @@ public class View implements OptionProvider {
     // ---------------------------------------------------------------- 
 
     public Options getOptionsFor(ClassDoc cd) {
-	Options localOpt = getGlobalOptions();
-	overrideForClass(localOpt, cd);
-	localOpt.setOptions(cd);
+	Options localOpt = optionCache.get(cd);
+	if (localOpt == null) {
+	    localOpt = getGlobalOptions();
+	    overrideForClass(localOpt, cd);
+	    localOpt.setOptions(cd);
+	    localOpt = optionCache.put(cd, localOpt);
+	}
 	return localOpt;
     }
 
     public Options getOptionsFor(String name) {
-	Options localOpt = getGlobalOptions();
-	overrideForClass(localOpt, name);
+	Options localOpt = optionCache.get(name);
+	if (localOpt == null) {
+	    localOpt = getGlobalOptions();
+	    overrideForClass(localOpt, name);
+	    localOpt = optionCache.put(name, localOpt);
+	}
 	return localOpt;
     }
 
     public Options getGlobalOptions() {
+	synchronized (this) {
+	    if (resolvedGlobalOptions == null)
+		resolvedGlobalOptions = resolveGlobalOptions();
+	}
+	return (Options) resolvedGlobalOptions.clone();
+    }
+
+    /**
+     * Apply the global options of the view to those of its provider.
+     * The matchers built while the view is parsed see only the options
+     * that precede them.
+     */
+    private Options resolveGlobalOptions() {
 	Options go = provider.getGlobalOptions();
 	
 	boolean outputSet = false;
@@ -0,0 +1,184 @@
+/*
+ * UmlGraph class diagram testing framework
+ *
+ * (C) Copyright 2002-2010 Diomidis Spinellis
+ *
+ * Permission to use, copy, and distribute this software and its
+ * documentation for any purpose and without fee is hereby granted,
+ * provided that the above copyright notice appear in all copies and that
+ * both that copyright notice and this permission notice appear in
+ * supporting documentation.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND WITHOUT ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF
+ * MERCHANTIBILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ *
+ */
+
+package org.umlgraph.doclet;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.umlgraph.test.TestUtils;
+
+/**
+ * Checks that HtmlPatcher inserts the diagram reference after the
+ * insertion point, copying the rest of the page as it is, and that
+ * it leaves alone the pages it already patched.
+ *
+ * @version $Revision$
+ * @author <a href="http://www.spinellis.gr">Diomidis Spinellis</a>
+ */
+public class HtmlPatcherTest {
+
+    static String testDestFolder = "testdata/patch-out";
+
+    static final Pattern INSERTION_POINT = Pattern.compile(".*<hr>.*");
+
+    /** A page, with its lines to be joined by the line terminator of each test */
+    static final String[] PAGE = { "<html>", "<body>", "<h2>Class Foo</h2>", "<hr>",
+	    "<p>Caf\u00e9 \u00e0 la carte</p>", "</body>", "</html>", "" };
+
+    static PrintWriter pw = new PrintWriter(System.out);
+
+    public static void main(String[] args) throws Exception {
+	List<String> differences = new ArrayList<String>();
+
+	File outFolder = new File(testDestFolder);
+	if (!outFolder.exists())
+	    outFolder.mkdirs();
+	TestUtils.cleanFolder(outFolder, true);
+
+	// pages whose bytes around the reference are copied as they are
+	testPatch(differences, outFolder, "lf.html", "UTF-8", "\n", true);
+	testPatch(differences, outFolder, "crlf.html", "UTF-8", "\r\n", true);
+	testPatch(differences, outFolder, "latin1.html", "ISO-8859-1", "\r\n", true);
+	// pages rewritten as a whole, since their encoding starts with a byte order mark
+	testPatch(differences, outFolder, "utf16.html", "UTF-16", "\r\n", false);
+	testNoInsertionPoint(differences, outFolder);
+
+	if (differences.size() > 0) {
+	    pw.println("ERROR, some pages were not patched as expected:");
+	    for (String d : differences)
+		pw.println(d);
+	} else {
+	    pw.println("GOOD, all pages were patched as expected");
+	}
+	pw.println();
+	pw.flush();
+	System.exit(differences.size() > 0 ? 1 : 0);
+    }
+
+    /**
+     * Patch a page twice. The first run must insert the reference after
+     * the insertion point, keeping the page's line terminators, and the
+     * second must leave the page untouched.
+     * @param copied true if the bytes of the page around the reference
+     * must be kept as they are
+     */
+    private static void testPatch(List<String> differences, File folder, String name,
+	    String encoding, String newline, boolean copied) throws Exception {
+	File page = new File(folder, name);
+	String text = join(PAGE, newline);
+	write(page, text.getBytes(encoding));
+	byte[] original = TestUtils.readBytes(page);
+
+	HtmlPatcher patcher = patcher(encoding);
+	try {
+	    HtmlPatcher.Result result = patcher.patch(page, "Foo", INSERTION_POINT, "<hr>");
+	    if (result != HtmlPatcher.Result.PATCHED)
+		differences.add(name + ": first run returned " + result);
+
+	    byte[] patched = TestUtils.readBytes(page);
+	    String patchedText = new String(patched, encoding);
+	    int insert = text.indexOf("<hr>") + "<hr>".length() + newline.length();
+	    int end = patchedText.indexOf("</object></div>") + "</object></div>".length();
+	    if (!patchedText.startsWith(HtmlPatcher.MARKER, insert) || end < insert)
+		differences.add(name + ": reference not inserted after the insertion point");
+	    else {
+		String reference = patchedText.substring(insert, end + System.getProperty("line.separator").length());
+		if (!patchedText.equals(text.substring(0, insert) + reference + text.substring(insert)))
+		    differences.add(name + ": page text around the reference changed");
+		if (copied) {
+		    int prefix = text.substring(0, insert).getBytes(encoding).length;
+		    int suffix = text.substring(insert).getBytes(encoding).length;
+		    if (!Arrays.equals(Arrays.copyOfRange(patched, 0, prefix), Arrays.copyOfRange(original, 0, prefix))
+			    || !Arrays.equals(Arrays.copyOfRange(patched, patched.length - suffix, patched.length),
+				    Arrays.copyOfRange(original, original.length - suffix, original.length)))
+			differences.add(name + ": page bytes around the reference changed");
+		}
+	    }
+	    if (patchedText.indexOf('\uFEFF') >= 0)
+		differences.add(name + ": byte order mark inside the page");
+
+	    // a second run must not write the page
+	    long modified = (page.lastModified() / 1000 - 60) * 1000;
+	    page.setLastModified(modified);
+	    result = patcher.patch(page, "Foo", INSERTION_POINT, "<hr>");
+	    if (result != HtmlPatcher.Result.ALREADY_PATCHED)
+		differences.add(name + ": second run returned " + result);
+	    if (page.lastModified() != modified || !Arrays.equals(TestUtils.readBytes(page), patched))
+		differences.add(name + ": second run rewrote the page");
+	} finally {
+	    patcher.finish();
+	}
+	checkNoTempFiles(differences, folder);
+    }
+
+    /** Patch a page without an insertion point, which must be left untouched */
+    private static void testNoInsertionPoint(List<String> differences, File folder) throws Exception {
+	File page = new File(folder, "none.html");
+	write(page, join(PAGE, "\n").replace("<hr>", "<br>").getBytes("UTF-8"));
+	byte[] original = TestUtils.readBytes(page);
+	HtmlPatcher patcher = patcher("UTF-8");
+	try {
+	    HtmlPatcher.Result result = patcher.patch(page, "Foo", INSERTION_POINT, "<hr>");
+	    if (result != HtmlPatcher.Result.NO_INSERTION_POINT)
+		differences.add(page.getName() + ": returned " + result);
+	    if (!Arrays.equals(TestUtils.readBytes(page), original))
+		differences.add(page.getName() + ": page changed");
+	} finally {
+	    patcher.finish();
+	}
+    }
+
+    /** Check that the patching left no temporary files behind */
+    private static void checkNoTempFiles(List<String> differences, File folder) {
+	for (File f : folder.listFiles())
+	    if (f.getName().endsWith(".uml"))
+		differences.add("Temporary file left behind: " + f.getName());
+    }
+
+    private static HtmlPatcher patcher(String encoding) {
+	Options opt = new Options();
+	opt.setOption(new String[] { "-outputencoding", encoding });
+	return new HtmlPatcher(opt, null);
+    }
+
+    private static String join(String[] lines, String newline) {
+	StringBuilder sb = new StringBuilder();
+	for (int i = 0; i < lines.length; i++) {
+	    if (i > 0)
+		sb.append(newline);
+	    sb.append(lines[i]);
+	}
+	return sb.toString();
+    }
+
+    private static void write(File file, byte[] bytes) throws IOException {
+	FileOutputStream out = new FileOutputStream(file);
+	try {
+	    out.write(bytes);
+	} finally {
+	    out.close();
+	}
+    }
+}
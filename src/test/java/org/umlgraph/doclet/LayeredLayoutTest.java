@@ -0,0 +1,122 @@
+/*
+ * UmlGraph class diagram testing framework
+ *
+ * (C) Copyright 2002-2010 Diomidis Spinellis
+ *
+ * Permission to use, copy, and distribute this software and its
+ * documentation for any purpose and without fee is hereby granted,
+ * provided that the above copyright notice appear in all copies and that
+ * both that copyright notice and this permission notice appear in
+ * supporting documentation.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND WITHOUT ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF
+ * MERCHANTIBILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ *
+ */
+
+package org.umlgraph.doclet;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks that LayeredLayout honors the rank direction, the node
+ * separation, and the rank separation, as dot's rankdir, nodesep, and
+ * ranksep attributes.
+ * The graph laid out is a parent with two children: the parent must be
+ * alone in the first rank, and the children side by side in the second
+ * one, a rank separation apart from it and a node separation apart from
+ * each other.
+ *
+ * @version $Revision$
+ * @author <a href="http://www.spinellis.gr">Diomidis Spinellis</a>
+ */
+public class LayeredLayoutTest {
+
+    /** The widths and heights of the parent and its two children */
+    static final double[][] SIZES = { { 100, 40 }, { 60, 20 }, { 80, 30 } };
+
+    /** The node and rank separations tested */
+    static final double[][] SEPARATIONS = { { 18, 36 }, { 72, 10 } };
+
+    static final double EPSILON = 1e-6;
+
+    static PrintWriter pw = new PrintWriter(System.out);
+
+    public static void main(String[] args) {
+	List<String> differences = new ArrayList<String>();
+
+	for (double[] sep : SEPARATIONS)
+	    for (String rankDir : new String[] { "TB", "LR", "BT", "RL" })
+		testLayout(differences, rankDir, sep[0], sep[1]);
+
+	if (differences.size() > 0) {
+	    pw.println("ERROR, some layouts do not follow their attributes:");
+	    for (String d : differences)
+		pw.println(d);
+	} else {
+	    pw.println("GOOD, all layouts follow their attributes");
+	}
+	pw.println();
+	pw.flush();
+	System.exit(differences.size() > 0 ? 1 : 0);
+    }
+
+    private static void testLayout(List<String> differences, String rankDir, double nodeSep, double rankSep) {
+	LayeredLayout layout = new LayeredLayout(rankDir, nodeSep, rankSep);
+	for (double[] size : SIZES)
+	    layout.addNode(size[0], size[1]);
+	layout.addEdge(0, 1, 1, 0, 0);
+	layout.addEdge(0, 2, 1, 0, 0);
+	layout.layout();
+
+	String name = rankDir + " nodesep " + nodeSep + " ranksep " + rankSep;
+	boolean horizontal = rankDir.equals("LR") || rankDir.equals("RL");
+	boolean flipped = rankDir.equals("BT") || rankDir.equals("RL");
+	// the coordinates along and across the ranks, as for TB
+	double[] along = new double[SIZES.length], across = new double[SIZES.length];
+	for (int i = 0; i < SIZES.length; i++) {
+	    along[i] = horizontal ? layout.x(i) : layout.y(i);
+	    across[i] = horizontal ? layout.y(i) : layout.x(i);
+	}
+	double length = horizontal ? layout.width() : layout.height();
+	// the extent of each node along and across the ranks
+	int depth = horizontal ? 0 : 1, breadth = horizontal ? 1 : 0;
+
+	double rank0 = SIZES[0][depth];
+	double rank1 = Math.max(SIZES[1][depth], SIZES[2][depth]);
+	check(differences, name, "layout length", length, rank0 + rankSep + rank1);
+	if (flipped)
+	    for (int i = 0; i < SIZES.length; i++)
+		along[i] = length - along[i];
+	check(differences, name, "parent position", along[0], rank0 / 2);
+	check(differences, name, "first child position", along[1], rank0 + rankSep + rank1 / 2);
+	check(differences, name, "second child position", along[2], rank0 + rankSep + rank1 / 2);
+	check(differences, name, "child distance", Math.abs(across[1] - across[2]),
+		(SIZES[1][breadth] + SIZES[2][breadth]) / 2 + nodeSep);
+
+	// the edges run from the boundary of the parent to that of the child
+	List<double[]> route = layout.route(0);
+	checkBoundary(differences, name, "edge start", route.get(0), layout, 0);
+	checkBoundary(differences, name, "edge end", route.get(route.size() - 1), layout, 1);
+	if (route.size() != 2)
+	    differences.add(name + ": edge between adjacent ranks has " + route.size() + " points");
+    }
+
+    /** Check that the point lies on the boundary of the specified node's box */
+    private static void checkBoundary(List<String> differences, String layout, String what, double[] p,
+	    LayeredLayout l, int node) {
+	double dx = Math.abs(p[0] - l.x(node)) / (SIZES[node][0] / 2);
+	double dy = Math.abs(p[1] - l.y(node)) / (SIZES[node][1] / 2);
+	check(differences, layout, what + " on the node boundary", Math.max(dx, dy), 1);
+    }
+
+    private static void check(List<String> differences, String layout, String what, double actual,
+	    double expected) {
+	if (Math.abs(actual - expected) > EPSILON)
+	    differences.add(layout + ": " + what + " is " + actual + " instead of " + expected);
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * UmlGraph class diagram testing framework
+ *
+ * (C) Copyright 2002-2010 Diomidis Spinellis
+ *
+ * Permission to use, copy, and distribute this software and its
+ * documentation for any purpose and without fee is hereby granted,
+ * provided that the above copyright notice appear in all copies and that
+ * both that copyright notice and this permission notice appear in
+ * supporting documentation.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND WITHOUT ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF
+ * MERCHANTIBILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ *
+ */
+
+package org.umlgraph.doclet;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Checks that PatternSet matches names as the regular expressions it
+ * holds do, with Matcher.matches() for strict matching and
+ * Matcher.find() otherwise.
+ * The patterns cover those compiled into the trie, literal and prefix,
+ * with escaped and unescaped dots, and those matched as regular
+ * expressions.
+ *
+ * @version $Revision$
+ * @author <a href="http://www.spinellis.gr">Diomidis Spinellis</a>
+ */
+public class PatternSetTest {
+
+    /** Patterns compiled into the trie */
+    static final String[] LITERALS = { "java\\.util\\..*", "java.util.*", "java.lang.String",
+	    "gr\\.spinellis\\.Foo", "gr.spinellis.Foo", "Outer\\$Inner", "Foo", ".*", "a.b" };
+
+    /** Patterns matched as regular expressions */
+    static final String[] REGEXES = { "a\\.b\\.*", "[A-Z]+Impl", ".*Test", "^java", "foo|bar",
+	    "(?i)foo", "java\\.util\\.[^.]*", "Foo$", "x.*y.*" };
+
+    static final String[] NAMES = { "", "java.util", "java.util.", "java.util.List",
+	    "java.utilList", "javaXutil.List", "xjava.util.List", "java.util.concurrent.Map",
+	    "java.lang.String", "java.lang.StringBuilder", "gr.spinellis.Foo", "grXspinellis.Foo",
+	    "gr.spinellis.FooBar", "my.gr.spinellis.Foo", "Outer$Inner", "Outer.Inner", "Foo",
+	    "FOO", "foo", "a.b", "a.b.", "a.b..", "aXb", "ABCImpl", "MyImplTest", "Test.java",
+	    "java.util\nList", "java.util.\n", "gr.spinellis\nFoo", "xay", "y.x" };
+
+    static PrintWriter pw = new PrintWriter(System.out);
+
+    public static void main(String[] args) {
+	List<String> differences = new ArrayList<String>();
+
+	List<Pattern> all = new ArrayList<Pattern>();
+	for (String p : LITERALS)
+	    all.add(Pattern.compile(p));
+	for (String p : REGEXES)
+	    all.add(Pattern.compile(p));
+	all.add(Pattern.compile("foo", Pattern.CASE_INSENSITIVE));
+
+	// each pattern on its own, then the literals, the regexes, and all
+	// of them together
+	PatternSet literals = PatternSet.EMPTY, regexes = PatternSet.EMPTY, set = PatternSet.EMPTY;
+	for (Pattern p : all) {
+	    compare(differences, PatternSet.EMPTY.with(p), single(p));
+	    if (isLiteral(p))
+		literals = literals.with(p);
+	    else
+		regexes = regexes.with(p);
+	    set = set.with(p);
+	}
+	compare(differences, literals, literalPatterns(all, true));
+	compare(differences, regexes, literalPatterns(all, false));
+	compare(differences, set, all);
+	compare(differences, PatternSet.EMPTY, new ArrayList<Pattern>());
+
+	if (differences.size() > 0) {
+	    pw.println("ERROR, some pattern sets do not match as their patterns:");
+	    for (String d : differences)
+		pw.println(d);
+	} else {
+	    pw.println("GOOD, all pattern sets match as their patterns");
+	}
+	pw.println();
+	pw.flush();
+	System.exit(differences.size() > 0 ? 1 : 0);
+    }
+
+    /**
+     * Compare the outcome of the set for each name, strict and not, with
+     * that of its patterns. Each name is tested twice, so that the
+     * second outcome comes from the cache of the set.
+     */
+    private static void compare(List<String> differences, PatternSet set, List<Pattern> patterns) {
+	for (int pass = 0; pass < 2; pass++)
+	    for (String name : NAMES)
+		for (boolean strict : new boolean[] { true, false }) {
+		    boolean expected = false;
+		    for (Pattern p : patterns)
+			expected |= strict ? p.matcher(name).matches() : p.matcher(name).find();
+		    if (set.matches(name, strict) != expected)
+			differences.add(set + (strict ? " strictly" : "") + " on \""
+				+ name.replace("\n", "\\n") + "\": expected " + expected);
+		}
+    }
+
+    private static List<Pattern> single(Pattern p) {
+	List<Pattern> l = new ArrayList<Pattern>();
+	l.add(p);
+	return l;
+    }
+
+    private static List<Pattern> literalPatterns(List<Pattern> all, boolean literal) {
+	List<Pattern> l = new ArrayList<Pattern>();
+	for (Pattern p : all)
+	    if (isLiteral(p) == literal)
+		l.add(p);
+	return l;
+    }
+
+    private static boolean isLiteral(Pattern p) {
+	if (p.flags() != 0)
+	    return false;
+	for (String s : LITERALS)
+	    if (s.equals(p.pattern()))
+		return true;
+	return false;
+    }
+}
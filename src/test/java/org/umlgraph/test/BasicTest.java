@@ -79,6 +79,7 @@ public class BasicTest {
 	viewFiles.addAll(getViewList(new File(testSourceFolder, "gr/spinellis/context/views")));
 	viewFiles.addAll(getViewList(new File(testSourceFolder, "gr/spinellis/iface/views")));
 	viewFiles.addAll(getViewList(new File(testSourceFolder, "gr/spinellis/subclass/views")));
+	viewFiles.addAll(getViewList(new File(testSourceFolder, "gr/spinellis/summary/views")));
 	for (String fileName : viewFiles) {
 	    String viewName = fileName.substring(0, fileName.length() - 5);
 	    File dotFile = new File(testDestFolder, viewName + ".dot");
@@ -91,6 +92,11 @@ public class BasicTest {
 		}
 	    } else {
 		compare(differences, dotFile, refFile);
+		// the sub-diagrams of the view, such as those of a summarized large graph
+		String[] subDiagrams = new File(testRefFolder).list(new SimpleFileFilter(".dot"));
+		for (String refName : subDiagrams)
+		    if (refName.startsWith(viewName + "-"))
+			compare(differences, new File(testDestFolder, refName), new File(testRefFolder, refName));
 	    }
 	}
     }
@@ -0,0 +1,129 @@
+/*
+ * UmlGraph class diagram testing framework
+ *
+ * (C) Copyright 2002-2010 Diomidis Spinellis
+ *
+ * Permission to use, copy, and distribute this software and its
+ * documentation for any purpose and without fee is hereby granted,
+ * provided that the above copyright notice appear in all copies and that
+ * both that copyright notice and this permission notice appear in
+ * supporting documentation.
+ *
+ * THIS SOFTWARE IS PROVIDED ``AS IS'' AND WITHOUT ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, WITHOUT LIMITATION, THE IMPLIED WARRANTIES OF
+ * MERCHANTIBILITY AND FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ *
+ */
+
+package org.umlgraph.test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.umlgraph.doclet.Options;
+import org.umlgraph.doclet.UmlGraph;
+
+import com.sun.javadoc.LanguageVersion;
+import com.sun.javadoc.RootDoc;
+
+/**
+ * Measures the time and the bytes allocated for each class node of a
+ * class diagram, by generating the diagram of the specified sources
+ * repeatedly from the same javadoc run.
+ * <p>
+ * Usage: EmitterBenchmark [javadoc options], by default the all-options
+ * diagram of the UMLGraphDoc test sources.
+ * The allocated bytes are only reported on JVMs providing
+ * com.sun.management.ThreadMXBean.
+ */
+public class EmitterBenchmark {
+
+    static final int WARMUP = 20;
+
+    static final int RUNS = 100;
+
+    static final File output = new File(System.getProperty("java.io.tmpdir"), "emitter-benchmark.dot");
+
+    static final Pattern NODE = Pattern.compile("\\s*c\\d+ ?\\[label=.*");
+
+    public static void main(String[] args) {
+	List<String> options = new ArrayList<String>(Arrays.asList("-docletpath", "build",
+		"-private", "-quiet", "-all", "-inferrel", "-inferdep", "-output", output.getPath()));
+	if (args.length == 0)
+	    options.addAll(Arrays.asList("-sourcepath", "testdata/umldoc-src", "-subpackages", "gr.spinellis"));
+	else
+	    options.addAll(Arrays.asList(args));
+	PrintWriter pw = new PrintWriter(System.out);
+	com.sun.tools.javadoc.Main.execute("UMLGraph emitter benchmark", pw, pw, pw,
+		EmitterBenchmark.class.getName(), options.toArray(new String[options.size()]));
+	pw.flush();
+    }
+
+    /** Doclet entry point */
+    public static boolean start(RootDoc root) throws IOException {
+	Options opt = UmlGraph.buildOptions(root);
+	for (int i = 0; i < WARMUP; i++)
+	    UmlGraph.buildGraph(root, opt, null);
+
+	long allocated = allocatedBytes();
+	long start = System.nanoTime();
+	for (int i = 0; i < RUNS; i++)
+	    UmlGraph.buildGraph(root, opt, null);
+	long time = System.nanoTime() - start;
+	allocated = allocatedBytes() - allocated;
+
+	int nodes = countNodes();
+	System.out.println("Nodes per diagram: " + nodes);
+	System.out.println("Microseconds per node: " + time / 1000 / RUNS / Math.max(1, nodes));
+	if (allocated >= 0)
+	    System.out.println("Bytes allocated per node: " + allocated / RUNS / Math.max(1, nodes));
+	return true;
+    }
+
+    /**
+     * Return the bytes allocated by the current thread so far, or a
+     * negative number if they can not be measured
+     */
+    private static long allocatedBytes() {
+	try {
+	    return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+		    .getThreadAllocatedBytes(Thread.currentThread().getId());
+	} catch (ClassCastException e) {
+	    return -1;
+	} catch (UnsupportedOperationException e) {
+	    return -1;
+	}
+    }
+
+    /** Return the number of class nodes of the generated diagram */
+    private static int countNodes() throws IOException {
+	BufferedReader reader = new BufferedReader(new FileReader(output));
+	try {
+	    int nodes = 0;
+	    String line;
+	    while ((line = reader.readLine()) != null)
+		if (NODE.matcher(line).matches())
+		    nodes++;
+	    return nodes;
+	} finally {
+	    reader.close();
+	}
+    }
+
+    public static int optionLength(String option) {
+	return UmlGraph.optionLength(option);
+    }
+
+    public static LanguageVersion languageVersion() {
+	return UmlGraph.languageVersion();
+    }
+}
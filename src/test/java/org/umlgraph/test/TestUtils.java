@@ -20,9 +20,12 @@
 package org.umlgraph.test;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintWriter;
 import java.util.List;
 
@@ -53,8 +56,8 @@ public class TestUtils {
 	    /*
 	     * Line by line scan, exit when one file ends or lines are not
 	     * equal.
-	     * Ignore the "Generated by javadoc ..." comments, and the
-	     * "<META NAME="date"" tags
+	     * Ignore the "Generated by javadoc ..." and "Generated by UMLGraph
+	     * version ..." comments, and the "<META NAME="date"" tags
 	     */
 	    for (;;) {
 		refLine = refReader.readLine();
@@ -70,6 +73,9 @@ public class TestUtils {
 		} else if (refLine.startsWith("<!-- UML diagram added by UMLGraph")) {
 		    if (!outFile.startsWith("<!-- UML diagram added by UMLGraph"))
 			break;
+		} else if (refLine.startsWith("<!-- Generated by UMLGraph version ")) {
+		    if (!outFile.startsWith("<!-- Generated by UMLGraph version "))
+			break;
 		} else if (!refLine.equals(outFile)) {
 		    break;
 		}
@@ -93,6 +99,21 @@ public class TestUtils {
 	return equal;
     }
 
+    /** Return the contents of the specified file */
+    public static byte[] readBytes(File file) throws IOException {
+	ByteArrayOutputStream content = new ByteArrayOutputStream();
+	InputStream in = new FileInputStream(file);
+	try {
+	    byte[] buffer = new byte[8192];
+	    int n;
+	    while ((n = in.read(buffer)) > 0)
+		content.write(buffer, 0, n);
+	} finally {
+	    in.close();
+	}
+	return content.toByteArray();
+    }
+
     public static boolean dotFilesEqual(PrintWriter pw, String dotPath, String refPath)
 	    throws IOException {
 	pw.println("Performing diff:\nout:" + dotPath + "\nref:" + refPath);
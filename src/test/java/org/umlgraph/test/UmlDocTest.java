@@ -19,11 +19,14 @@
 package org.umlgraph.test;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * UmlGraphDoc doclet regression tests
@@ -34,9 +37,37 @@ public class UmlDocTest {
 
     static final String testSourceFolder = "testdata/umldoc-src";
 
+    static final String testShapesSourceFolder = "testdata/umldoc-shapes-src";
+
     static final String testDestFolder = "testdata/umldoc-out";
 
+    static final String testThreadsDestFolder = "testdata/umldoc-out-threads";
+
+    static final String testCacheDestFolder = "testdata/umldoc-out-cache";
+
+    static final String testCacheFolder = "testdata/umldoc-cache";
+
+    static final String testStreamDestFolder = "testdata/umldoc-out-stream";
+
+    static final String testBatchDestFolder = "testdata/umldoc-out-batch";
+
+    static final String testIncrementalSourceFolder = "testdata/umldoc-src-incremental";
+
+    static final String testIncrementalDestFolder = "testdata/umldoc-out-incremental";
+
+    static final String testLayoutDestFolder = "testdata/umldoc-out-layout";
+
+    static final String testLayoutLrDestFolder = "testdata/umldoc-out-layout-lr";
+
+    static final String testShapesDestFolder = "testdata/umldoc-out-shapes";
+
     static final String testRefFolder = "testdata/umldoc-ref";
+
+    static final String testLayoutRefFolder = "testdata/umldoc-layout-ref";
+
+    static final String testLayoutLrRefFolder = "testdata/umldoc-layout-lr-ref";
+
+    static final String testShapesRefFolder = "testdata/umldoc-shapes-ref";
     static final String doclet = "org.umlgraph.doclet.UmlGraphDoc";
 
     static PrintWriter pw = new PrintWriter(System.out);
@@ -44,19 +75,52 @@ public class UmlDocTest {
     public static void main(String[] args) throws IOException {
 	List<String> differences = new ArrayList<String>();
 
-	File outFolder = new File(testDestFolder);
-	if (!outFolder.exists())
-	    outFolder.mkdirs();
-
-	TestUtils.cleanFolder(outFolder, true);
+	for (String folder : new String[] { testDestFolder, testThreadsDestFolder, testCacheDestFolder,
+		testCacheFolder, testStreamDestFolder, testBatchDestFolder, testIncrementalSourceFolder,
+		testIncrementalDestFolder, testLayoutDestFolder, testLayoutLrDestFolder,
+		testShapesDestFolder }) {
+	    File outFolder = new File(folder);
+	    if (!outFolder.exists())
+		outFolder.mkdirs();
+	    TestUtils.cleanFolder(outFolder, true);
+	}
 
 	// run tests
-	runTest(differences);
+	runTest(differences, testDestFolder);
+	// the diagrams generated in parallel must not differ from the sequential ones
+	runTest(differences, testThreadsDestFolder, "-threads", "4", "-dotprocesses", "4",
+		"-patchthreads", "4");
+	compareIdentical(differences, new File(testDestFolder), new File(testThreadsDestFolder));
+	testCache(differences);
+	// the diagrams piped to dot, and the pages patched in a single sweep,
+	// must not differ either
+	runTest(differences, testStreamDestFolder, "-dotstream", "-keepdot");
+	compareIdentical(differences, new File(testDestFolder), new File(testStreamDestFolder));
+	runTest(differences, testBatchDestFolder, "-patchbatch");
+	compareIdentical(differences, new File(testDestFolder), new File(testBatchDestFolder));
+	testIncremental(differences);
+	// the diagrams laid out in-process, compared with the reference SVG diagrams
+	runTest(differences, testLayoutDestFolder, "-javalayout");
+	compareDocletOutputs(differences, new File(testLayoutRefFolder), new File(testLayoutDestFolder));
+	File lrFolder = new File(testLayoutLrDestFolder);
+	runDoclet(options(testSourceFolder, lrFolder, "-javalayout", "-horizontal", "-nodesep", "1",
+		"-ranksep", "1"));
+	compareDocletOutputs(differences, new File(testLayoutLrRefFolder), lrFolder);
+	// the labels of the in-process layout: compartments, stereotypes,
+	// tagged values, notes, and fonts of each family and variant
+	File shapesFolder = new File(testShapesDestFolder);
+	runDoclet(options(testShapesSourceFolder, shapesFolder, "-javalayout", "-attributes",
+		"-operations", "-types", "-visibility", "-enumconstants", "-nodefontname", "Times",
+		"-nodefontsize", "11", "-nodefontclassname", "Helvetica-Bold", "-nodefontpackagename",
+		"Helvetica-Oblique", "-nodefonttagname", "Courier", "-nodefonttagsize", "8",
+		"-edgefontname", "Courier"));
+	compareDocletOutputs(differences, new File(testShapesRefFolder), shapesFolder);
 	if (differences.size() > 0) {
 	    pw.println("ERROR, some files are not structurally equal or some files are missing:");
 	    for (String className : differences) {
 		pw.println(className);
 	    }
+	    pw.flush();
             System.exit(1);
 	} else {
 	    pw.println("GOOD, all files are structurally equal");
@@ -66,15 +130,171 @@ public class UmlDocTest {
 	pw.flush();
     }
 
-    private static void runTest(List<String> differences) throws IOException {
-	File outFolder = new File(testDestFolder);
-	String[] options = new String[] { "-docletpath", "build", "-private", "-d",
-		outFolder.getAbsolutePath(), "-sourcepath", testSourceFolder, "-compact",
+    private static void runTest(List<String> differences, String destFolder, String... extraOptions)
+	    throws IOException {
+	File outFolder = new File(destFolder);
+	runDoclet(options(testSourceFolder, outFolder, extraOptions));
+
+	compareDocletOutputs(differences, new File(testRefFolder), outFolder);
+    }
+
+    /** Return the doclet options for the specified sources and output */
+    private static String[] options(String sourceFolder, File outFolder, String... extraOptions) {
+	List<String> options = new ArrayList<String>(Arrays.asList("-docletpath", "build", "-private", "-d",
+		outFolder.getAbsolutePath(), "-sourcepath", sourceFolder, "-compact",
 		"-subpackages", "gr.spinellis", "-inferrel", "-inferdep", "-qualify",
-		"-postfixpackage", "-collpackages", "java.util.*" };
-	runDoclet(options);
+		"-postfixpackage", "-collpackages", "java.util.*"));
+	options.addAll(Arrays.asList(extraOptions));
+	return options.toArray(new String[options.size()]);
+    }
+
+    /**
+     * Generate the diagrams twice with the same diagram cache. The first
+     * run fills the cache, and must not differ from a run without it.
+     * The cached diagrams are then marked, and the second run must take
+     * all of its diagrams from the cache.
+     */
+    private static void testCache(List<String> differences) throws IOException {
+	runTest(differences, testCacheDestFolder, "-dotcache", testCacheFolder);
+	compareIdentical(differences, new File(testDestFolder), new File(testCacheDestFolder));
+
+	final String mark = "<!-- cached -->";
+	File[] entries = new File(testCacheFolder).listFiles();
+	if (entries.length == 0)
+	    differences.add("No diagrams stored in " + testCacheFolder);
+	for (File entry : entries) {
+	    String svg = new String(TestUtils.readBytes(entry), "UTF-8");
+	    write(entry, svg + mark);
+	}
+	runTest(differences, testCacheDestFolder, "-dotcache", testCacheFolder);
+	for (String svg : listFiles(new File(testCacheDestFolder), ".svg"))
+	    if (!new String(TestUtils.readBytes(new File(testCacheDestFolder, svg)), "UTF-8").endsWith(mark))
+		differences.add(svg + " was not taken from the diagram cache");
+    }
+
+    /**
+     * Generate the diagrams of a copy of the sources incrementally, three
+     * times: from scratch, after no change, and after a change to
+     * Customer. Check each time that only the diagrams showing a changed
+     * class, or a class referring to it, were generated again.
+     */
+    private static void testIncremental(List<String> differences) throws IOException {
+	File srcFolder = new File(testIncrementalSourceFolder);
+	File outFolder = new File(testIncrementalDestFolder);
+	copyFolder(new File(testSourceFolder), srcFolder);
 
-	compareDocletOutputs(differences, new File(testRefFolder), new File(testDestFolder));
+	runDoclet(options(testIncrementalSourceFolder, outFolder, "-incremental"));
+	compareDocletOutputs(differences, new File(testRefFolder), outFolder);
+	if (!new File(outFolder, "umlgraph-manifest.txt").exists())
+	    differences.add("No manifest written in " + outFolder);
+
+	checkRegenerated(differences, srcFolder, outFolder, new String[0]);
+
+	File customer = new File(srcFolder, "gr/spinellis/invoice/Customer.java");
+	String source = new String(TestUtils.readBytes(customer), "UTF-8");
+	write(customer, source.replace("String name;", "String name;\n    String address;"));
+	// the package diagram, the diagram of Customer, and those showing Invoice, which refers to it
+	checkRegenerated(differences, srcFolder, outFolder, new String[] {
+		"gr/spinellis/invoice/Customer.dot", "gr/spinellis/invoice/Invoice.dot",
+		"gr/spinellis/invoice/InvoiceItem.dot", "gr/spinellis/invoice/gr.spinellis.invoice.dot",
+		"gr/spinellis/product/Product.dot" });
+    }
+
+    /**
+     * Run the doclet incrementally again, and check that the specified
+     * diagrams, and only these, were written again
+     */
+    private static void checkRegenerated(List<String> differences, File srcFolder, File outFolder,
+	    String[] expected) throws IOException {
+	// move the diagrams back in time, so that rewritten ones stand out
+	List<String> dotFiles = listFiles(outFolder, ".dot");
+	long modified = (System.currentTimeMillis() / 1000 - 60) * 1000;
+	for (String dot : dotFiles)
+	    new File(outFolder, dot).setLastModified(modified);
+
+	runDoclet(options(srcFolder.getPath(), outFolder, "-incremental"));
+
+	Set<String> regenerated = new TreeSet<String>();
+	for (String dot : dotFiles)
+	    if (new File(outFolder, dot).lastModified() != modified)
+		regenerated.add(dot);
+	Set<String> expectedSet = new TreeSet<String>(Arrays.asList(expected));
+	if (!regenerated.equals(expectedSet))
+	    differences.add("Incremental run regenerated " + regenerated + " instead of " + expectedSet);
+	if (!listFiles(outFolder, ".dot").equals(dotFiles))
+	    differences.add("Incremental run changed the diagrams in " + outFolder);
+    }
+
+    /** Return the paths of the files with the specified suffix under a folder, in order */
+    private static List<String> listFiles(File folder, String suffix) {
+	List<String> files = new ArrayList<String>();
+	listFiles(folder, "", suffix, files);
+	return files;
+    }
+
+    private static void listFiles(File folder, String prefix, String suffix, List<String> files) {
+	String[] names = folder.list();
+	Arrays.sort(names);
+	for (String name : names) {
+	    File f = new File(folder, name);
+	    if (f.isDirectory())
+		listFiles(f, prefix + name + "/", suffix, files);
+	    else if (name.endsWith(suffix))
+		files.add(prefix + name);
+	}
+    }
+
+    private static void copyFolder(File from, File to) throws IOException {
+	to.mkdirs();
+	for (File f : from.listFiles()) {
+	    if (f.getName().equals("CVS"))
+		continue;
+	    File target = new File(to, f.getName());
+	    if (f.isDirectory())
+		copyFolder(f, target);
+	    else
+		write(target, TestUtils.readBytes(f));
+	}
+    }
+
+    private static void write(File file, String text) throws IOException {
+	write(file, text.getBytes("UTF-8"));
+    }
+
+    private static void write(File file, byte[] bytes) throws IOException {
+	FileOutputStream out = new FileOutputStream(file);
+	try {
+	    out.write(bytes);
+	} finally {
+	    out.close();
+	}
+    }
+
+    /**
+     * Ensures that two outputs have exactly the same files, with the
+     * same contents, except for the javadoc timestamps of the html files
+     */
+    private static void compareIdentical(List<String> differences, File expected, File actual)
+	    throws IOException {
+	String[] expectedFiles = expected.list();
+	String[] actualFiles = actual.list();
+	Arrays.sort(expectedFiles);
+	Arrays.sort(actualFiles);
+	if (!Arrays.equals(expectedFiles, actualFiles)) {
+	    differences.add("Different files in " + expected + " and " + actual);
+	    return;
+	}
+	for (String name : expectedFiles) {
+	    File e = new File(expected, name);
+	    File a = new File(actual, name);
+	    if (e.isDirectory())
+		compareIdentical(differences, e, a);
+	    else if (name.toLowerCase().endsWith(".html")) {
+		if (!TestUtils.textFilesEquals(pw, e, a))
+		    differences.add(a + " is different from " + e);
+	    } else if (!Arrays.equals(TestUtils.readBytes(e), TestUtils.readBytes(a)))
+		differences.add(a + " is different from " + e);
+	}
     }
 
     /**
@@ -152,7 +372,6 @@ public class UmlDocTest {
 	pw.println();
 	com.sun.tools.javadoc.Main.execute("UMLDoc test", pw, pw, pw,
 		doclet, options);
-	System.exit(0);
     }
 
 }
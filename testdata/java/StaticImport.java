@@ -0,0 +1,21 @@
+import static java.lang.Math.max;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @hidden
+ * @opt inferrel
+ * @opt inferdep
+ * @opt collpackages java.util.*
+ */
+class UMLOptions{}
+
+/** Test classes with static imports, referring to library classes */
+public class StaticImport {
+    List<Element> elements;
+    Map<String, Element> byName;
+
+    public int size(Element e) { return max(elements.size(), 0); }
+}
+
+class Element {}
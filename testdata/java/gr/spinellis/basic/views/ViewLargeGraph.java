@@ -0,0 +1,12 @@
+package gr.spinellis.basic.views;
+
+/**
+ * @view
+ * @opt hide
+ * @opt largegraph 3
+ * 
+ * @match class gr.spinellis.basic.*
+ * @opt !hide
+ */
+public class ViewLargeGraph {
+}
@@ -0,0 +1,18 @@
+package gr.spinellis.context.views;
+
+/**
+ * @view
+ * @opt hide
+ * @opt inferrel
+ * @opt inferdep
+ * @opt inferdepinpackage
+ * @opt contextdepth 2
+ * @opt contexthoppattern 1 navassoc out
+ *  
+ * @match context gr.spinellis.context.classes.A
+ * @opt !hide
+ * @match class gr.spinellis.context.classes.A
+ * @opt nodefillcolor lemonchiffon
+ */
+public class ViewContextHops {
+}
@@ -0,0 +1,11 @@
+package gr.spinellis.summary.colors;
+
+import gr.spinellis.summary.shapes.Canvas;
+import gr.spinellis.summary.shapes.Paintable;
+
+public enum Color implements Paintable {
+    RED, GREEN, BLUE;
+
+    public void paint(Canvas c) {
+    }
+}
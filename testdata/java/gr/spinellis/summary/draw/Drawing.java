@@ -0,0 +1,10 @@
+package gr.spinellis.summary.draw;
+
+import gr.spinellis.summary.shapes.Canvas;
+
+/**
+ * @assoc 1 - 1 Canvas
+ */
+public class Drawing {
+    Canvas canvas;
+}
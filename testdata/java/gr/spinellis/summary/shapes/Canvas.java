@@ -0,0 +1,4 @@
+package gr.spinellis.summary.shapes;
+
+public class Canvas {
+}
@@ -0,0 +1,5 @@
+package gr.spinellis.summary.shapes;
+
+public interface Paintable {
+    void paint(Canvas c);
+}
@@ -0,0 +1,15 @@
+package gr.spinellis.summary.views;
+
+/**
+ * The enumerations are not shown, so the package of Color and its
+ * relation to the interface it implements are left out of the summary.
+ *
+ * @view
+ * @opt hide
+ * @opt largegraph 2
+ * 
+ * @match class gr.spinellis.summary.*
+ * @opt !hide
+ */
+public class ViewEnumSummary {
+}
@@ -0,0 +1,17 @@
+package gr.spinellis.shapes;
+
+import java.util.List;
+
+/**
+ * The surface the shapes are drawn on.
+ *
+ * @composed 1 - * Shape
+ */
+public class Canvas {
+    private List<Shape> shapes;
+    private Color background;
+
+    public void add(Shape shape) {}
+
+    public void clear() {}
+}
@@ -0,0 +1,23 @@
+package gr.spinellis.shapes;
+
+/**
+ * A circle, centered at the origin.
+ *
+ * @note The area of a circle with radius r is pi * r * r,
+ * for r > 0 & r < 1 as well as for "big" circles.
+ */
+public class Circle extends Shape {
+    private double radius;
+
+    public Circle(double radius) {
+	this.radius = radius;
+    }
+
+    public double area() {
+	return Math.PI * radius * radius;
+    }
+
+    public double getRadius() {
+	return radius;
+    }
+}
@@ -0,0 +1,6 @@
+package gr.spinellis.shapes;
+
+/** The colors of the shapes. */
+public enum Color {
+    RED, GREEN, BLUE
+}
@@ -0,0 +1,10 @@
+package gr.spinellis.shapes;
+
+/**
+ * Something that can be drawn.
+ *
+ * @stereotype view
+ */
+public interface Drawable {
+    void draw(Canvas canvas);
+}
@@ -0,0 +1,18 @@
+package gr.spinellis.shapes;
+
+/**
+ * A shape of a drawing.
+ *
+ * @stereotype entity
+ * @tagvalue version 1.2
+ * @note Shapes are drawn in the order
+ * they were added to the canvas.
+ */
+public abstract class Shape implements Drawable {
+    protected Color color;
+    static int count;
+
+    public abstract double area();
+
+    public void draw(Canvas canvas) {}
+}